@@ -1,30 +1,131 @@
 package com.example.demo.config;
 
-import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import com.example.demo.features.ChatMemory.ConversationSummaryRepository;
+import com.example.demo.features.ChatMemory.SummarizingChatMemory;
+import com.example.demo.features.ChatMemory.WriteBehindChatMemoryRepository;
+import com.example.demo.features.documents.store.MappedVectorStore;
+import com.example.demo.features.embedding.EmbeddingService;
+import com.example.demo.features.limits.ModelConcurrencyLimiter;
+import com.example.demo.features.limits.PriorityClass;
+import com.example.demo.features.observability.AiMetrics;
+import com.example.demo.features.runtime.ModelRuntimeManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
-import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.vectorstore.SimpleVectorStore;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepositoryDialect;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
 
 @Configuration
 public class AIConfig {
 
-    // Creates and manages a SimpleVectorStore as a Spring Bean.
+    // Creates and manages a memory-mapped, disk-backed VectorStore as a Spring Bean.
+    // Unlike SimpleVectorStore the embeddings stay off-heap and survive restarts,
+    // and an HNSW graph replaces the brute-force scan behind similaritySearch.
+    // Adds, deletes and searches are observed (db.vector.client.operation timer, and spans once a tracer is on the classpath).
+    @Bean
+    public MappedVectorStore vectorStore(EmbeddingService embeddingService, ObservationRegistry observationRegistry,
+                                         @Value("${app.vectorstore.directory:./data/vectorstore}") String directory,
+                                         @Value("${app.vectorstore.hnsw.m:16}") int m,
+                                         @Value("${app.vectorstore.hnsw.ef-construction:200}") int efConstruction,
+                                         @Value("${app.vectorstore.hnsw.ef-search:64}") int efSearch,
+                                         @Value("${app.vectorstore.quantized:false}") boolean quantized) {
+        // Still uses the Ollama EmbeddingModel(nomic-embed-text) to turn text into math,
+        // but query embeddings are cached, coalesced and micro-batched by the EmbeddingService.
+        return MappedVectorStore.builder(embeddingService.asEmbeddingModel())
+                .directory(Path.of(directory))
+                .hnsw(m, efConstruction, efSearch)
+                .quantized(quantized)
+                .observationRegistry(observationRegistry)
+                .build();
+    }
+
+    // Keeps active conversations in memory and writes them to H2 in the background,
+    // so a chat turn does no synchronous DB I/O. A crash loses at most flush-interval of messages.
+    @Bean
+    @Primary
+    public WriteBehindChatMemoryRepository writeBehindChatMemoryRepository(JdbcChatMemoryRepository jdbcRepository,
+                                                                           JdbcTemplate jdbcTemplate,
+                                                                           TransactionTemplate transactionTemplate,
+                                                                           MeterRegistry meterRegistry,
+                                                                           @Value("${app.chat-memory.cache.max-conversations:1000}") int maxConversations,
+                                                                           @Value("${app.chat-memory.flush-interval:200ms}") Duration flushInterval,
+                                                                           @Value("${app.chat-memory.flush-batch-size:100}") int batchSize) {
+        return new WriteBehindChatMemoryRepository(jdbcRepository, jdbcTemplate, transactionTemplate,
+                JdbcChatMemoryRepositoryDialect.from(jdbcTemplate.getDataSource()),
+                meterRegistry, maxConversations, flushInterval, batchSize);
+    }
+
+    @Bean
+    public ConversationSummaryRepository conversationSummaryRepository(JdbcTemplate jdbcTemplate,
+                                                                       @Value("${app.chat-memory.cache.max-conversations:1000}") int maxConversations) {
+        return new ConversationSummaryRepository(jdbcTemplate, maxConversations);
+    }
+
+    // Tiered memory instead of a fixed 10 message window: recent turns verbatim, older turns folded
+    // into a rolling summary in the background, and a token budget on what gets injected per prompt.
+    // Loads and stores are timed as chat.memory.operation
     @Bean
-    public VectorStore vectorStore(EmbeddingModel embeddingModel) {
-        // SimpleVectorStore uses  Ollama EmbeddingModel(nomic-embed-text) to turn text into math.
-        return SimpleVectorStore.builder(embeddingModel).build();
+    public SummarizingChatMemory chatMemory(WriteBehindChatMemoryRepository chatMemoryRepository,
+                                            ConversationSummaryRepository summaryRepository,
+                                            @Qualifier("ollamaChatModel") ChatModel ollamaModel,
+                                            ModelConcurrencyLimiter concurrencyLimiter,
+                                            ModelRuntimeManager runtimeManager,
+                                            AiMetrics aiMetrics,
+                                            MeterRegistry meterRegistry,
+                                            @Value("${app.chat-memory.summary.recent-messages:6}") int recentMessages,
+                                            @Value("${app.chat-memory.summary.batch-messages:6}") int batchMessages,
+                                            @Value("${app.chat-memory.summary.max-stored-messages:40}") int maxStoredMessages,
+                                            @Value("${app.chat-memory.summary.token-budget:1024}") int tokenBudget,
+                                            @Value("${app.chat-memory.summary.max-words:150}") int maxSummaryWords) {
+        // Summaries can wait: they queue behind interactive requests for the model slot
+        ChatClient summarizer = ChatClient.builder(ollamaModel)
+                .defaultAdvisors(
+                        concurrencyLimiter.advisor("ollama", PriorityClass.BULK), aiMetrics.advisor("chat-summary", "ollama"),
+                        runtimeManager.advisor("ollama")
+                )
+                .build();
+        return new SummarizingChatMemory(aiMetrics.timedChatMemoryRepository(chatMemoryRepository), summaryRepository,
+                summarizer, new JTokkitTokenCountEstimator(), meterRegistry,
+                recentMessages, batchMessages, maxStoredMessages, tokenBudget, maxSummaryWords);
     }
 
+    // One HTTP client (and so one connection pool) for every RestClient and WebClient the app builds,
+    // including the blocking and streaming clients of the Ollama chat and embedding models.
+    // Prefers HTTP/2 (multiplexed streams over one connection) and falls back to keep-alive HTTP/1.1
+    // for servers that don't speak it, like a plain-http Ollama.
     @Bean
-    public ChatMemory chatMemory(JdbcChatMemoryRepository chatMemoryRepository) {
-        // MessageWindowChatMemory only keeps the last N messages to save tokens
-        return MessageWindowChatMemory.builder()
-                .chatMemoryRepository(chatMemoryRepository)
-                .maxMessages(10) // Remember the last 10 messages
+    public HttpClient modelHttpClient(@Value("${app.models.http.version:HTTP_2}") HttpClient.Version version,
+                                      @Value("${app.models.http.connect-timeout:5s}") Duration connectTimeout) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
                 .build();
     }
-}
\ No newline at end of file
+
+    @Bean
+    public RestClientCustomizer modelRestClientCustomizer(HttpClient modelHttpClient) {
+        return builder -> builder.requestFactory(new JdkClientHttpRequestFactory(modelHttpClient));
+    }
+
+    @Bean
+    public WebClientCustomizer modelWebClientCustomizer(HttpClient modelHttpClient) {
+        return builder -> builder.clientConnector(new JdkClientHttpConnector(modelHttpClient));
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.demo.features.ChatMemory;
 
+import com.example.demo.features.limits.ModelConcurrencyLimiter;
+import com.example.demo.features.limits.PriorityClass;
+import com.example.demo.features.observability.AiMetrics;
+import com.example.demo.features.runtime.ModelRuntimeManager;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
@@ -13,11 +17,16 @@ import org.springframework.web.bind.annotation.RestController;
 public class ChatController {
 
     private final ChatClient ollamaClient;
+    private final SummarizingChatMemory chatMemory;
 
-    public ChatController(@Qualifier("ollamaChatModel") ChatModel ollamaModel, ChatMemory chatMemory) {
+    public ChatController(@Qualifier("ollamaChatModel") ChatModel ollamaModel, SummarizingChatMemory chatMemory,
+                          ModelConcurrencyLimiter concurrencyLimiter, ModelRuntimeManager runtimeManager, AiMetrics aiMetrics) {
+        this.chatMemory = chatMemory;
         this.ollamaClient = ChatClient.builder(ollamaModel)
                 .defaultAdvisors(
-                        MessageChatMemoryAdvisor.builder(chatMemory).build()
+                        MessageChatMemoryAdvisor.builder(chatMemory).build(),
+                        concurrencyLimiter.advisor("ollama", PriorityClass.INTERACTIVE), aiMetrics.advisor("chat", "ollama"),
+                        runtimeManager.advisor("ollama")
                 )
                 .build();
     }
@@ -28,4 +37,10 @@ public class ChatController {
                 .call().content();
     }
 
+    // Prompt cost of a conversation: history tokens vs tokens injected (summary + recent turns within budget)
+    @GetMapping("/ai/chat/memory")
+    public SummarizingChatMemory.MemoryStats memory(@RequestParam String userId) {
+        return chatMemory.stats(userId);
+    }
+
 }
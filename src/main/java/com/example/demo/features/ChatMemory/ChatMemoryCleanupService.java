@@ -1,31 +1,39 @@
 package com.example.demo.features.ChatMemory;
 
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 @Service
 public class ChatMemoryCleanupService {
 
-    private final JdbcTemplate jdbcTemplate;
+    private final ChatMemoryRetentionEngine retentionEngine;
+    private final ConversationSummaryRepository summaryRepository;
 
-    public ChatMemoryCleanupService(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    public ChatMemoryCleanupService(ChatMemoryRetentionEngine retentionEngine,
+                                    ConversationSummaryRepository summaryRepository) {
+        this.retentionEngine = retentionEngine;
+        this.summaryRepository = summaryRepository;
     }
 
     /**
-     * This method runs automatically.
-     * Cron format: "0 0 0 * * *" means "at 00:00:00 every day"
+     * This method runs automatically, every few minutes instead of once at midnight.
+     * Each run deletes a bounded number of expired rows in small batches (see ChatMemoryRetentionEngine),
+     * so /ai/chat traffic is never stalled by one huge DELETE; a backlog is worked off over several runs.
+     * Summaries of conversations that have no messages left are deleted with them.
      */
-    @Scheduled(cron = "0 0 0 * * *")
+    @Scheduled(initialDelayString = "${app.chat-memory.retention.initial-delay-ms:60000}",
+            fixedDelayString = "${app.chat-memory.retention.interval-ms:300000}")
     public void autoPurgeOldMessages() {
-        // H2 specific SQL to delete records older than 7 days
-        String sql = "DELETE FROM SPRING_AI_CHAT_MEMORY WHERE TIMESTAMP < DATEADD('DAY', -7, CURRENT_TIMESTAMP())";
-
         try {
-            int rowsDeleted = jdbcTemplate.update(sql);
-            if (rowsDeleted > 0) {
-                System.out.println("********** Auto-Cleanup**********: Removed " + rowsDeleted + " messages older than 7 days.");
+            ChatMemoryRetentionEngine.RetentionReport report = retentionEngine.run();
+            if (report.deleted() > 0) {
+                System.out.println("********** Auto-Cleanup**********: Removed " + report.deleted() + " messages from "
+                        + report.conversations() + " conversations in " + report.elapsedMs() + " ms ("
+                        + report.rowsPerSecond() + " rows/s, lag " + report.lagSeconds() + " s)");
+            }
+            int summaries = summaryRepository.deleteOrphans();
+            if (summaries > 0) {
+                System.out.println("********** Auto-Cleanup**********: Removed " + summaries + " conversation summaries");
             }
         } catch (Exception e) {
             System.err.println("********** Cleanup failed**********: " + e.getMessage());
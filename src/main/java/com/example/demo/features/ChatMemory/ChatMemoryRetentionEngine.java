@@ -0,0 +1,345 @@
+package com.example.demo.features.ChatMemory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Incremental retention for SPRING_AI_CHAT_MEMORY.
+ *
+ * Instead of one unbounded DELETE, each run walks expired rows oldest-first through an index
+ * and removes them in short transactions of {@code batchSize} rows, sleeping {@code pause}
+ * between batches and stopping after {@code maxRowsPerRun}. The table is never locked for
+ * long, and a backlog is worked off over several runs (reported as lag).
+ *
+ * Policies (per conversation-id prefix):
+ * - TTL: rows older than the policy's ttl are removed.
+ * - Max messages: only the newest N rows of a conversation are kept.
+ *
+ * When an archive directory is configured, removed rows are first appended as JSON lines to a
+ * monthly gzip file (one gzip member per batch, so the file stays append-only and `zcat`
+ * reads it as a whole). Archiving is at-least-once: a crash between archive and delete can
+ * archive a batch twice.
+ */
+@Component
+public class ChatMemoryRetentionEngine {
+
+    private static final String TABLE = "SPRING_AI_CHAT_MEMORY";
+    // The Spring AI schema only indexes (conversation_id, timestamp); TTL scans need timestamp alone
+    private static final String TIMESTAMP_INDEX =
+            "CREATE INDEX IF NOT EXISTS SPRING_AI_CHAT_MEMORY_TIMESTAMP_IDX ON " + TABLE + "(timestamp)";
+
+    /**
+     * Outcome of one {@link #run()}.
+     *
+     * @param lagSeconds       Age of the oldest row that is already past its TTL (0 = caught up).
+     * @param budgetExhausted  True when the run stopped at maxRowsPerRun with work left.
+     */
+    public record RetentionReport(int deleted, int archived, int conversations, long elapsedMs,
+                                  double rowsPerSecond, long lagSeconds, boolean budgetExhausted) {
+    }
+
+    private record Row(String conversationId, Timestamp timestamp, String type, String content) {
+    }
+
+    /**
+     * Runs a delete of stored rows so that cached or pending copies of the affected
+     * conversations cannot write them back, see {@link WriteBehindChatMemoryRepository#deleteStored}.
+     */
+    interface RowDeleter {
+        void delete(Set<String> conversationIds, Runnable delete);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RowDeleter rowDeleter;
+    private final List<RetentionPolicy> policies;
+    private final int batchSize;
+    private final long pauseMs;
+    private final int maxRowsPerRun;
+    private final Path archiveDirectory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Counter deletedRows;
+    private final Counter archivedRows;
+    private final AtomicLong rowsPerSecond = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private volatile boolean indexReady;
+
+    @Autowired
+    public ChatMemoryRetentionEngine(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     WriteBehindChatMemoryRepository repository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.chat-memory.retention.ttl:7d}") String ttl,
+                                     @Value("${app.chat-memory.retention.max-messages:0}") int maxMessages,
+                                     @Value("${app.chat-memory.retention.overrides:}") String overrides,
+                                     @Value("${app.chat-memory.retention.batch-size:1000}") int batchSize,
+                                     @Value("${app.chat-memory.retention.pause:50ms}") String pause,
+                                     @Value("${app.chat-memory.retention.max-rows-per-run:200000}") int maxRowsPerRun,
+                                     @Value("${app.chat-memory.retention.archive-directory:}") String archiveDirectory) {
+        this(jdbcTemplate, transactionTemplate, repository::deleteStored, meterRegistry,
+                RetentionPolicy.parse(overrides, DurationStyle.detectAndParse(ttl), maxMessages),
+                batchSize, DurationStyle.detectAndParse(pause), maxRowsPerRun,
+                archiveDirectory.isBlank() ? null : Path.of(archiveDirectory));
+    }
+
+    ChatMemoryRetentionEngine(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              RowDeleter rowDeleter,
+                              MeterRegistry meterRegistry,
+                              List<RetentionPolicy> policies,
+                              int batchSize,
+                              Duration pause,
+                              int maxRowsPerRun,
+                              Path archiveDirectory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.rowDeleter = rowDeleter;
+        // Longest prefix first, so the most specific override wins and the default comes last
+        this.policies = policies.stream()
+                .sorted(Comparator.comparingInt((RetentionPolicy p) -> p.conversationPrefix().length()).reversed())
+                .toList();
+        this.batchSize = batchSize;
+        this.pauseMs = pause.toMillis();
+        this.maxRowsPerRun = maxRowsPerRun;
+        this.archiveDirectory = archiveDirectory;
+
+        this.deletedRows = Counter.builder("chat.memory.retention.rows").tag("action", "deleted")
+                .description("Chat memory rows removed by retention").register(meterRegistry);
+        this.archivedRows = Counter.builder("chat.memory.retention.rows").tag("action", "archived")
+                .description("Chat memory rows archived before removal").register(meterRegistry);
+        Gauge.builder("chat.memory.retention.rows.per.second", rowsPerSecond, AtomicLong::get)
+                .description("Delete throughput of the last retention run").register(meterRegistry);
+        Gauge.builder("chat.memory.retention.lag", lagSeconds, AtomicLong::get)
+                .description("Seconds the oldest expired row is past its TTL (0 = caught up)")
+                .baseUnit("seconds").register(meterRegistry);
+    }
+
+    /**
+     * One incremental pass: TTL expiry per policy, then max-message trimming, within the
+     * per-run row budget.
+     */
+    public synchronized RetentionReport run() {
+        ensureIndex();
+        long start = System.nanoTime();
+        Instant now = Instant.now();
+        int budget = maxRowsPerRun;
+        int deleted = 0;
+        int archived = 0;
+        Set<String> conversations = new HashSet<>();
+
+        // 1. TTL: oldest rows first, through the timestamp index
+        for (RetentionPolicy policy : policies) {
+            Timestamp cutoff = Timestamp.from(now.minus(policy.ttl()));
+            List<Object> args = new ArrayList<>();
+            String where = "timestamp < ? AND " + prefixPredicate(policy, args);
+            args.add(0, cutoff);
+            while (budget > 0) {
+                List<Row> rows = select(where, args, Math.min(batchSize, budget));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                archived += remove(rows, conversations);
+                deleted += rows.size();
+                budget -= rows.size();
+                pause();
+            }
+        }
+
+        // 2. Max messages: trim the oldest rows of oversized conversations
+        int smallestLimit = policies.stream().mapToInt(RetentionPolicy::maxMessages).filter(m -> m > 0).min().orElse(0);
+        if (smallestLimit > 0 && budget > 0) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            jdbcTemplate.query("SELECT conversation_id, COUNT(*) FROM " + TABLE + " GROUP BY conversation_id HAVING COUNT(*) > ?",
+                    rs -> {
+                        counts.put(rs.getString(1), rs.getInt(2));
+                    },
+                    smallestLimit);
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                int limit = policyFor(entry.getKey()).maxMessages();
+                int excess = limit > 0 ? entry.getValue() - limit : 0;
+                while (excess > 0 && budget > 0) {
+                    List<Row> rows = select("conversation_id = ?", List.of(entry.getKey()),
+                            Math.min(Math.min(excess, batchSize), budget));
+                    if (rows.isEmpty()) {
+                        break;
+                    }
+                    archived += remove(rows, conversations);
+                    deleted += rows.size();
+                    budget -= rows.size();
+                    excess -= rows.size();
+                    pause();
+                }
+            }
+        }
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        double perSecond = deleted * 1000.0 / elapsedMs;
+        long lag = lag(now);
+        rowsPerSecond.set(Math.round(perSecond));
+        lagSeconds.set(lag);
+        return new RetentionReport(deleted, archived, conversations.size(), elapsedMs,
+                Math.round(perSecond * 10) / 10.0, lag, budget <= 0);
+    }
+
+    /**
+     * Archives (optionally) and deletes one batch in a single short transaction, through the
+     * write-behind repository so pending writes cannot resurrect the rows and readers see the
+     * trimmed history.
+     */
+    private int remove(List<Row> rows, Set<String> conversations) {
+        int archived = 0;
+        if (archiveDirectory != null) {
+            archive(rows);
+            archived = rows.size();
+            archivedRows.increment(archived);
+        }
+        List<Object[]> keys = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            keys.add(new Object[] {row.conversationId(), row.timestamp()});
+        }
+        Set<String> touched = new HashSet<>();
+        for (Row row : rows) {
+            touched.add(row.conversationId());
+        }
+        rowDeleter.delete(touched, () -> transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate("DELETE FROM " + TABLE + " WHERE conversation_id = ? AND timestamp = ?", keys)));
+        deletedRows.increment(rows.size());
+        conversations.addAll(touched);
+        return archived;
+    }
+
+    private List<Row> select(String where, List<Object> args, int limit) {
+        // Content is only read when it has to be archived
+        String columns = archiveDirectory != null ? "conversation_id, timestamp, type, content" : "conversation_id, timestamp";
+        List<Object> params = new ArrayList<>(args);
+        params.add(limit);
+        return jdbcTemplate.query("SELECT " + columns + " FROM " + TABLE + " WHERE " + where
+                        + " ORDER BY timestamp LIMIT ?",
+                (rs, i) -> archiveDirectory != null
+                        ? new Row(rs.getString(1), rs.getTimestamp(2), rs.getString(3), rs.getString(4))
+                        : new Row(rs.getString(1), rs.getTimestamp(2), null, null),
+                params.toArray());
+    }
+
+    /**
+     * SQL restricting a policy to its own conversations: overrides match their prefix, the
+     * default matches everything no override claims.
+     */
+    private String prefixPredicate(RetentionPolicy policy, List<Object> args) {
+        if (!policy.isDefault()) {
+            args.add(likePrefix(policy.conversationPrefix()));
+            return "conversation_id LIKE ? ESCAPE '\\'";
+        }
+        StringBuilder sql = new StringBuilder("1 = 1");
+        for (RetentionPolicy other : policies) {
+            if (!other.isDefault()) {
+                sql.append(" AND conversation_id NOT LIKE ? ESCAPE '\\'");
+                args.add(likePrefix(other.conversationPrefix()));
+            }
+        }
+        return sql.toString();
+    }
+
+    private static String likePrefix(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+
+    private RetentionPolicy policyFor(String conversationId) {
+        for (RetentionPolicy policy : policies) {
+            if (conversationId.startsWith(policy.conversationPrefix())) {
+                return policy;
+            }
+        }
+        return policies.get(policies.size() - 1);
+    }
+
+    /**
+     * How far behind the TTL pass is: the largest age past its policy's cutoff of any row that
+     * should already be gone. Each MIN() walks the timestamp index from its start.
+     */
+    private long lag(Instant now) {
+        long lag = 0;
+        for (RetentionPolicy policy : policies) {
+            List<Object> args = new ArrayList<>();
+            String where = prefixPredicate(policy, args);
+            Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM " + TABLE + " WHERE " + where,
+                    Timestamp.class, args.toArray());
+            if (oldest != null) {
+                lag = Math.max(lag, Duration.between(oldest.toInstant(), now.minus(policy.ttl())).toSeconds());
+            }
+        }
+        return lag;
+    }
+
+    private void archive(List<Row> rows) {
+        Path file = archiveDirectory.resolve("chat-memory-" + YearMonth.now(ZoneOffset.UTC) + ".jsonl.gz");
+        try {
+            Files.createDirectories(archiveDirectory);
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)), StandardCharsets.UTF_8))) {
+                for (Row row : rows) {
+                    Map<String, Object> json = new LinkedHashMap<>();
+                    json.put("conversationId", row.conversationId());
+                    json.put("timestamp", row.timestamp().toInstant().toString());
+                    json.put("type", row.type());
+                    json.put("content", row.content());
+                    writer.write(objectMapper.writeValueAsString(json));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            // Never delete what could not be archived
+            throw new UncheckedIOException("Failed to archive chat memory to " + file, e);
+        }
+    }
+
+    private void ensureIndex() {
+        if (!indexReady) {
+            jdbcTemplate.execute(TIMESTAMP_INDEX);
+            indexReady = true;
+        }
+    }
+
+    private void pause() {
+        if (pauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
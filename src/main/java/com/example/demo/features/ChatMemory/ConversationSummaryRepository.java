@@ -0,0 +1,89 @@
+package com.example.demo.features.ChatMemory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Rolling conversation summaries, one row per conversation in SPRING_AI_CHAT_MEMORY_SUMMARY,
+ * next to the SPRING_AI_CHAT_MEMORY rows of the same database.
+ *
+ * Summaries are read on every chat turn but only written when older messages are compacted,
+ * so reads are served from a cache that every write goes through.
+ */
+public class ConversationSummaryRepository {
+
+    static final String TABLE = "SPRING_AI_CHAT_MEMORY_SUMMARY";
+    private static final String SCHEMA = "CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+            + "conversation_id VARCHAR(36) NOT NULL PRIMARY KEY, "
+            + "summary LONGVARCHAR NOT NULL, "
+            + "summarized_messages INT NOT NULL, "
+            + "summarized_tokens INT NOT NULL, "
+            + "updated_at TIMESTAMP NOT NULL)";
+
+    /**
+     * The summary of a conversation's compacted messages.
+     *
+     * @param summarizedMessages Messages folded into the summary so far.
+     * @param summarizedTokens   Estimated prompt tokens of those messages, had they stayed verbatim.
+     */
+    public record ConversationSummary(String conversationId, String summary, int summarizedMessages,
+                                      int summarizedTokens, Instant updatedAt) {
+    }
+
+    // Empty Optional = known to have no summary, so new conversations don't query on every turn
+    private final Cache<String, Optional<ConversationSummary>> cache;
+    private final JdbcTemplate jdbcTemplate;
+
+    public ConversationSummaryRepository(JdbcTemplate jdbcTemplate, int maxConversations) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = Caffeine.newBuilder().maximumSize(maxConversations).build();
+        jdbcTemplate.execute(SCHEMA);
+    }
+
+    public Optional<ConversationSummary> find(String conversationId) {
+        return cache.get(conversationId, id -> jdbcTemplate.query(
+                "SELECT summary, summarized_messages, summarized_tokens, updated_at FROM " + TABLE
+                        + " WHERE conversation_id = ?",
+                (rs, row) -> new ConversationSummary(id, rs.getString(1), rs.getInt(2), rs.getInt(3),
+                        rs.getTimestamp(4).toInstant()),
+                id).stream().findFirst());
+    }
+
+    public void save(ConversationSummary summary) {
+        Object[] values = {summary.summary(), summary.summarizedMessages(), summary.summarizedTokens(),
+                Timestamp.from(summary.updatedAt()), summary.conversationId()};
+        int updated = jdbcTemplate.update("UPDATE " + TABLE + " SET summary = ?, summarized_messages = ?, "
+                + "summarized_tokens = ?, updated_at = ? WHERE conversation_id = ?", values);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO " + TABLE + " (summary, summarized_messages, summarized_tokens, "
+                    + "updated_at, conversation_id) VALUES (?, ?, ?, ?, ?)", values);
+        }
+        cache.put(summary.conversationId(), Optional.of(summary));
+    }
+
+    public void delete(String conversationId) {
+        jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE conversation_id = ?", conversationId);
+        cache.put(conversationId, Optional.empty());
+    }
+
+    /**
+     * Deletes the summaries of conversations that have no messages left, eg: after retention
+     * removed all of them, so a summary never outlives the conversation it was made from.
+     *
+     * @return The number of summaries deleted.
+     */
+    public int deleteOrphans() {
+        List<String> orphans = jdbcTemplate.queryForList("SELECT s.conversation_id FROM " + TABLE + " s WHERE NOT EXISTS "
+                + "(SELECT 1 FROM SPRING_AI_CHAT_MEMORY m WHERE m.conversation_id = s.conversation_id)", String.class);
+        for (String conversationId : orphans) {
+            delete(conversationId);
+        }
+        return orphans.size();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.features.ChatMemory;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retention rule for conversations whose id starts with {@code conversationPrefix}
+ * (the empty prefix is the default that applies to everything else).
+ *
+ * @param ttl         Messages older than this are removed.
+ * @param maxMessages Only the newest N messages of a conversation are kept (0 = no limit).
+ */
+public record RetentionPolicy(String conversationPrefix, Duration ttl, int maxMessages) {
+
+    public boolean isDefault() {
+        return conversationPrefix.isEmpty();
+    }
+
+    /**
+     * Parses overrides written as {@code prefix:ttl:maxMessages} separated by commas,
+     * eg: "vip-:30d:1000,anon-:1d:50", and appends the default policy last.
+     */
+    public static List<RetentionPolicy> parse(String overrides, Duration defaultTtl, int defaultMaxMessages) {
+        List<RetentionPolicy> policies = new ArrayList<>();
+        if (overrides != null && !overrides.isBlank()) {
+            for (String override : overrides.split(",")) {
+                String[] parts = override.trim().split(":");
+                if (parts.length != 3 || parts[0].isEmpty()) {
+                    throw new IllegalArgumentException("Retention override must be prefix:ttl:maxMessages, got: " + override);
+                }
+                policies.add(new RetentionPolicy(parts[0], DurationStyle.detectAndParse(parts[1]), Integer.parseInt(parts[2])));
+            }
+        }
+        policies.add(new RetentionPolicy("", defaultTtl, defaultMaxMessages));
+        return policies;
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.demo.features.ChatMemory;
+
+import com.example.demo.features.ChatMemory.ConversationSummaryRepository.ConversationSummary;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tiered chat memory: recent turns stay verbatim, older turns are folded into a rolling summary.
+ *
+ * - Recent tier: the newest {@code recentMessages} messages are always stored as they are.
+ * - Summary tier: once {@code batchMessages} more messages are older than that, a background
+ *   worker asks the model to merge them into the conversation's summary
+ *   ({@link ConversationSummaryRepository}) and then drops them from the message rows. The
+ *   model call goes through its own chat client (bulk priority), never the request path.
+ * - Budget: {@link #get(String)} returns the summary as a system message followed by the newest
+ *   messages that fit {@code tokenBudget}, so MessageChatMemoryAdvisor injects a bounded prompt
+ *   however long the conversation gets.
+ *
+ * If summarization falls behind or fails, messages wait in the recent tier (and the budget still
+ * applies); beyond {@code maxStoredMessages} the oldest are dropped, like a message window.
+ *
+ * Savings are measured per turn as the tokens the full history would have added to the prompt
+ * minus the tokens injected ({@code chat.memory.prompt.tokens.saved}), and per conversation by
+ * {@link #stats(String)}.
+ */
+public class SummarizingChatMemory implements ChatMemory, DisposableBean {
+
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
+    private static final String SUMMARIZE_INSTRUCTIONS = """
+            You maintain a running summary of a conversation between a user and an assistant.
+            Merge the previous summary with the new messages into one summary. Keep names, facts,
+            preferences, decisions and open questions; drop greetings and repetition.
+            Answer with the summary only, in at most %d words.""";
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * What a conversation costs in the prompt.
+     *
+     * @param storedMessages     Messages kept verbatim.
+     * @param summarizedMessages Messages folded into the summary.
+     * @param historyTokens      Tokens the whole conversation would add to a prompt, verbatim.
+     * @param injectedTokens     Tokens the memory actually adds (summary and messages within budget).
+     */
+    public record MemoryStats(String conversationId, int storedMessages, int summarizedMessages,
+                              int historyTokens, int injectedTokens, int savedTokens) {
+    }
+
+    private record Window(List<Message> messages, MemoryStats stats) {
+    }
+
+    private final ChatMemoryRepository repository;
+    private final ConversationSummaryRepository summaries;
+    private final ChatClient summarizer;
+    private final TokenCountEstimator estimator;
+    private final int recentMessages;
+    private final int batchMessages;
+    private final int maxStoredMessages;
+    private final int tokenBudget;
+    private final int maxSummaryWords;
+
+    // Messages are immutable and the write-behind cache hands out the same instances every turn
+    private final Cache<Message, Integer> tokenCounts;
+    // Compactions rewrite a conversation's messages; adds and compactions of one conversation must not interleave
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final Executor worker;
+
+    private final DistributionSummary injectedTokens;
+    private final DistributionSummary savedTokens;
+    private final Counter summariesCreated;
+    private final Counter summaryFailures;
+    private final Timer summaryTimer;
+
+    public SummarizingChatMemory(ChatMemoryRepository repository,
+                                 ConversationSummaryRepository summaries,
+                                 ChatClient summarizer,
+                                 TokenCountEstimator estimator,
+                                 MeterRegistry meterRegistry,
+                                 int recentMessages,
+                                 int batchMessages,
+                                 int maxStoredMessages,
+                                 int tokenBudget,
+                                 int maxSummaryWords) {
+        this(repository, summaries, summarizer, estimator, meterRegistry, recentMessages, batchMessages,
+                maxStoredMessages, tokenBudget, maxSummaryWords, Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "chat-memory-summarizer");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    SummarizingChatMemory(ChatMemoryRepository repository,
+                          ConversationSummaryRepository summaries,
+                          ChatClient summarizer,
+                          TokenCountEstimator estimator,
+                          MeterRegistry meterRegistry,
+                          int recentMessages,
+                          int batchMessages,
+                          int maxStoredMessages,
+                          int tokenBudget,
+                          int maxSummaryWords,
+                          Executor worker) {
+        if (recentMessages < 1 || batchMessages < 1 || maxStoredMessages < recentMessages + batchMessages) {
+            throw new IllegalArgumentException("Need recent-messages >= 1, batch-messages >= 1 and "
+                    + "max-stored-messages >= recent-messages + batch-messages");
+        }
+        this.repository = repository;
+        this.summaries = summaries;
+        this.summarizer = summarizer;
+        this.estimator = estimator;
+        this.recentMessages = recentMessages;
+        this.batchMessages = batchMessages;
+        this.maxStoredMessages = maxStoredMessages;
+        this.tokenBudget = tokenBudget;
+        this.maxSummaryWords = maxSummaryWords;
+        this.tokenCounts = Caffeine.newBuilder().weakKeys().maximumSize(100_000).build();
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+
+        this.injectedTokens = DistributionSummary.builder("chat.memory.prompt.tokens")
+                .description("Estimated tokens of history injected into a chat prompt")
+                .baseUnit("tokens")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.savedTokens = DistributionSummary.builder("chat.memory.prompt.tokens.saved")
+                .description("Estimated prompt tokens saved per turn by summaries and the token budget")
+                .baseUnit("tokens")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.summariesCreated = Counter.builder("chat.memory.summaries").tag("result", "success")
+                .description("Background conversation compactions").register(meterRegistry);
+        this.summaryFailures = Counter.builder("chat.memory.summaries").tag("result", "failure")
+                .description("Background conversation compactions").register(meterRegistry);
+        this.summaryTimer = Timer.builder("chat.memory.summary.latency")
+                .description("Time to summarize and compact one conversation")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.worker = worker;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        boolean compact;
+        ReentrantLock lock = lock(conversationId);
+        lock.lock();
+        try {
+            List<Message> stored = new ArrayList<>(repository.findByConversationId(conversationId));
+            stored.addAll(messages);
+            if (stored.size() > maxStoredMessages) {
+                stored = stored.subList(stored.size() - maxStoredMessages, stored.size());
+            }
+            repository.saveAll(conversationId, stored);
+            compact = stored.size() - recentMessages >= batchMessages;
+        } finally {
+            lock.unlock();
+        }
+        if (compact && pending.add(conversationId)) {
+            try {
+                worker.execute(() -> compactQuietly(conversationId));
+            } catch (RejectedExecutionException e) {
+                pending.remove(conversationId);
+            }
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        Window window = window(conversationId);
+        injectedTokens.record(window.stats().injectedTokens());
+        savedTokens.record(window.stats().savedTokens());
+        return window.messages();
+    }
+
+    /**
+     * Prompt cost of a conversation: what its full history would take, what is injected instead.
+     */
+    public MemoryStats stats(String conversationId) {
+        return window(conversationId).stats();
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        ReentrantLock lock = lock(conversationId);
+        lock.lock();
+        try {
+            repository.deleteByConversationId(conversationId);
+            summaries.delete(conversationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The summary (if it fits) and then the newest messages, oldest first, within the token budget.
+     */
+    private Window window(String conversationId) {
+        List<Message> stored = repository.findByConversationId(conversationId);
+        Optional<ConversationSummary> summary = summaries.find(conversationId);
+
+        int remaining = tokenBudget;
+        SystemMessage summaryMessage = null;
+        if (summary.isPresent()) {
+            SystemMessage message = new SystemMessage(SUMMARY_PREFIX + summary.get().summary());
+            int tokens = estimator.estimate(message.getText());
+            if (tokens <= remaining) {
+                summaryMessage = message;
+                remaining -= tokens;
+            }
+        }
+        int historyTokens = summary.map(ConversationSummary::summarizedTokens).orElse(0);
+        int first = stored.size();
+        boolean full = false;
+        for (int i = stored.size() - 1; i >= 0; i--) {
+            int tokens = tokens(stored.get(i));
+            historyTokens += tokens;
+            if (!full && tokens <= remaining) {
+                remaining -= tokens;
+                first = i;
+            } else {
+                // Never skip a message to fit an older one: the window stays contiguous
+                full = true;
+            }
+        }
+
+        List<Message> window = new ArrayList<>(stored.size() - first + 1);
+        if (summaryMessage != null) {
+            window.add(summaryMessage);
+        }
+        window.addAll(stored.subList(first, stored.size()));
+        int injected = tokenBudget - remaining;
+        return new Window(window, new MemoryStats(conversationId, stored.size(),
+                summary.map(ConversationSummary::summarizedMessages).orElse(0),
+                historyTokens, injected, Math.max(0, historyTokens - injected)));
+    }
+
+    /**
+     * Folds the messages older than the recent tier into the summary. The model is called without
+     * holding the lock; the result is only applied if those messages are still the oldest ones
+     * (the conversation was not cleared or trimmed meanwhile). The summary is saved before the
+     * messages are dropped, so a failure in between repeats context rather than losing it.
+     */
+    void compact(String conversationId) {
+        List<Message> stored = repository.findByConversationId(conversationId);
+        int older = stored.size() - recentMessages;
+        if (older < batchMessages) {
+            return;
+        }
+        List<Message> compacted = List.copyOf(stored.subList(0, older));
+        Optional<ConversationSummary> previous = summaries.find(conversationId);
+
+        long start = System.nanoTime();
+        String summary = summarize(previous.map(ConversationSummary::summary).orElse(null), compacted);
+        if (summary == null || summary.isBlank()) {
+            throw new IllegalStateException("The model returned an empty summary");
+        }
+
+        ReentrantLock lock = lock(conversationId);
+        lock.lock();
+        try {
+            List<Message> current = repository.findByConversationId(conversationId);
+            if (!startsWith(current, compacted)) {
+                return;
+            }
+            int compactedTokens = 0;
+            for (Message message : compacted) {
+                compactedTokens += tokens(message);
+            }
+            summaries.save(new ConversationSummary(conversationId, summary.strip(),
+                    previous.map(ConversationSummary::summarizedMessages).orElse(0) + compacted.size(),
+                    previous.map(ConversationSummary::summarizedTokens).orElse(0) + compactedTokens,
+                    Instant.now()));
+            repository.saveAll(conversationId, new ArrayList<>(current.subList(compacted.size(), current.size())));
+        } finally {
+            lock.unlock();
+        }
+        summaryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        summariesCreated.increment();
+    }
+
+    private String summarize(String previousSummary, List<Message> messages) {
+        StringBuilder transcript = new StringBuilder();
+        if (previousSummary != null) {
+            transcript.append("Previous summary:\n").append(previousSummary).append("\n\n");
+        }
+        transcript.append("New messages:\n");
+        for (Message message : messages) {
+            transcript.append(message.getMessageType().name()).append(": ").append(message.getText()).append('\n');
+        }
+        return summarizer.prompt()
+                .system(SUMMARIZE_INSTRUCTIONS.formatted(maxSummaryWords))
+                .user(transcript.toString())
+                .call()
+                .content();
+    }
+
+    private void compactQuietly(String conversationId) {
+        try {
+            compact(conversationId);
+        } catch (Exception e) {
+            summaryFailures.increment();
+            System.err.println("Chat memory summary failed for " + conversationId + ", will retry on the next turn: "
+                    + e.getMessage());
+        } finally {
+            pending.remove(conversationId);
+        }
+    }
+
+    private static boolean startsWith(List<Message> messages, List<Message> prefix) {
+        if (messages.size() < prefix.size()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.size(); i++) {
+            Message a = messages.get(i);
+            Message b = prefix.get(i);
+            // Messages read back from the database are new instances, compare what is stored
+            if (a != b && (a.getMessageType() != b.getMessageType() || !Objects.equals(a.getText(), b.getText()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int tokens(Message message) {
+        return tokenCounts.get(message, m -> m.getText() == null || m.getText().isEmpty() ? 0 : estimator.estimate(m.getText()));
+    }
+
+    private ReentrantLock lock(String conversationId) {
+        return locks[Math.floorMod(conversationId.hashCode(), LOCK_STRIPES)];
+    }
+
+    @Override
+    public void destroy() {
+        if (worker instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+}
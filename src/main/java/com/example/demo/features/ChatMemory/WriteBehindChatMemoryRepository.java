@@ -0,0 +1,225 @@
+package com.example.demo.features.ChatMemory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepositoryDialect;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ChatMemoryRepository decorator that keeps active conversations in memory and writes them
+ * to the JDBC repository in the background.
+ *
+ * - Reads: the pending (dirty) snapshot, then the hot cache, then the database.
+ * - Writes: only replace the in-memory snapshot. Several turns of one conversation within a
+ *   flush interval coalesce into a single write.
+ * - Flush: every {@code flushInterval} a background writer stores up to {@code batchSize}
+ *   conversations per transaction, with one batched DELETE and one batched INSERT, using the
+ *   same SQL and row layout as JdbcChatMemoryRepository.
+ *
+ * Durability window: a crash loses at most the last {@code flushInterval} of messages.
+ * A failed flush keeps the conversations dirty and is retried on the next tick.
+ * Dirty conversations are never dropped by cache eviction, because they live in a separate
+ * map until they are written.
+ */
+public class WriteBehindChatMemoryRepository implements ChatMemoryRepository, DisposableBean {
+
+    private final ChatMemoryRepository delegate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcChatMemoryRepositoryDialect dialect;
+    private final int batchSize;
+
+    private final Cache<String, List<Message>> hot;
+    private final Map<String, List<Message>> dirty = new ConcurrentHashMap<>();
+    // Flushes and deletes must not interleave, or a flush could resurrect a deleted conversation
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ScheduledExecutorService writer;
+
+    private final Counter memoryReads;
+    private final Counter databaseReads;
+    private final Timer flushTimer;
+
+    public WriteBehindChatMemoryRepository(ChatMemoryRepository delegate,
+                                           JdbcTemplate jdbcTemplate,
+                                           TransactionTemplate transactionTemplate,
+                                           JdbcChatMemoryRepositoryDialect dialect,
+                                           MeterRegistry meterRegistry,
+                                           int maxConversations,
+                                           Duration flushInterval,
+                                           int batchSize) {
+        this.delegate = delegate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.dialect = dialect;
+        this.batchSize = batchSize;
+        this.hot = Caffeine.newBuilder()
+                .maximumSize(maxConversations)
+                .build();
+
+        this.memoryReads = Counter.builder("chat.memory.reads").tag("source", "memory")
+                .description("Conversation reads served without a database round-trip").register(meterRegistry);
+        this.databaseReads = Counter.builder("chat.memory.reads").tag("source", "database")
+                .description("Conversation reads that went to the database").register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.memory.flush")
+                .description("Background batch writes of chat memory").register(meterRegistry);
+        Gauge.builder("chat.memory.dirty", dirty, Map::size)
+                .description("Conversations waiting to be written").register(meterRegistry);
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = Math.max(1, flushInterval.toMillis());
+        writer.scheduleWithFixedDelay(this::flushQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        Set<String> ids = new LinkedHashSet<>(delegate.findConversationIds());
+        ids.addAll(dirty.keySet());
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        List<Message> messages = dirty.get(conversationId);
+        if (messages == null) {
+            messages = hot.getIfPresent(conversationId);
+        }
+        if (messages != null) {
+            memoryReads.increment();
+            return new ArrayList<>(messages);
+        }
+        // Loaded under the cache's lock for this key: a snapshot saved meanwhile waits for the load
+        // and then replaces the stored rows, instead of being overwritten by them
+        return new ArrayList<>(hot.get(conversationId, this::load));
+    }
+
+    private List<Message> load(String conversationId) {
+        databaseReads.increment();
+        return List.copyOf(delegate.findByConversationId(conversationId));
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        List<Message> snapshot = List.copyOf(messages);
+        dirty.put(conversationId, snapshot);
+        hot.put(conversationId, snapshot);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        writeLock.lock();
+        try {
+            dirty.remove(conversationId);
+            hot.invalidate(conversationId);
+            delegate.deleteByConversationId(conversationId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code delete}, which removes SPRING_AI_CHAT_MEMORY rows of {@code conversationIds}
+     * directly (eg: retention jobs), so that nothing held here writes them back. Pending
+     * conversations are flushed first and no flush runs until the delete is done. The affected
+     * conversations are then dropped from the cache, so the next read sees the trimmed rows.
+     * Rows rewritten by that flush get fresh timestamps, so a delete selected earlier misses them.
+     */
+    public void deleteStored(Collection<String> conversationIds, Runnable delete) {
+        writeLock.lock();
+        try {
+            flush();
+            delete.run();
+            hot.invalidateAll(conversationIds);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes every pending conversation now. Called by the background writer and on shutdown.
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            while (!dirty.isEmpty()) {
+                List<Map.Entry<String, List<Message>>> batch = new ArrayList<>(batchSize);
+                for (Map.Entry<String, List<Message>> entry : dirty.entrySet()) {
+                    batch.add(Map.entry(entry.getKey(), entry.getValue()));
+                    if (batch.size() == batchSize) {
+                        break;
+                    }
+                }
+                flushTimer.record(() -> writeBatch(batch));
+                // Only clear what was written; a newer snapshot saved meanwhile stays dirty
+                for (Map.Entry<String, List<Message>> entry : batch) {
+                    dirty.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeBatch(List<Map.Entry<String, List<Message>>> batch) {
+        List<Object[]> deletes = new ArrayList<>(batch.size());
+        List<Object[]> inserts = new ArrayList<>();
+        for (Map.Entry<String, List<Message>> entry : batch) {
+            deletes.add(new Object[] {entry.getKey()});
+            // Same timestamps as JdbcChatMemoryRepository: one second apart, which keeps the order
+            long second = Instant.now().getEpochSecond();
+            for (Message message : entry.getValue()) {
+                inserts.add(new Object[] {entry.getKey(), message.getText(), message.getMessageType().name(),
+                        new Timestamp(second++ * 1000)});
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(dialect.getDeleteMessagesSql(), deletes);
+            jdbcTemplate.batchUpdate(dialect.getInsertMessageSql(), inserts);
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Chat memory flush failed, " + dirty.size() + " conversations will be retried: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+}
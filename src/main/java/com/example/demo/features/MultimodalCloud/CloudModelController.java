@@ -1,12 +1,15 @@
 package com.example.demo.features.MultimodalCloud;
 
+import com.example.demo.features.cache.ResponseCache;
+import com.example.demo.features.limits.ModelConcurrencyLimiter;
+import com.example.demo.features.observability.AiMetrics;
+import com.example.demo.features.runtime.ModelRuntimeManager;
+import com.example.demo.features.routing.ModelRouter;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.content.Media;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -18,30 +21,37 @@ public class CloudModelController {
 
     private final ChatClient googleClient;
     private final ChatClient ollamaClient;
+    private final ModelRouter modelRouter;
+    private final ImagePreprocessor imagePreprocessor;
 
-    public CloudModelController(@Qualifier("googleGenAiChatModel") ChatModel googleModel, @Qualifier("ollamaChatModel") ChatModel ollamaModel) {
-        this.googleClient = ChatClient.builder(googleModel).build();
-        this.ollamaClient = ChatClient.builder(ollamaModel).build();
+    public CloudModelController(@Qualifier("googleGenAiChatModel") ChatModel googleModel, @Qualifier("ollamaChatModel") ChatModel ollamaModel,
+                                ResponseCache responseCache, ModelConcurrencyLimiter concurrencyLimiter, ModelRuntimeManager runtimeManager, ModelRouter modelRouter,
+                                ImagePreprocessor imagePreprocessor, AiMetrics aiMetrics) {
+        this.modelRouter = modelRouter;
+        this.imagePreprocessor = imagePreprocessor;
+        // Separate cache namespaces so a Gemini answer is never served as an Ollama one (or vice versa).
+        // Image requests bypass the cache, the advisor skips prompts that carry media.
+        this.googleClient = ChatClient.builder(googleModel).defaultAdvisors(responseCache.advisor("gemini"), concurrencyLimiter.advisor("gemini"),
+                aiMetrics.advisor("cloud-generate", "gemini"), runtimeManager.advisor("gemini")).build();
+        this.ollamaClient = ChatClient.builder(ollamaModel).defaultAdvisors(responseCache.advisor("ollama"), concurrencyLimiter.advisor("ollama"),
+                aiMetrics.advisor("cloud-generate", "ollama"), runtimeManager.advisor("ollama")).build();
     }
 
     // API to query in general with cloud model
     @GetMapping("/generate")
     public String generate(@RequestParam String question) {
-        try {
-            // first use google Gemini 2.5 Lite first
-            return googleClient.prompt()
-                    .user(question)
-                    .call()
-                    .content();
-        } catch (Exception ex) {
-            // in case any exception occurs while using cloud gemini ai, like 404 error or 429
-            // fall back to local ollama ai model
-            System.err.println("Google AI unavailable: " + ex.getMessage());
-            return "[Ollama Fallback] " + ollamaClient.prompt()
-                    .user(question)
-                    .call()
-                    .content();
-        }
+        // first use google Gemini 2.5 Lite; the router falls back to local ollama when it fails
+        // (404, 429...) and skips Gemini entirely while its circuit breaker is open
+        ModelRouter.Routed<String> answer = modelRouter.execute("cloud-generate",
+                ModelRouter.route("gemini", () -> googleClient.prompt()
+                        .user(question)
+                        .call()
+                        .content()),
+                ModelRouter.route("ollama", () -> ollamaClient.prompt()
+                        .user(question)
+                        .call()
+                        .content()));
+        return answer.fellBack() ? "[Ollama Fallback] " + answer.value() : answer.value();
     }
 
     // API to analyse the image
@@ -56,11 +66,11 @@ public class CloudModelController {
 
         String finalQuestion = (question == null || question.isEmpty()) ? "Analyze this image in detail." : question;
 
-        // Mapping the incoming MultipartFile to a Spring AI Media resource
-        var imageMedia = new Media(
-                MimeTypeUtils.parseMimeType(file.getContentType()),
-                file.getResource()
-        );
+        // Downscale and re-encode the upload (streamed from the multipart temp file, size capped),
+        // so Gemini gets a few hundred KB instead of the original multi-MB screenshot.
+        // Reported as ai.vision.bytes, ai.vision.preprocess and ai.vision.cache
+        ImagePreprocessor.PreparedImage image = imagePreprocessor.prepare(file, file.getSize(), file.getContentType());
+        var imageMedia = image.toMedia();
 
         // Construct Multimodal Prompt using the Builder Pattern
         var userMessage = UserMessage.builder()
@@ -70,6 +80,7 @@ public class CloudModelController {
 
         // dispatch to google model
         return googleClient.prompt(new Prompt(userMessage))
+                .advisors(a -> a.param(AiMetrics.ENDPOINT, "cloud-vision"))
                 .call()
                 .content();
     }
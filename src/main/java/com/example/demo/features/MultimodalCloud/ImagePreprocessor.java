@@ -0,0 +1,313 @@
+package com.example.demo.features.MultimodalCloud;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.content.Media;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shrinks uploaded images before they are sent to a vision model.
+ *
+ * Phone screenshots are often several MB at 3000+ px, while Gemini scales images down on its
+ * side anyway; sending the original only costs upload time and tokens. Uploads are read as
+ * streams from the multipart temp file (never buffered whole on the heap) and capped at
+ * {@code max-upload-size}. Images larger than {@code max-dimension} or {@code max-bytes} are
+ * decoded with source subsampling, scaled to fit, and re-encoded as JPEG, lowering the quality
+ * (then the size) until the byte budget is met. Small images are passed through untouched.
+ *
+ * Results are cached by the SHA-256 of the upload, so the same screenshot asked about twice
+ * is processed once.
+ */
+@Component
+public class ImagePreprocessor {
+
+    /**
+     * An image ready for the model, and what preparing it cost.
+     */
+    public record PreparedImage(MimeType mimeType, byte[] data, int width, int height,
+                                long bytesIn, long preprocessNanos, boolean cached) {
+
+        public Media toMedia() {
+            return new Media(mimeType, new ByteArrayResource(data));
+        }
+
+        public long bytesOut() {
+            return data.length;
+        }
+    }
+
+    private record Processed(MimeType mimeType, byte[] data, int width, int height) {
+    }
+
+    private static final float[] JPEG_QUALITIES = {0.85f, 0.7f, 0.55f, 0.4f};
+
+    private final long maxUploadBytes;
+    private final int maxDimension;
+    private final long maxBytes;
+    private final Cache<String, Processed> cache;
+    private final MeterRegistry meterRegistry;
+    private final Timer preprocessTimer;
+
+    public ImagePreprocessor(MeterRegistry meterRegistry,
+                             @Value("${app.vision.max-upload-size:20MB}") DataSize maxUploadSize,
+                             @Value("${app.vision.max-dimension:1568}") int maxDimension,
+                             @Value("${app.vision.max-bytes:500KB}") DataSize maxBytes,
+                             @Value("${app.vision.cache.max-size:32MB}") DataSize cacheSize) {
+        this.meterRegistry = meterRegistry;
+        this.maxUploadBytes = maxUploadSize.toBytes();
+        this.maxDimension = maxDimension;
+        this.maxBytes = maxBytes.toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(cacheSize.toBytes())
+                .weigher((String key, Processed value) -> value.data().length)
+                .build();
+        this.preprocessTimer = Timer.builder("ai.vision.preprocess")
+                .description("Time to hash, decode, scale and re-encode an uploaded image")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Prepares an upload for a vision model.
+     *
+     * @param upload       the uploaded file; it is read twice (hash, then decode), which multipart
+     *                     temp files support.
+     * @param declaredSize the size the client declared, checked before anything is read.
+     * @param contentType  the content type the client declared.
+     * @throws ResponseStatusException 413 above {@code max-upload-size}, 415 when the upload
+     *                                 is not an image that can be processed or passed through.
+     */
+    public PreparedImage prepare(InputStreamSource upload, long declaredSize, String contentType) throws IOException {
+        if (declaredSize > maxUploadBytes) {
+            throw tooLarge();
+        }
+        long start = System.nanoTime();
+
+        // Pass 1: hash the stream (also the real size check, the declared size can lie)
+        MessageDigest digest = sha256();
+        long bytesIn;
+        try (InputStream in = new DigestInputStream(new CappedInputStream(upload.getInputStream(), maxUploadBytes), digest)) {
+            bytesIn = in.transferTo(OutputStream.nullOutputStream());
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        Processed processed = cache.getIfPresent(hash);
+        boolean cached = processed != null;
+        if (!cached) {
+            processed = process(upload, bytesIn, contentType);
+            cache.put(hash, processed);
+        }
+        long elapsed = System.nanoTime() - start;
+        record(bytesIn, processed.data().length, elapsed, cached);
+        return new PreparedImage(processed.mimeType(), processed.data(), processed.width(), processed.height(),
+                bytesIn, elapsed, cached);
+    }
+
+    private Processed process(InputStreamSource upload, long bytesIn, String contentType) throws IOException {
+        try (InputStream stream = upload.getInputStream();
+             ImageInputStream input = ImageIO.createImageInputStream(stream)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                // A format ImageIO cannot read (eg: WebP): fine as long as it is small already
+                return passThrough(upload, bytesIn, contentType, 0, 0);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                String format = reader.getFormatName().toLowerCase();
+                boolean passable = format.equals("jpeg") || format.equals("png");
+                if (passable && bytesIn <= maxBytes && Math.max(width, height) <= maxDimension) {
+                    return passThrough(upload, bytesIn, "image/" + format, width, height);
+                }
+
+                // Decode every n-th pixel straight away, a 4000 px image never exists in memory
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / maxDimension);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                return encodeWithinBudget(image);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private Processed passThrough(InputStreamSource upload, long bytesIn, String contentType,
+                                  int width, int height) throws IOException {
+        if (bytesIn > maxBytes || contentType == null || !contentType.startsWith("image/")) {
+            throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                    "Expected a JPEG or PNG image, or any image of at most " + DataSize.ofBytes(maxBytes).toKilobytes() + " KB");
+        }
+        try (InputStream in = upload.getInputStream()) {
+            return new Processed(MimeTypeUtils.parseMimeType(contentType), in.readAllBytes(), width, height);
+        }
+    }
+
+    /**
+     * JPEG at falling quality until it fits {@code max-bytes}; when even the lowest quality is
+     * too big, the image is scaled down by a quarter and the qualities are tried again.
+     */
+    private Processed encodeWithinBudget(BufferedImage image) throws IOException {
+        BufferedImage current = scaleToFit(image, maxDimension);
+        while (true) {
+            byte[] encoded = null;
+            for (float quality : JPEG_QUALITIES) {
+                encoded = encodeJpeg(current, quality);
+                if (encoded.length <= maxBytes) {
+                    return new Processed(MimeTypeUtils.IMAGE_JPEG, encoded, current.getWidth(), current.getHeight());
+                }
+            }
+            int longEdge = Math.max(current.getWidth(), current.getHeight());
+            if (longEdge <= 64) {
+                return new Processed(MimeTypeUtils.IMAGE_JPEG, encoded, current.getWidth(), current.getHeight());
+            }
+            current = scaleToFit(current, longEdge * 3 / 4);
+        }
+    }
+
+    /**
+     * Scales to fit {@code maxEdge} with bilinear filtering, onto an opaque RGB canvas (JPEG has
+     * no alpha; transparent screenshots get a white background).
+     */
+    static BufferedImage scaleToFit(BufferedImage image, int maxEdge) {
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        if (scale == 1.0 && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void record(long bytesIn, long bytesOut, long nanos, boolean cached) {
+        bytes("in").record(bytesIn);
+        bytes("out").record(bytesOut);
+        preprocessTimer.record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("ai.vision.cache")
+                .description("Image pre-processing cache lookups")
+                .tag("result", cached ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private DistributionSummary bytes(String direction) {
+        return DistributionSummary.builder("ai.vision.bytes")
+                .description("Image size as uploaded (in) and as sent to the model (out)")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    private ResponseStatusException tooLarge() {
+        return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "Images are limited to " + DataSize.ofBytes(maxUploadBytes).toMegabytes() + " MB");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Fails with 413 as soon as more than {@code limit} bytes have been read.
+     */
+    private final class CappedInputStream extends FilterInputStream {
+        private final long limit;
+        private long read;
+
+        CappedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) {
+            read += n;
+            if (read > limit) {
+                throw tooLarge();
+            }
+        }
+    }
+}
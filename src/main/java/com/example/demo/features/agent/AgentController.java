@@ -1,7 +1,13 @@
 package com.example.demo.features.agent;
 
+import com.example.demo.features.limits.ModelConcurrencyLimiter;
+import com.example.demo.features.limits.PriorityClass;
+import com.example.demo.features.observability.AiMetrics;
+import com.example.demo.features.runtime.ModelRuntimeManager;
+import com.example.demo.features.routing.ModelRouter;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.tool.ToolCallback;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,35 +29,42 @@ public class AgentController {
 
     private final ChatClient ollamaAgentClient;
 
-    public AgentController(@Qualifier("ollamaChatModel") ChatModel ollamaModel, @Qualifier("googleGenAiChatModel") ChatModel googlemodel, SystemInfoTool systemTool) {
+    private final ModelRouter modelRouter;
+
+    public AgentController(@Qualifier("ollamaChatModel") ChatModel ollamaModel, @Qualifier("googleGenAiChatModel") ChatModel googlemodel, SystemInfoTool systemTool,
+                           ModelConcurrencyLimiter concurrencyLimiter, ModelRuntimeManager runtimeManager, ModelRouter modelRouter,
+                           ParallelToolCallingManager toolCallingManager, AiMetrics aiMetrics) {
+
+        this.modelRouter = modelRouter;
+
+        // Tool calls of one turn run concurrently, with the caching/timeouts declared by @ToolPolicy
+        ToolCallback[] tools = toolCallingManager.toolCallbacks(systemTool);
 
         this.googleAgentClient = ChatClient.builder(googlemodel)  // using google gemini
-                .defaultTools(systemTool)  // register the tool
+                .defaultToolCallbacks(tools)  // register the tool
+                .defaultAdvisors(concurrencyLimiter.advisor("gemini"), aiMetrics.advisor("agent", "gemini"), runtimeManager.advisor("gemini"))
                 .build();
 
         this.ollamaAgentClient = ChatClient.builder(ollamaModel)
                 .defaultSystem(toolSystemPrompt)
-                .defaultTools(systemTool)
+                .defaultToolCallbacks(tools)
+                .defaultAdvisors(concurrencyLimiter.advisor("ollama", PriorityClass.STANDARD), aiMetrics.advisor("agent", "ollama"),
+                        runtimeManager.advisor("ollama"))
                 .build();
     }
 
     @GetMapping("/ask")
     public String askWithFallback(@RequestParam String question) {
-        try {
-            String resp = googleAgentClient.prompt()
-                    .user(question)
-                    .call()
-                    .content();
-            return resp + " provided by google gemini model";
-        } catch (Exception ex) {
-
-            // Check if it's a Quota/429 error
-            System.err.println("Gemini Quota Exceeded! Falling back to Ollama...");
-            String resp = ollamaAgentClient
-                    .prompt()
-                    .user(question)
-                    .call().content();
-            return resp + " provided by ollama model";
-        }
+        // Gemini first; on a Quota/429 error (or while Gemini's circuit is open) the router uses Ollama
+        ModelRouter.Routed<String> answer = modelRouter.execute("agent",
+                ModelRouter.route("gemini", () -> googleAgentClient.prompt()
+                        .user(question)
+                        .call()
+                        .content()),
+                ModelRouter.route("ollama", () -> ollamaAgentClient
+                        .prompt()
+                        .user(question)
+                        .call().content()));
+        return answer.value() + (answer.fellBack() ? " provided by ollama model" : " provided by google gemini model");
     }
 }
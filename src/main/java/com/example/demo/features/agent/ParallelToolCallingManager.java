@@ -0,0 +1,293 @@
+package com.example.demo.features.agent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.ai.tool.support.ToolUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the tool calls of a model turn concurrently, with per-tool result caching and timeouts.
+ *
+ * Spring AI's default manager executes the calls of one turn one after another, so every
+ * monitoring tool added to the agent adds its latency to the answer. This manager replaces it
+ * (the auto-configuration backs off when a {@link ToolCallingManager} bean exists) and starts
+ * every call of a turn on its own virtual thread; the turn takes as long as its slowest tool.
+ * Responses are returned in the order the model asked for them.
+ *
+ * Tools registered through {@link #toolCallbacks(Object...)} may declare a {@link ToolPolicy}:
+ * results of idempotent tools are reused for {@code cacheTtl} per tool and arguments, and a
+ * tool that does not answer within its {@code timeout} is reported to the model as such
+ * instead of holding up the whole answer.
+ */
+@Component
+public class ParallelToolCallingManager implements ToolCallingManager, DisposableBean {
+
+    /**
+     * Resolved {@link ToolPolicy} of one tool; {@code cacheTtl} is zero when results are not cached.
+     */
+    record Policy(Duration cacheTtl, Duration timeout) {
+    }
+
+    private record CachedResult(String value, Duration ttl) {
+    }
+
+    private final ToolCallbackResolver toolCallbackResolver;
+    private final ToolExecutionExceptionProcessor exceptionProcessor;
+    private final MeterRegistry meterRegistry;
+    private final Duration defaultTimeout;
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+    private final Cache<String, CachedResult> results;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final DistributionSummary callsPerTurn;
+
+    public ParallelToolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                      ToolExecutionExceptionProcessor exceptionProcessor,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.agent.tools.timeout:10s}") Duration defaultTimeout,
+                                      @Value("${app.agent.tools.cache.max-entries:1000}") long maxCachedResults) {
+        this.toolCallbackResolver = toolCallbackResolver;
+        this.exceptionProcessor = exceptionProcessor;
+        this.meterRegistry = meterRegistry;
+        this.defaultTimeout = defaultTimeout;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(maxCachedResults)
+                .expireAfter(Expiry.creating((String key, CachedResult result) -> result.ttl()))
+                .build();
+        this.callsPerTurn = DistributionSummary.builder("ai.agent.tool.calls")
+                .description("Tool calls the model requested in one turn")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tool callbacks for the {@code @Tool} methods of {@code toolObjects} (as
+     * {@link ToolCallbacks#from}), recording their {@link ToolPolicy}s.
+     */
+    public ToolCallback[] toolCallbacks(Object... toolObjects) {
+        for (Object toolObject : toolObjects) {
+            ReflectionUtils.doWithMethods(ClassUtils.getUserClass(toolObject), method -> {
+                ToolPolicy policy = method.getAnnotation(ToolPolicy.class);
+                policies.put(ToolUtils.getToolName(method), new Policy(
+                        policy == null ? Duration.ZERO : parse(policy.cacheTtl(), Duration.ZERO),
+                        policy == null ? defaultTimeout : parse(policy.timeout(), defaultTimeout)));
+            }, method -> method.isAnnotationPresent(Tool.class));
+        }
+        return ToolCallbacks.from(toolObjects);
+    }
+
+    private static Duration parse(String value, Duration fallback) {
+        return StringUtils.hasText(value) ? DurationStyle.detectAndParse(value) : fallback;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        List<ToolCallback> callbacks = new ArrayList<>(chatOptions.getToolCallbacks());
+        for (String toolName : chatOptions.getToolNames()) {
+            if (callbacks.stream().anyMatch(callback -> callback.getToolDefinition().name().equals(toolName))) {
+                continue;
+            }
+            ToolCallback callback = toolCallbackResolver.resolve(toolName);
+            if (callback == null) {
+                throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
+            }
+            callbacks.add(callback);
+        }
+        return callbacks.stream().map(ToolCallback::getToolDefinition).toList();
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(output -> output != null && output.hasToolCalls())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(AssistantMessage.builder()
+                .content(assistantMessage.getText())
+                .properties(assistantMessage.getMetadata())
+                .toolCalls(assistantMessage.getToolCalls())
+                .build());
+        ToolContext toolContext = toolContext(prompt, history);
+        List<ToolCallback> available = prompt.getOptions() instanceof ToolCallingChatOptions options
+                ? options.getToolCallbacks() : List.of();
+
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        callsPerTurn.record(toolCalls.size());
+        List<PendingCall> pending = new ArrayList<>(toolCalls.size());
+        boolean returnDirect = true;
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            ToolCallback callback = available.stream()
+                    .filter(candidate -> candidate.getToolDefinition().name().equals(toolCall.name()))
+                    .findFirst()
+                    .orElseGet(() -> toolCallbackResolver.resolve(toolCall.name()));
+            if (callback == null) {
+                throw new IllegalStateException("No ToolCallback found for tool name: " + toolCall.name());
+            }
+            returnDirect &= callback.getToolMetadata().returnDirect();
+            pending.add(start(toolCall, callback, toolContext));
+        }
+
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(pending.size());
+        for (PendingCall call : pending) {
+            responses.add(new ToolResponseMessage.ToolResponse(
+                    call.toolCall.id() == null ? "" : call.toolCall.id(), call.toolCall.name(), call.await()));
+        }
+        history.add(ToolResponseMessage.builder().responses(responses).build());
+        return ToolExecutionResult.builder().conversationHistory(history).returnDirect(returnDirect).build();
+    }
+
+    private static ToolContext toolContext(Prompt prompt, List<Message> history) {
+        Map<String, Object> context = Map.of();
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options
+                && !CollectionUtils.isEmpty(options.getToolContext())) {
+            context = new HashMap<>(options.getToolContext());
+            context.put(ToolContext.TOOL_CALL_HISTORY, List.copyOf(history));
+        }
+        return new ToolContext(context);
+    }
+
+    /**
+     * Serves the call from the cache or starts it on a virtual thread.
+     */
+    private PendingCall start(AssistantMessage.ToolCall toolCall, ToolCallback callback, ToolContext toolContext) {
+        String name = toolCall.name();
+        String arguments = StringUtils.hasText(toolCall.arguments()) ? toolCall.arguments() : "{}";
+        Policy policy = policies.getOrDefault(name, new Policy(Duration.ZERO, defaultTimeout));
+        String cacheKey = name + '\u0000' + arguments;
+
+        if (!policy.cacheTtl().isZero()) {
+            CachedResult cached = results.getIfPresent(cacheKey);
+            cacheCounter(name, cached != null ? "hit" : "miss").increment();
+            if (cached != null) {
+                return new PendingCall(toolCall, null, cached.value(), policy, 0);
+            }
+        }
+        long startNanos = System.nanoTime();
+        Future<String> future = executor.submit(() -> {
+            String result = callback.call(arguments, toolContext);
+            latencyTimer(name).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            if (!policy.cacheTtl().isZero()) {
+                results.put(cacheKey, new CachedResult(result, policy.cacheTtl()));
+            }
+            return result;
+        });
+        return new PendingCall(toolCall, future, null, policy, startNanos);
+    }
+
+    /**
+     * One tool call of the current turn, either already answered from the cache or running.
+     */
+    private final class PendingCall {
+        final AssistantMessage.ToolCall toolCall;
+        final Future<String> future;
+        final String cachedResult;
+        final Policy policy;
+        final long startNanos;
+
+        PendingCall(AssistantMessage.ToolCall toolCall, Future<String> future, String cachedResult,
+                    Policy policy, long startNanos) {
+            this.toolCall = toolCall;
+            this.future = future;
+            this.cachedResult = cachedResult;
+            this.policy = policy;
+            this.startNanos = startNanos;
+        }
+
+        String await() {
+            if (future == null) {
+                return cachedResult;
+            }
+            // All calls started together, so each one only waits out the rest of its own timeout
+            long remaining = policy.timeout().toNanos() - (System.nanoTime() - startNanos);
+            try {
+                return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                Counter.builder("ai.agent.tool.timeouts")
+                        .description("Tool calls that did not answer within their timeout")
+                        .tag("tool", toolCall.name())
+                        .register(meterRegistry)
+                        .increment();
+                return "Error: the tool " + toolCall.name() + " did not answer within "
+                        + policy.timeout().toMillis() + " ms";
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for tool " + toolCall.name(), e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ToolExecutionException toolException) {
+                    // Same as the default manager: the processor turns it into a message for the model (or rethrows)
+                    return exceptionProcessor.process(toolException);
+                }
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new IllegalStateException("Tool " + toolCall.name() + " failed", e.getCause());
+            }
+        }
+    }
+
+    private Timer latencyTimer(String tool) {
+        return Timer.builder("ai.agent.tool.latency")
+                .description("Tool execution time")
+                .tag("tool", tool)
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+    }
+
+    private Counter cacheCounter(String tool, String result) {
+        return Counter.builder("ai.agent.tool.cache")
+                .description("Tool result cache lookups")
+                .tag("tool", tool)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
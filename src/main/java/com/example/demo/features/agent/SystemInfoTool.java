@@ -2,77 +2,76 @@ package com.example.demo.features.agent;
 
 import org.springframework.stereotype.Service;
 import org.springframework.ai.tool.annotation.Tool;
-import java.lang.management.ManagementFactory;
-import com.sun.management.OperatingSystemMXBean;
+
 /**
  * SystemInfoTool - Provides real-time system health metrics for AI assistant
  *
- * Issue: 500ms Thread.sleep() in getSystemStatus() creates visible latency in AI response.
- * Proposed Solution: Move measurement logic to a @Scheduled background task that runs every second.
- * Cache the results in a thread-safe variable so the @Tool can return data instantly without blocking.
+ * Measurements come from {@link SystemMetricsSampler}, which reads the OS/JVM beans every
+ * second in the background. The @Tool just formats the latest snapshot, so it returns
+ * instantly instead of sleeping 500ms for a stable CPU reading.
  */
 @Service
 public class SystemInfoTool {
 
+    private static final long MB = 1024 * 1024;
+
+    private final SystemMetricsSampler sampler;
+
+    public SystemInfoTool(SystemMetricsSampler sampler) {
+        this.sampler = sampler;
+    }
+
     /**
-     * Retrieves current system CPU usage and available memory.
+     * Reports current CPU usage and memory, plus averages and the CPU trend over the
+     * sampler's window (the last minute by default).
      * This method is exposed as a tool that AI can call to check system health.
      *
-     * Current Implementation Issue:
-     * - Thread.sleep(500) blocks the calling thread for 500ms on every invocation
-     * - This delay is necessary because getCpuLoad() needs time to calculate accurate CPU usage
-     * - Creates noticeable latency in AI responses
+     * The sampler refreshes once a second, so a result can be reused for that long.
      *
      * @return String containing formatted system status with CPU percentage and RAM in MB
      */
-    @Tool(description = "Get the current system CPU usage and total available system memory")
+    @ToolPolicy(cacheTtl = "1s", timeout = "2s")
+    @Tool(description = "Get the current system CPU usage, available memory, JVM heap and thread count, "
+            + "plus the average CPU usage and trend over the last minute")
     public String getSystemStatus() {
+        SystemSnapshot s = sampler.latest();
 
-        // Cast ManagementFactory bean to Sun-specific OperatingSystemMXBean
-        // This gives us access to getCpuLoad() and memory methods not available in standard MXBean
-        OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
-
-        // First call to getCpuLoad() - initializes the CPU measurement baseline
-        // The first call often returns 0 or inaccurate values, so we discard this result
-        osBean.getCpuLoad();
-
-        try {
-            // Sleep for 500ms to allow CPU load calculation to stabilize
-            // TODO: Replace with background @Scheduled task to eliminate this blocking delay
-            Thread.sleep(500);
-        } catch (InterruptedException e) {
-            // Restore interrupted status if thread is interrupted during sleep
-            Thread.currentThread().interrupt();
+        StringBuilder status = new StringBuilder("Current System Health: CPU Usage is :")
+                .append(percent(s.cpuLoad()))
+                .append(" Free RAM is :").append(s.freeMemoryBytes() / MB).append("MB out of ")
+                .append(s.totalMemoryBytes() / MB).append("MB");
+        if (s.loadAverage() >= 0) {
+            status.append(". Load average is ").append(Math.round(s.loadAverage() * 100) / 100.0);
         }
-
-        // Second call to getCpuLoad() - returns actual CPU usage as a decimal (0.0 to 1.0)
-        // Where 0.0 = 0% CPU usage and 1.0 = 100% CPU usage
-        double cpu = osBean.getCpuLoad();
-
-        // Fallback: Some fast systems still return 0 after sleep
-        // Make one more attempt to get a valid reading
-        if (cpu <= 0) {
-            cpu = osBean.getCpuLoad();
+        status.append(". JVM heap uses ").append(s.heapUsedBytes() / MB).append("MB");
+        if (s.heapMaxBytes() > 0) {
+            status.append(" of ").append(s.heapMaxBytes() / MB).append("MB");
         }
+        status.append(", ").append(s.threadCount()).append(" platform threads");
 
-        // Get free physical memory (RAM) for the entire system (not just JVM heap)
-        // Convert from bytes to megabytes by dividing by (1024 * 1024)
-        long freeRAM = osBean.getFreeMemorySize() / (1024 * 1024);
-
-        // Get total physical memory installed on the system
-        // Also convert from bytes to megabytes
-        long totalRAM = osBean.getTotalMemorySize() / (1024 * 1024);
+        // Window summary, eg: "CPU averaged 80% over the last 60 seconds (peak 95%), rising"
+        if (s.windowSamples() > 1 && s.cpuAverage() >= 0) {
+            status.append(". CPU averaged ").append(percent(s.cpuAverage()))
+                    .append(" over the last ").append(Math.max(1, s.windowMillis() / 1000)).append(" seconds")
+                    .append(" (peak ").append(percent(s.cpuMax())).append("), ").append(trend(s.cpuTrend()))
+                    .append("; ").append(s.gcTimeMsInWindow()).append("ms spent in GC");
+        }
+        return status.toString();
+    }
 
-        // Debug output to console (TODO: Replace with proper logging framework)
-        System.out.println("cpu" + cpu * 100);
-        System.out.println("freeRam" + freeRAM);
-        System.out.println("totalRam" + totalRAM);
+    private static String percent(double load) {
+        // Math.max(0, ...) ensures we never return negative CPU percentages
+        return Math.round(Math.max(0, load) * 1000) / 10.0 + "%";
+    }
 
-        // Return formatted string with system metrics
-        // Math.max(0, cpu * 100) ensures we never return negative CPU percentages
-        // Multiply cpu by 100 to convert from decimal (0.0-1.0) to percentage (0-100)
-        return "Current System Health: CPU Usage is :" + Math.max(0, cpu * 100)
-                + " Free RAM is :" + freeRAM + "MB out of" + totalRAM + "MB";
+    private static String trend(double delta) {
+        // Less than 5 percentage points between the two halves of the window is noise
+        if (delta > 0.05) {
+            return "rising";
+        }
+        if (delta < -0.05) {
+            return "falling";
+        }
+        return "steady";
     }
 }
-
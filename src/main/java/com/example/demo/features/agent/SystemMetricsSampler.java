@@ -0,0 +1,132 @@
+package com.example.demo.features.agent;
+
+import com.sun.management.OperatingSystemMXBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Samples CPU, memory, load average, JVM heap/GC and thread counts on a fixed schedule.
+ *
+ * getCpuLoad() only returns a meaningful value when it is called repeatedly over time, which
+ * used to cost every tool call a 500 ms sleep. Sampling on a schedule gives that spacing for
+ * free. Each sample is published as an immutable {@link SystemSnapshot} through an
+ * AtomicReference, so readers never lock, wait or allocate.
+ *
+ * Recent samples are kept in primitive ring buffers owned by the (single) scheduler thread;
+ * window averages and trends are computed there, once per sample, not on the read path.
+ */
+@Component
+public class SystemMetricsSampler {
+
+    private final OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final AtomicReference<SystemSnapshot> latest = new AtomicReference<>();
+
+    // Ring buffers, written only from sample()
+    private final long[] timestamps;
+    private final double[] cpu;
+    private final long[] heapUsed;
+    private final long[] gcTime;
+    private int next;
+    private int count;
+
+    public SystemMetricsSampler(@Value("${app.system-sampler.window:60}") int windowSize) {
+        this.timestamps = new long[windowSize];
+        this.cpu = new double[windowSize];
+        this.heapUsed = new long[windowSize];
+        this.gcTime = new long[windowSize];
+        // First getCpuLoad() call only sets the baseline; publish something right away anyway
+        sample();
+    }
+
+    /**
+     * Latest snapshot. Lock-free and allocation-free.
+     */
+    public SystemSnapshot latest() {
+        return latest.get();
+    }
+
+    @Scheduled(fixedRateString = "${app.system-sampler.interval-ms:1000}")
+    public synchronized void sample() {
+        long now = System.currentTimeMillis();
+        double cpuLoad = osBean.getCpuLoad();
+        MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+
+        long gcCount = 0;
+        long gcTimeMs = 0;
+        for (GarbageCollectorMXBean gc : gcBeans) {
+            gcCount += Math.max(0, gc.getCollectionCount());
+            gcTimeMs += Math.max(0, gc.getCollectionTime());
+        }
+
+        timestamps[next] = now;
+        cpu[next] = cpuLoad;
+        heapUsed[next] = heap.getUsed();
+        gcTime[next] = gcTimeMs;
+        next = (next + 1) % cpu.length;
+        count = Math.min(count + 1, cpu.length);
+
+        // Walk the window oldest -> newest
+        int oldest = (next - count + cpu.length) % cpu.length;
+        int half = count / 2;
+        double cpuSum = 0;
+        double cpuMax = 0;
+        double olderSum = 0;
+        double newerSum = 0;
+        int valid = 0;
+        int olderValid = 0;
+        int newerValid = 0;
+        long heapSum = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = (oldest + i) % cpu.length;
+            heapSum += heapUsed[slot];
+            double value = cpu[slot];
+            if (value < 0) {
+                continue; // not reported by this OS/sample
+            }
+            cpuSum += value;
+            cpuMax = Math.max(cpuMax, value);
+            valid++;
+            if (i < half) {
+                olderSum += value;
+                olderValid++;
+            } else {
+                newerSum += value;
+                newerValid++;
+            }
+        }
+        double cpuTrend = olderValid == 0 || newerValid == 0 ? 0 : newerSum / newerValid - olderSum / olderValid;
+
+        latest.set(new SystemSnapshot(
+                now,
+                cpuLoad,
+                osBean.getProcessCpuLoad(),
+                osBean.getFreeMemorySize(),
+                osBean.getTotalMemorySize(),
+                osBean.getSystemLoadAverage(),
+                heap.getUsed(),
+                heap.getMax(),
+                gcCount,
+                gcTimeMs,
+                threadBean.getThreadCount(),
+                count,
+                now - timestamps[oldest],
+                valid == 0 ? -1 : cpuSum / valid,
+                cpuMax,
+                cpuTrend,
+                heapSum / count,
+                gcTimeMs - gcTime[oldest]));
+    }
+}
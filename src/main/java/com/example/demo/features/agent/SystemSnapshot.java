@@ -0,0 +1,33 @@
+package com.example.demo.features.agent;
+
+/**
+ * Immutable reading published by {@link SystemMetricsSampler}. The window fields summarize the
+ * last {@code windowSamples} samples, so readers get averages and trends without any work.
+ *
+ * @param cpuLoad          System CPU usage, 0.0 to 1.0 (negative if the OS does not report it).
+ * @param loadAverage      1 minute system load average, or -1 where unsupported (Windows).
+ * @param cpuAverage       Mean CPU usage over the window.
+ * @param cpuMax           Highest CPU usage over the window.
+ * @param cpuTrend         Mean of the newer half of the window minus mean of the older half.
+ * @param heapUsedAverage  Mean JVM heap usage over the window, in bytes.
+ * @param gcTimeMsInWindow Milliseconds spent in GC over the window.
+ */
+public record SystemSnapshot(long timestampMillis,
+                             double cpuLoad,
+                             double processCpuLoad,
+                             long freeMemoryBytes,
+                             long totalMemoryBytes,
+                             double loadAverage,
+                             long heapUsedBytes,
+                             long heapMaxBytes,
+                             long gcCount,
+                             long gcTimeMs,
+                             int threadCount,
+                             int windowSamples,
+                             long windowMillis,
+                             double cpuAverage,
+                             double cpuMax,
+                             double cpuTrend,
+                             long heapUsedAverage,
+                             long gcTimeMsInWindow) {
+}
@@ -0,0 +1,31 @@
+package com.example.demo.features.agent;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Execution rules for a {@code @Tool} method, applied by {@link ParallelToolCallingManager}
+ * to tools registered through {@link ParallelToolCallingManager#toolCallbacks(Object...)}.
+ *
+ * Durations use Spring Boot's format, eg: "500ms", "2s", "1m".
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ToolPolicy {
+
+    /**
+     * How long a result may be reused for the same arguments. Only for idempotent tools;
+     * empty (the default) disables caching.
+     */
+    String cacheTtl() default "";
+
+    /**
+     * How long the model waits for the tool before it is told the tool did not answer.
+     * Empty uses {@code app.agent.tools.timeout}.
+     */
+    String timeout() default "";
+}
@@ -0,0 +1,152 @@
+package com.example.demo.features.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared store behind every {@link ResponseCacheAdvisor}.
+ *
+ * Entries live in one Caffeine cache (W-TinyLFU admission, size + TTL eviction), so all chat
+ * clients share a single memory bound. Lookups are exact first; when semantic matching is on,
+ * a miss falls back to the closest cached question with the same scope (namespace, system
+ * prompt, options, conversation) whose embedding is above the threshold.
+ */
+@Component
+public class ResponseCache {
+
+    /**
+     * A cached answer. {@code scope} is everything in the key except the user text, so
+     * semantic matches never cross models, system prompts or conversations.
+     */
+    record Entry(String scope, float[] embedding, ChatResponse response) {
+    }
+
+    private final Cache<String, Entry> cache;
+    private final EmbeddingModel embeddingModel;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final boolean semantic;
+    private final double semanticThreshold;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public ResponseCache(EmbeddingModel embeddingModel,
+                         MeterRegistry meterRegistry,
+                         @Value("${app.cache.response.enabled:true}") boolean enabled,
+                         @Value("${app.cache.response.max-entries:1000}") long maxEntries,
+                         @Value("${app.cache.response.ttl:10m}") Duration ttl,
+                         @Value("${app.cache.response.semantic.enabled:false}") boolean semantic,
+                         @Value("${app.cache.response.semantic.threshold:0.95}") double semanticThreshold) {
+        this.embeddingModel = embeddingModel;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.semantic = semantic;
+        this.semanticThreshold = semanticThreshold;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .build();
+        Gauge.builder("ai.response.cache.size", cache, Cache::estimatedSize)
+                .description("Cached model responses")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Advisor that caches responses of one chat client. {@code namespace} keeps clients for
+     * different models apart even when their prompts carry no explicit model option.
+     */
+    public ResponseCacheAdvisor advisor(String namespace) {
+        return new ResponseCacheAdvisor(this, namespace);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    boolean isSemantic() {
+        return semantic;
+    }
+
+    ChatResponse get(String key) {
+        Entry entry = cache.getIfPresent(key);
+        return entry == null ? null : entry.response();
+    }
+
+    /**
+     * Best cached answer in {@code scope} whose question embedding is at least
+     * {@code semanticThreshold} similar (cosine) to {@code embedding}, or null.
+     */
+    ChatResponse getSimilar(String scope, float[] embedding) {
+        Entry best = null;
+        double bestScore = semanticThreshold;
+        for (Entry entry : cache.asMap().values()) {
+            if (entry.embedding() == null || !entry.scope().equals(scope)) {
+                continue;
+            }
+            double score = dot(embedding, entry.embedding());
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+        return best == null ? null : best.response();
+    }
+
+    void put(String key, String scope, float[] embedding, ChatResponse response) {
+        cache.put(key, new Entry(scope, embedding, response));
+    }
+
+    /**
+     * Unit-length embedding of the question, so similarity is a plain dot product.
+     */
+    float[] embed(String text) {
+        float[] vector = embeddingModel.embed(text);
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = vector[i] * scale;
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Counts lookups as ai.response.cache{namespace, result=hit|semantic_hit|miss}.
+     */
+    void record(String namespace, String result) {
+        counters.computeIfAbsent(namespace + ":" + result, k -> Counter.builder("ai.response.cache")
+                        .description("Model response cache lookups")
+                        .tag("namespace", namespace)
+                        .tag("result", result)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.demo.features.cache;
+
+import com.example.demo.features.routing.RoutedCall;
+import org.springframework.ai.chat.client.ChatClientMessageAggregator;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.content.MediaContent;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * ChatClient advisor that answers repeated questions from the {@link ResponseCache}.
+ *
+ * Key = namespace + conversation id + model options + every prompt message except the last
+ * user message (the "scope"), followed by the last user message itself. Requests with media
+ * or tools are passed through untouched: images are not part of the key and tool results
+ * (eg: live system status) must not be replayed.
+ *
+ * The advisor runs first, before MessageChatMemoryAdvisor would add the conversation history,
+ * so history is never part of the key. It is only used on clients without chat memory; a
+ * client with memory would replay answers given for a different history.
+ *
+ * On the streaming path a hit is replayed as a one-element Flux; a miss is aggregated and
+ * only stored once the stream completes normally.
+ */
+public class ResponseCacheAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ResponseCache cache;
+    private final String namespace;
+
+    ResponseCacheAdvisor(ResponseCache cache, String namespace) {
+        this.cache = cache;
+        this.namespace = namespace;
+    }
+
+    private record Lookup(String key, String scope, float[] embedding, ChatResponse cached) {
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        if (!cache.isEnabled() || !isCacheable(request.prompt())) {
+            return chain.nextCall(request);
+        }
+        Lookup lookup = lookup(request);
+        if (lookup.cached() != null) {
+            RoutedCall.servedFromCache();
+            return ChatClientResponse.builder().chatResponse(lookup.cached()).context(request.context()).build();
+        }
+        ChatClientResponse response = chain.nextCall(request);
+        store(lookup, response);
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        if (!cache.isEnabled() || !isCacheable(request.prompt())) {
+            return chain.nextStream(request);
+        }
+        // Deferred so the lookup happens per subscription, not when the Flux is assembled
+        return Flux.defer(() -> {
+            Lookup lookup = lookup(request);
+            if (lookup.cached() != null) {
+                return Flux.just(ChatClientResponse.builder().chatResponse(lookup.cached()).context(request.context()).build());
+            }
+            return new ChatClientMessageAggregator()
+                    .aggregateChatClientResponse(chain.nextStream(request), aggregated -> store(lookup, aggregated));
+        });
+    }
+
+    private Lookup lookup(ChatClientRequest request) {
+        List<Message> messages = request.prompt().getInstructions();
+        String userText = lastUserText(messages);
+        String scope = scope(request, messages);
+        String key = sha256(scope + "\u0000" + userText);
+
+        ChatResponse cached = cache.get(key);
+        if (cached != null) {
+            cache.record(namespace, "hit");
+            return new Lookup(key, scope, null, cached);
+        }
+
+        float[] embedding = null;
+        if (cache.isSemantic() && !userText.isBlank()) {
+            try {
+                embedding = cache.embed(userText);
+                cached = cache.getSimilar(scope, embedding);
+            } catch (Exception e) {
+                // The embedding model being down must not take the chat endpoint with it
+                System.err.println("Semantic cache lookup skipped: " + e.getMessage());
+            }
+            if (cached != null) {
+                cache.record(namespace, "semantic_hit");
+                return new Lookup(key, scope, embedding, cached);
+            }
+        }
+        cache.record(namespace, "miss");
+        return new Lookup(key, scope, embedding, null);
+    }
+
+    private void store(Lookup lookup, ChatClientResponse response) {
+        ChatResponse chatResponse = response.chatResponse();
+        if (chatResponse == null || chatResponse.getResults().isEmpty()) {
+            return;
+        }
+        for (Generation generation : chatResponse.getResults()) {
+            if (generation.getOutput().hasToolCalls() || generation.getOutput().getText() == null) {
+                return;
+            }
+        }
+        cache.put(lookup.key(), lookup.scope(), lookup.embedding(), chatResponse);
+    }
+
+    private static boolean isCacheable(Prompt prompt) {
+        if (prompt.getOptions() instanceof ToolCallingChatOptions options
+                && (!options.getToolCallbacks().isEmpty() || !options.getToolNames().isEmpty())) {
+            return false;
+        }
+        for (Message message : prompt.getInstructions()) {
+            if (message instanceof MediaContent content && !content.getMedia().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String lastUserText(List<Message> messages) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getMessageType() == MessageType.USER) {
+                return Objects.requireNonNullElse(messages.get(i).getText(), "");
+            }
+        }
+        return "";
+    }
+
+    private String scope(ChatClientRequest request, List<Message> messages) {
+        StringBuilder scope = new StringBuilder(namespace);
+        scope.append('\u0000').append(Objects.requireNonNullElse(request.context().get(ChatMemory.CONVERSATION_ID), ""));
+        ChatOptions options = request.prompt().getOptions();
+        if (options != null) {
+            scope.append('\u0000').append(options.getModel())
+                    .append('|').append(options.getTemperature())
+                    .append('|').append(options.getTopP())
+                    .append('|').append(options.getTopK())
+                    .append('|').append(options.getMaxTokens())
+                    .append('|').append(options.getFrequencyPenalty())
+                    .append('|').append(options.getPresencePenalty())
+                    .append('|').append(options.getStopSequences());
+        }
+        // Everything before the last user message the caller sent, eg: the system prompt
+        int last = messages.size() - 1;
+        while (last >= 0 && messages.get(last).getMessageType() != MessageType.USER) {
+            last--;
+        }
+        for (int i = 0; i < last; i++) {
+            scope.append('\u0000').append(messages.get(i).getMessageType()).append(':').append(messages.get(i).getText());
+        }
+        return scope.toString();
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "ResponseCacheAdvisor[" + namespace + "]";
+    }
+
+    @Override
+    public int getOrder() {
+        // Outermost, so a hit skips every other advisor and the model call
+        return Ordered.HIGHEST_PRECEDENCE + 100;
+    }
+}
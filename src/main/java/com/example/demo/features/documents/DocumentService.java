@@ -1,53 +1,46 @@
 package com.example.demo.features.documents;
 
-import org.springframework.ai.document.Document;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import com.example.demo.features.documents.ingestion.IngestionPipeline;
+import com.example.demo.features.documents.ingestion.IngestionStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
 
 @Service
 public class DocumentService {
 
-    @Autowired
-    private final VectorStore vectorStore;
+    private final IngestionPipeline ingestionPipeline;
 
-    public DocumentService(VectorStore vectorStore) {
-        this.vectorStore = vectorStore;
+    public DocumentService(IngestionPipeline ingestionPipeline) {
+        this.ingestionPipeline = ingestionPipeline;
     }
 
     /**
-     * Extracts text from an uploaded PDF, chunks it into tokens,
-     * and persists it to the vector database for RAG.
+     * Queues an uploaded PDF for ingestion and returns without waiting for it.
+     * The pipeline extracts, chunks, embeds and persists it in the background;
+     * poll {@link #ingestionStatus(String)} with the returned job id for progress.
      * * @param file The multipart PDF file from the user request.
-     * @throws RuntimeException if the file cannot be read or processed.
+     * @throws RuntimeException if the upload cannot be staged to disk.
      */
-    public void processPDf(MultipartFile file) {
+    public IngestionStatus processPDf(MultipartFile file) {
         try {
-            // Use Tika to abstract away the PDF parsing complexity
-            Resource resource = new InputStreamResource(file.getInputStream());
-            TikaDocumentReader reader = new TikaDocumentReader(resource);
-
-            // ETL Pipeline: Extract -> Transform (Split) -> Load (Add)
-            List<Document> documents = reader.get();
-
-            // Split text by tokens to ensure chunks fit within LLM context windows
-            TokenTextSplitter splitter = new TokenTextSplitter();
-            List<Document> chunks = splitter.apply(documents);
-
-            // Load chunks into the vector store for similarity search
-            vectorStore.add(chunks);
+            // Multipart temp files are deleted when the request ends, so copy it somewhere
+            // the background job can still read it. The pipeline deletes this copy when done.
+            Path staged = Files.createTempFile("kb-upload-", ".bin");
+            file.transferTo(staged);
+            return ingestionPipeline.submit(file.getOriginalFilename(), staged).status();
 
         } catch (IOException e) {
             // Log the failure and wrap in a RuntimeException for clean upstream handling
-            throw new RuntimeException("Failed to ingest PDF into the vector store", e);
+            throw new RuntimeException("Failed to stage PDF for ingestion", e);
         }
     }
+
+    public Optional<IngestionStatus> ingestionStatus(String jobId) {
+        return ingestionPipeline.status(jobId);
+    }
 }
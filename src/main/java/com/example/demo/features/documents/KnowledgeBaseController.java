@@ -1,47 +1,106 @@
 package com.example.demo.features.documents;
 
+import com.example.demo.features.documents.context.ContextBuilder;
+import com.example.demo.features.documents.context.PackedContext;
+import com.example.demo.features.documents.ingestion.IngestionStatus;
+import com.example.demo.features.documents.retrieval.HybridRetriever;
+import com.example.demo.features.limits.ModelConcurrencyLimiter;
+import com.example.demo.features.limits.PriorityClass;
+import com.example.demo.features.observability.AiMetrics;
+import com.example.demo.features.runtime.ModelRuntimeManager;
+import com.example.demo.features.streaming.TokenStreamer;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import reactor.core.publisher.Flux;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/v1/kb") // base url
 public class KnowledgeBaseController {
 
+    private static final String RAG_TEMPLATE = """
+            You are a helpful assistant. Use ONLY the following context to answer the question.
+            If the answer is not found in the context, clearly state that you do not know.
+            
+            ---
+            CONTEXT:
+            {context}
+            ---
+            
+            QUESTION: 
+            {question}
+            """;
+
     private final DocumentService documentService;
     private final ChatClient chatClient;
-    private final VectorStore vectorStore;
+    private final HybridRetriever retriever;
+    private final ContextBuilder contextBuilder;
+    private final TokenStreamer tokenStreamer;
+    private final String model;
+    private final int candidates;
+
 
+    @Autowired
+    public KnowledgeBaseController(DocumentService documentService, @Qualifier("ollamaChatModel") ChatModel ollamaModel, HybridRetriever retriever,
+                                   ModelConcurrencyLimiter concurrencyLimiter, ModelRuntimeManager runtimeManager, ContextBuilder contextBuilder,
+                                   TokenStreamer tokenStreamer, AiMetrics aiMetrics,
+                                   @Value("${spring.ai.ollama.chat.options.model:granite4:3b}") String model,
+                                   @Value("${app.rag.context.candidates:8}") int candidates) {
+        this(documentService, ChatClient.builder(ollamaModel)
+                        .defaultAdvisors(concurrencyLimiter.advisor("ollama", PriorityClass.BULK), aiMetrics.advisor("kb-ask", "ollama"),
+                                runtimeManager.advisor("ollama"))
+                        .build(),
+                retriever, contextBuilder, tokenStreamer, model, candidates);
+    }
 
-    public KnowledgeBaseController(DocumentService documentService, @Qualifier("ollamaChatModel") ChatModel ollamaModel, VectorStore vectorStore) {
+    KnowledgeBaseController(DocumentService documentService, ChatClient chatClient, HybridRetriever retriever,
+                            ContextBuilder contextBuilder, TokenStreamer tokenStreamer, String model, int candidates) {
         this.documentService = documentService;
-        this.vectorStore = vectorStore;
-        this.chatClient = ChatClient.builder(ollamaModel).build();
+        this.chatClient = chatClient;
+        this.retriever = retriever;
+        this.contextBuilder = contextBuilder;
+        this.tokenStreamer = tokenStreamer;
+        this.model = model;
+        this.candidates = candidates;
     }
 
     /**
      * Endpoint to ingest new documents into the local knowledge base.
-     * Accepts a PDF file, parses it into chunks, and stores the resulting
-     * embeddings in the vector database for future retrieval.
+     * Accepts a PDF file and queues it for the ingestion pipeline, which parses it into chunks
+     * and stores the resulting embeddings in the vector database for future retrieval.
+     * Chunks become searchable batch by batch while the rest of the file is still processing.
      *
      * @param file The PDF document to be added to the AI context.
-     * @return Success message upon completion of the ingestion pipeline.
+     * @return 202 Accepted with the job id and initial status of the ingestion job.
      */
     @PostMapping("/documents")
-    public String uploadDocument(@RequestParam MultipartFile file) {
-        documentService.processPDf(file);
-        return "File uploaded to knowledge base!";
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public IngestionStatus uploadDocument(@RequestParam MultipartFile file) {
+        return documentService.processPDf(file);
+    }
+
+    /**
+     * Progress of an ingestion job started by {@link #uploadDocument(MultipartFile)}.
+     *
+     * eg: curl http://localhost:8080/api/v1/kb/documents/jobs/{jobId}
+     *
+     * @param jobId The id returned by the upload endpoint.
+     * @return Chunk counts per stage, elapsed time and throughput (stored chunks per second).
+     */
+    @GetMapping("/documents/jobs/{jobId}")
+    public IngestionStatus ingestionStatus(@PathVariable String jobId) {
+        return documentService.ingestionStatus(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown ingestion job " + jobId));
     }
 
     /**
@@ -49,61 +108,40 @@ public class KnowledgeBaseController {
      * This endpoint implements the RAG (Retrieval-Augmented Generation) pattern.
      *
      * @param question The user's natural language query.
-     * @return A Flux stream of text chunks directly from the local LLM.
+     * @return An SSE stream of text chunks from the local LLM, several tokens per event.
+     *         Generation stops as soon as the client disconnects.
      */
     @GetMapping(value = "/ask", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> ask(@RequestParam String question) {
+    public SseEmitter ask(@RequestParam String question) {
+        // Retrieval and packing are reported by the rag.retrieval and rag.context.* metrics
+        PackedContext context = retrieveContext(question);
 
-        // 1. Configure the Retrieval parameters
-        // topK(3): We fetch the 3 most relevant snippets to stay within Llama 1B's context limits.
-        // similarityThreshold(0.4): Filters out low-quality matches (0.0 = everything, 1.0 = exact match).
-        SearchRequest searchRequest = SearchRequest.builder()
-                .query(question)
-                .topK(3)
-                .similarityThreshold(0.4)
-                .build();
-
-        // 2. Perform Vector Search (The "Retrieval" in RAG)
-        List<Document> contextDocs = vectorStore.similaritySearch(searchRequest);
-
-        // Logging for traceability in local development
-        System.out.println("DEBUG: Retrieval initiated for query: [" + question + "]");
-        System.out.println("DEBUG: Found " + contextDocs.size() + " relevant document chunks.");
+        // 3. Augment the Prompt and Generate (The "Augmentation" & "Generation" in RAG)
+        return tokenStreamer.stream("kb-ask", ragRequest(question, context).stream().content());
+    }
 
-        // 3. Fallback/Debugging Logic
-        // If no results meet the threshold, we perform a 'raw' search to inspect the similarity scores.
-        if (contextDocs.isEmpty()) {
-            List<Document> rawDocs = vectorStore.similaritySearch(
-                    SearchRequest.builder().query(question).topK(3).build()
-            );
-            rawDocs.forEach(d ->
-                    System.out.println("DEBUG: Discarded match score: " + d.getMetadata().get("distance"))
-            );
-        }
+    /**
+     * Steps 1 and 2 of {@link #ask(String)}: the chunks that go into the prompt for {@code question}.
+     */
+    PackedContext retrieveContext(String question) {
+        // 1. Retrieve (The "Retrieval" in RAG)
+        // BM25 keyword search fused with vector search; short keyword queries skip the embedding call.
+        // candidates: We fetch more snippets than fit and let the context builder pick what fits the token budget.
+        // similarityThreshold(0.4): Filters out low-quality vector matches (0.0 = everything, 1.0 = exact match).
+        List<Document> contextDocs = retriever.retrieve(question, candidates, 0.4);
 
-        // 4. Transform retrieved documents into a single context String
-        String context = contextDocs.stream()
-                .map(Document::getText)
-                .filter(Objects::nonNull)
-                .collect(Collectors.joining("\n\n"));
+        // 2. Pack the best, non-overlapping chunks into the model's prompt token budget
+        String promptWithoutContext = RAG_TEMPLATE.replace("{context}", "").replace("{question}", question);
+        return contextBuilder.build(model, promptWithoutContext, contextDocs);
+    }
 
-        // 5. Augment the Prompt and Generate (The "Augmentation" & "Generation" in RAG)
+    /**
+     * The RAG template filled with {@code context} and {@code question}, ready to stream (or call).
+     */
+    ChatClient.ChatClientRequestSpec ragRequest(String question, PackedContext context) {
         return chatClient.prompt()
-                .user(u -> u.text("""
-                            You are a helpful assistant. Use ONLY the following context to answer the question.
-                            If the answer is not found in the context, clearly state that you do not know.
-                            
-                            ---
-                            CONTEXT:
-                            {context}
-                            ---
-                            
-                            QUESTION: 
-                            {question}
-                            """)
-                        .param("context", context)
-                        .param("question", question))
-                .stream()
-                .content();
+                .user(u -> u.text(RAG_TEMPLATE)
+                        .param("context", context.text())
+                        .param("question", question));
     }
 }
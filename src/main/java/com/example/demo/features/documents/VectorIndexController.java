@@ -0,0 +1,44 @@
+package com.example.demo.features.documents;
+
+import com.example.demo.features.documents.store.MappedVectorStore;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/kb/index")
+public class VectorIndexController {
+
+    private final MappedVectorStore vectorStore;
+
+    public VectorIndexController(MappedVectorStore vectorStore) {
+        this.vectorStore = vectorStore;
+    }
+
+    /**
+     * Recall-vs-latency report for the HNSW index, used to pick app.vectorstore.hnsw.ef-search.
+     * Runs stored vectors as queries, so it needs no embedding calls.
+     *
+     * eg: curl "http://localhost:8080/api/v1/kb/index/report?queries=200&topK=3&ef=16,32,64,128"
+     *
+     * @param queries Number of sampled queries per efSearch value.
+     * @param topK    Result size that recall is measured at.
+     * @param ef      efSearch values to compare.
+     * @return One row per efSearch value with recall@topK, mean and p99 latency in microseconds.
+     */
+    @GetMapping("/report")
+    public List<MappedVectorStore.RecallPoint> report(@RequestParam(defaultValue = "200") int queries,
+                                                      @RequestParam(defaultValue = "3") int topK,
+                                                      @RequestParam(defaultValue = "16,32,64,128,256") int[] ef) {
+        try {
+            return vectorStore.recallReport(queries, topK, ef);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.demo.features.documents.context;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * Result of {@link ContextBuilder#build}: the context text that goes into the prompt and
+ * what happened to each retrieved candidate.
+ *
+ * @param text        Selected chunks joined by blank lines, overlapping text already removed.
+ * @param documents   The selected chunks in prompt order.
+ * @param tokens      Estimated tokens of {@code text}.
+ * @param budget      Tokens that were available for context after the rest of the prompt.
+ * @param candidates  Chunks returned by retrieval.
+ * @param duplicates  Candidates dropped as near-duplicates of a selected chunk.
+ * @param overBudget  Candidates dropped because they no longer fit.
+ */
+public record PackedContext(String text, List<Document> documents, int tokens, int budget,
+                            int candidates, int duplicates, int overBudget) {
+}
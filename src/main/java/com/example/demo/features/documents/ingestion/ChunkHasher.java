@@ -0,0 +1,46 @@
+package com.example.demo.features.documents.ingestion;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Content hash of a chunk, used as its document id in the vector store.
+ *
+ * The hash covers the normalized text plus the embedding model name, so the same text
+ * always maps to the same id (and is stored once), while switching models produces new ids
+ * instead of mixing vectors from two embedding spaces.
+ */
+final class ChunkHasher {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final byte[] modelPrefix;
+
+    ChunkHasher(String embeddingModel) {
+        this.modelPrefix = (embeddingModel + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Unicode NFKC plus collapsed whitespace: PDF re-exports often differ only in ligatures,
+     * non-breaking spaces and line wrapping, none of which change the embedding meaningfully.
+     */
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+    }
+
+    String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelPrefix);
+            digest.update(normalize(text).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.features.documents.ingestion;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mutable progress of one upload moving through the {@link IngestionPipeline}. Counters are
+ * updated by the stage threads and read by the status endpoint, hence the atomics.
+ */
+public class IngestionJob {
+
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String fileName;
+    private final long createdAt = System.nanoTime();
+
+    private final AtomicInteger chunksSplit = new AtomicInteger();
+    private final AtomicInteger chunksEmbedded = new AtomicInteger();
+    private final AtomicInteger chunksStored = new AtomicInteger();
+    private final AtomicInteger chunksDeduplicated = new AtomicInteger();
+
+    private volatile State state = State.QUEUED;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String error;
+
+    IngestionJob(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    void start() {
+        startedAt = System.nanoTime();
+        state = State.RUNNING;
+    }
+
+    /**
+     * Records a failure. Only the first one is kept; the other stages see {@link #isFailed()}
+     * and stop. The job stays RUNNING until {@link #finish()} so clients never see FAILED
+     * before the pipeline has cleaned up.
+     */
+    synchronized void fail(Throwable cause) {
+        if (error == null) {
+            error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        }
+    }
+
+    boolean isFailed() {
+        return error != null;
+    }
+
+    void finish() {
+        finishedAt = System.nanoTime();
+        state = isFailed() ? State.FAILED : State.COMPLETED;
+    }
+
+    boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+
+    long createdAt() {
+        return createdAt;
+    }
+
+    void chunksSplit(int count) {
+        chunksSplit.addAndGet(count);
+    }
+
+    void chunksEmbedded(int count) {
+        chunksEmbedded.addAndGet(count);
+    }
+
+    void chunksStored(int count) {
+        chunksStored.addAndGet(count);
+    }
+
+    void chunksDeduplicated(int count) {
+        chunksDeduplicated.addAndGet(count);
+    }
+
+    public IngestionStatus status() {
+        long start = startedAt;
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        long elapsedMs = start == 0 ? 0 : (end - start) / 1_000_000;
+        int stored = chunksStored.get();
+        double perSecond = elapsedMs == 0 ? 0 : stored * 1000.0 / elapsedMs;
+        return new IngestionStatus(id, fileName, state, chunksSplit.get(), chunksEmbedded.get(), stored, chunksDeduplicated.get(),
+                elapsedMs, Math.round(perSecond * 10) / 10.0, error);
+    }
+}
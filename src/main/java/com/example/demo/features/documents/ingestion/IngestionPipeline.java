@@ -0,0 +1,300 @@
+package com.example.demo.features.documents.ingestion;
+
+import com.example.demo.features.documents.store.MappedVectorStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Staged ingestion: extract -> split -> embed (bounded batches) -> persist.
+ *
+ * Each stage runs on its own virtual thread and hands work to the next through a bounded
+ * queue, so a slow embedding model back-pressures the splitter instead of piling chunks up
+ * in memory, and persisted chunks become searchable while the rest of the file is still being
+ * embedded. Jobs run off the request thread; callers poll {@link #status(String)}.
+ *
+ * Chunk ids are content hashes ({@link ChunkHasher}), so the vector store doubles as a
+ * persistent embedding cache: a chunk already stored from an earlier upload skips both the
+ * embedding call and the insert.
+ */
+@Service
+public class IngestionPipeline implements DisposableBean {
+
+    // How long a blocked stage waits before re-checking whether the job has failed
+    private static final long POLL_MS = 100;
+    private static final int MAX_TRACKED_JOBS = 100;
+
+    private static final Document END_OF_CHUNKS = new Document("end-of-chunks");
+    private static final EmbeddedBatch END_OF_BATCHES = new EmbeddedBatch(List.of(), List.of());
+
+    private record EmbeddedBatch(List<Document> documents, List<float[]> embeddings) {
+    }
+
+    private final EmbeddingModel embeddingModel;
+    private final MappedVectorStore vectorStore;
+    private final TokenTextSplitter splitter = new TokenTextSplitter();
+    private final TokenCountBatchingStrategy batchingStrategy = new TokenCountBatchingStrategy();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final ChunkHasher hasher;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    private final int embedBatchSize;
+    private final int queueCapacity;
+    private final Semaphore jobSlots;
+
+    public IngestionPipeline(EmbeddingModel embeddingModel,
+                             MappedVectorStore vectorStore,
+                             MeterRegistry meterRegistry,
+                             @Value("${spring.ai.ollama.embedding.options.model:nomic-embed-text}") String embeddingModelName,
+                             @Value("${app.ingestion.embed-batch-size:32}") int embedBatchSize,
+                             @Value("${app.ingestion.queue-capacity:256}") int queueCapacity,
+                             @Value("${app.ingestion.max-concurrent-jobs:2}") int maxConcurrentJobs) {
+        this.embeddingModel = embeddingModel;
+        this.vectorStore = vectorStore;
+        this.embedBatchSize = embedBatchSize;
+        this.queueCapacity = queueCapacity;
+        this.jobSlots = new Semaphore(maxConcurrentJobs, true);
+        this.hasher = new ChunkHasher(embeddingModelName);
+        // Hit rate = hits / (hits + misses), eg: GET /actuator/metrics/kb.ingestion.embedding.cache
+        this.cacheHits = Counter.builder("kb.ingestion.embedding.cache")
+                .description("Chunks whose content hash was already stored, so no embedding call was made")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("kb.ingestion.embedding.cache")
+                .description("Chunks that had to be sent to the embedding model")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a file for ingestion and returns immediately. The pipeline owns {@code file}
+     * from here on and deletes it when the job ends.
+     */
+    public IngestionJob submit(String fileName, Path file) {
+        IngestionJob job = new IngestionJob(fileName);
+        jobs.put(job.id(), job);
+        forgetOldJobs();
+        executor.submit(() -> run(job, file));
+        return job;
+    }
+
+    public Optional<IngestionStatus> status(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(IngestionJob::status);
+    }
+
+    private void run(IngestionJob job, Path file) {
+        List<Future<?>> stages = new ArrayList<>();
+        try {
+            jobSlots.acquire();
+            try {
+                job.start();
+                BlockingQueue<Document> chunks = new ArrayBlockingQueue<>(queueCapacity);
+                // A few batches in flight are enough to overlap embedding with disk writes
+                BlockingQueue<EmbeddedBatch> batches = new ArrayBlockingQueue<>(4);
+
+                stages.add(executor.submit(() -> stage(job, () -> extractAndSplit(job, file, chunks))));
+                stages.add(executor.submit(() -> stage(job, () -> embed(job, chunks, batches))));
+                stage(job, () -> persist(job, batches));
+
+                for (Future<?> stage : stages) {
+                    stage.get();
+                }
+            } finally {
+                jobSlots.release();
+            }
+        } catch (Exception e) {
+            job.fail(e);
+        } finally {
+            stages.forEach(stage -> stage.cancel(true));
+            deleteQuietly(file);
+            job.finish();
+            if (job.isFailed()) {
+                System.err.println("Ingestion job " + job.id() + " failed: " + job.status().error());
+            } else {
+                System.out.println("Ingestion job " + job.id() + " finished: " + job.status());
+            }
+        }
+    }
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    private static void stage(IngestionJob job, Stage stage) {
+        try {
+            stage.run();
+        } catch (CancellationException e) {
+            // another stage failed first and already recorded the cause
+        } catch (Exception e) {
+            job.fail(e);
+        }
+    }
+
+    /**
+     * Extract + split. Chunks are handed over one document at a time, so the splitter never
+     * gets more than {@code queueCapacity} chunks ahead of the embedder.
+     */
+    private void extractAndSplit(IngestionJob job, Path file, BlockingQueue<Document> chunks) throws InterruptedException {
+        TikaDocumentReader reader = new TikaDocumentReader(new FileSystemResource(file));
+        for (Document document : reader.get()) {
+            for (Document chunk : splitter.apply(List.of(document))) {
+                put(job, chunks, withContentId(chunk));
+                job.chunksSplit(1);
+            }
+        }
+        put(job, chunks, END_OF_CHUNKS);
+    }
+
+    private Document withContentId(Document chunk) {
+        String hash = hasher.hash(chunk.getText());
+        return Document.builder()
+                .id(hash)
+                .text(chunk.getText())
+                .metadata(chunk.getMetadata())
+                .metadata("content_hash", hash)
+                .build();
+    }
+
+    /**
+     * Cache lookup: drops chunks that are already stored, or that appeared earlier in this
+     * same upload (repeated headers, footers, boilerplate pages).
+     */
+    private boolean isCached(IngestionJob job, Set<String> seen, Document chunk) {
+        if (!seen.add(chunk.getId()) || vectorStore.contains(chunk.getId())) {
+            cacheHits.increment();
+            job.chunksDeduplicated(1);
+            return true;
+        }
+        cacheMisses.increment();
+        return false;
+    }
+
+    /**
+     * Embeds up to {@code embedBatchSize} uncached chunks per model call. A partial batch is
+     * sent as soon as the splitter has nothing more queued, so a slow extract does not stall it.
+     */
+    private void embed(IngestionJob job, BlockingQueue<Document> chunks, BlockingQueue<EmbeddedBatch> batches) throws InterruptedException {
+        Set<String> seen = new HashSet<>();
+        boolean done = false;
+        while (!done) {
+            List<Document> batch = new ArrayList<>(embedBatchSize);
+            Document first = take(job, chunks);
+            if (first == END_OF_CHUNKS) {
+                break;
+            }
+            if (!isCached(job, seen, first)) {
+                batch.add(first);
+            }
+            while (batch.size() < embedBatchSize) {
+                Document next = chunks.poll();
+                if (next == null) {
+                    break;
+                }
+                if (next == END_OF_CHUNKS) {
+                    done = true;
+                    break;
+                }
+                if (!isCached(job, seen, next)) {
+                    batch.add(next);
+                }
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            List<float[]> embeddings = embeddingModel.embed(batch, EmbeddingOptions.builder().build(), batchingStrategy);
+            job.chunksEmbedded(batch.size());
+            put(job, batches, new EmbeddedBatch(batch, embeddings));
+        }
+        put(job, batches, END_OF_BATCHES);
+    }
+
+    private void persist(IngestionJob job, BlockingQueue<EmbeddedBatch> batches) throws InterruptedException {
+        while (true) {
+            EmbeddedBatch batch = take(job, batches);
+            if (batch == END_OF_BATCHES) {
+                return;
+            }
+            vectorStore.addEmbedded(batch.documents(), batch.embeddings());
+            job.chunksStored(batch.documents().size());
+        }
+    }
+
+    private static <T> void put(IngestionJob job, BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, POLL_MS, TimeUnit.MILLISECONDS)) {
+            if (job.isFailed()) {
+                throw new CancellationException();
+            }
+        }
+    }
+
+    private static <T> T take(IngestionJob job, BlockingQueue<T> queue) throws InterruptedException {
+        while (true) {
+            T item = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                return item;
+            }
+            if (job.isFailed()) {
+                throw new CancellationException();
+            }
+        }
+    }
+
+    /**
+     * Keeps the job table bounded by dropping the oldest finished jobs.
+     */
+    private void forgetOldJobs() {
+        if (jobs.size() <= MAX_TRACKED_JOBS) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(IngestionJob::isFinished)
+                .sorted(Comparator.comparingLong(IngestionJob::createdAt))
+                .limit(jobs.size() - MAX_TRACKED_JOBS)
+                .forEach(job -> jobs.remove(job.id()));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete upload temp file " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo.features.documents.ingestion;
+
+/**
+ * Snapshot of an ingestion job, returned by the upload and status endpoints.
+ *
+ * @param chunksSplit     Chunks produced by the splitter so far.
+ * @param chunksEmbedded  Chunks that have an embedding.
+ * @param chunksStored    Chunks persisted to the vector store (searchable).
+ * @param chunksDeduplicated Chunks skipped because identical text was already stored.
+ * @param chunksPerSecond Stored chunks per second since the job started.
+ */
+public record IngestionStatus(String jobId,
+                              String fileName,
+                              IngestionJob.State state,
+                              int chunksSplit,
+                              int chunksEmbedded,
+                              int chunksStored,
+                              int chunksDeduplicated,
+                              long elapsedMs,
+                              double chunksPerSecond,
+                              String error) {
+}
@@ -0,0 +1,127 @@
+package com.example.demo.features.documents.retrieval;
+
+import com.example.demo.features.documents.store.MappedVectorStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Knowledge base retrieval that combines BM25 keyword search with vector search.
+ *
+ * Embeddings are good at paraphrases but blur exact identifiers (error codes, part numbers);
+ * BM25 is the opposite. Both lists are fused with reciprocal-rank fusion, which only looks
+ * at ranks, so the two unrelated score scales never have to be calibrated against each other.
+ *
+ * Short keyword queries whose best BM25 hit contains every query term take a lexical-only
+ * fast path and never call the embedding model.
+ *
+ * Returned documents carry a score in [0, 1] (1 = ranked first by both lists), which is what
+ * the context builder expects as relevance.
+ */
+@Component
+public class HybridRetriever {
+
+    private final MappedVectorStore vectorStore;
+    private final int rrfK;
+    private final int fastPathMaxWords;
+    private final Timer lexicalTimer;
+    private final Timer hybridTimer;
+
+    public HybridRetriever(MappedVectorStore vectorStore,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.rag.retrieval.rrf-k:60}") int rrfK,
+                           @Value("${app.rag.retrieval.fast-path-max-words:4}") int fastPathMaxWords) {
+        this.vectorStore = vectorStore;
+        this.rrfK = rrfK;
+        this.fastPathMaxWords = fastPathMaxWords;
+        this.lexicalTimer = timer(meterRegistry, "lexical");
+        this.hybridTimer = timer(meterRegistry, "hybrid");
+    }
+
+    private static Timer timer(MeterRegistry registry, String path) {
+        return Timer.builder("rag.retrieval")
+                .description("Knowledge base retrieval latency by path")
+                .tag("path", path)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Up to {@code topK} chunks for {@code question}, best first. {@code similarityThreshold}
+     * applies to the vector list only; keyword hits are kept whatever their cosine similarity.
+     */
+    public List<Document> retrieve(String question, int topK, double similarityThreshold) {
+        long start = System.nanoTime();
+        List<MappedVectorStore.KeywordHit> keywordHits = vectorStore.keywordSearch(question, topK);
+
+        if (isKeywordQuery(question) && !keywordHits.isEmpty() && keywordHits.get(0).matchesAllTerms()) {
+            List<Document> results = normalized(keywordHits);
+            lexicalTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return results;
+        }
+
+        List<Document> vectorHits = vectorStore.similaritySearch(SearchRequest.builder()
+                .query(question)
+                .topK(topK)
+                .similarityThreshold(similarityThreshold)
+                .build());
+        List<Document> keywordDocs = new ArrayList<>(keywordHits.size());
+        keywordHits.forEach(hit -> keywordDocs.add(hit.document()));
+
+        List<Document> results = fuse(List.of(vectorHits, keywordDocs), topK);
+        hybridTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return results;
+    }
+
+    private boolean isKeywordQuery(String question) {
+        String trimmed = question.trim();
+        return !trimmed.isEmpty() && trimmed.split("\\s+").length <= fastPathMaxWords;
+    }
+
+    /**
+     * Reciprocal-rank fusion: each list adds 1 / (k + rank) for every document it contains,
+     * scaled so a document ranked first in every list scores 1.
+     */
+    List<Document> fuse(List<List<Document>> rankings, int topK) {
+        Map<String, Document> documents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                documents.putIfAbsent(document.getId(), document);
+                scores.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+            }
+        }
+        double best = rankings.size() / (double) (rrfK + 1);
+
+        List<Map.Entry<String, Double>> ordered = new ArrayList<>(scores.entrySet());
+        ordered.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        List<Document> fused = new ArrayList<>(Math.min(topK, ordered.size()));
+        for (Map.Entry<String, Double> entry : ordered.subList(0, Math.min(topK, ordered.size()))) {
+            fused.add(documents.get(entry.getKey()).mutate().score(entry.getValue() / best).build());
+        }
+        return fused;
+    }
+
+    /**
+     * Keyword hits with BM25 scores scaled by the best one, so they fit the same [0, 1] range.
+     */
+    private static List<Document> normalized(List<MappedVectorStore.KeywordHit> hits) {
+        double best = hits.get(0).document().getScore();
+        List<Document> results = new ArrayList<>(hits.size());
+        for (MappedVectorStore.KeywordHit hit : hits) {
+            Document document = hit.document();
+            results.add(document.mutate().score(best > 0 ? document.getScore() / best : 0).build());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.demo.features.documents.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory BM25 inverted index over the text of each vector store row.
+ *
+ * Rows are only ever appended, so every posting list is in ascending row order and is kept
+ * as a variable-byte encoded {@code byte[]} of (row delta, term frequency) pairs: most
+ * entries take two bytes instead of two boxed objects. Removed rows keep their postings and
+ * are skipped at query time; only the collection statistics (live documents, average
+ * length) are updated, so document frequencies drift slightly until the store is rebuilt.
+ *
+ * Identifiers such as "ERR-4012" or "pn_77.b" are indexed whole and by their parts, so an
+ * exact code matches even when an embedding model would smear it into nearby numbers.
+ *
+ * Not thread-safe; {@link MappedVectorStore} guards it with its read/write lock.
+ */
+final class Bm25Index {
+
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+(?:[-_./][\\p{L}\\p{N}]+)*");
+    private static final Pattern PART = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    /** A scored row; {@code matchedTerms} is how many distinct query terms it contains. */
+    record Hit(int row, float score, int matchedTerms) {
+    }
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int[] lengths = new int[1024];
+    private int maxRow = -1;
+    private int liveDocuments;
+    private long liveLength;
+
+    /**
+     * Indexes {@code text} as {@code row}, which must be greater than every row added before.
+     */
+    void add(int row, String text) {
+        if (row <= maxRow) {
+            throw new IllegalArgumentException("Rows must be added in ascending order, got " + row + " after " + maxRow);
+        }
+        List<String> tokens = tokens(text);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(row, entry.getValue());
+        }
+
+        if (row >= lengths.length) {
+            lengths = Arrays.copyOf(lengths, Math.max(lengths.length * 2, row + 1));
+        }
+        lengths[row] = tokens.size();
+        maxRow = row;
+        liveDocuments++;
+        liveLength += tokens.size();
+    }
+
+    void remove(int row) {
+        if (row <= maxRow && lengths[row] > 0) {
+            liveDocuments--;
+            liveLength -= lengths[row];
+            lengths[row] = 0;
+        }
+    }
+
+    /**
+     * Distinct index terms of {@code query}, in order of appearance.
+     */
+    static Set<String> queryTerms(String query) {
+        return new LinkedHashSet<>(tokens(query));
+    }
+
+    /**
+     * Top {@code topK} rows by BM25 score for {@code terms}, best first. Rows rejected by
+     * {@code live} are skipped.
+     */
+    List<Hit> search(Set<String> terms, int topK, IntPredicate live) {
+        if (terms.isEmpty() || liveDocuments == 0 || topK <= 0) {
+            return List.of();
+        }
+        float averageLength = (float) liveLength / liveDocuments;
+        // Sized by the rows the query terms match, not by the rows in the index
+        RowScores scores = new RowScores();
+
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            float idf = (float) Math.log(1 + (liveDocuments - list.count + 0.5) / (list.count + 0.5));
+            int position = 0;
+            int row = -1;
+            for (int i = 0; i < list.count; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = list.data[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                int tf = 0;
+                shift = 0;
+                do {
+                    b = list.data[position++];
+                    tf |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                row += delta;
+
+                int length = lengths[row];
+                if (length == 0 || !live.test(row)) {
+                    continue;
+                }
+                scores.add(row, idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength)));
+            }
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>((a, b) -> Float.compare(a.score(), b.score()));
+        for (int slot = 0; slot < scores.rows.length; slot++) {
+            int row = scores.rows[slot] - 1;
+            if (row < 0) {
+                continue;
+            }
+            float score = scores.scores[slot];
+            if (best.size() < topK) {
+                best.add(new Hit(row, score, scores.matched[slot]));
+            } else if (score > best.peek().score()) {
+                best.poll();
+                best.add(new Hit(row, score, scores.matched[slot]));
+            }
+        }
+        List<Hit> ordered = new ArrayList<>(best);
+        ordered.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return ordered;
+    }
+
+    int terms() {
+        return postings.size();
+    }
+
+    /**
+     * Lower-cased tokens; compound identifiers are followed by their parts.
+     */
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            String token = matcher.group().toLowerCase(Locale.ROOT);
+            tokens.add(token);
+            if (token.length() > 1 && !PART.matcher(token).matches()) {
+                Matcher parts = PART.matcher(token);
+                while (parts.find()) {
+                    tokens.add(parts.group());
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Posting list of one term: variable-byte (row delta, frequency) pairs.
+     */
+    private static final class Postings {
+        byte[] data = new byte[8];
+        int size;
+        int count;
+        int lastRow = -1;
+
+        void add(int row, int frequency) {
+            if (size + 10 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            size = writeVInt(data, size, row - lastRow);
+            size = writeVInt(data, size, frequency);
+            lastRow = row;
+            count++;
+        }
+
+        private static int writeVInt(byte[] target, int position, int value) {
+            while ((value & ~0x7F) != 0) {
+                target[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            target[position++] = (byte) value;
+            return position;
+        }
+    }
+
+    /**
+     * Score accumulator of one query: an open-addressing map from row to score and number of
+     * matched terms, in parallel arrays. Rows are stored as row + 1 so 0 marks an empty slot.
+     */
+    private static final class RowScores {
+        private int[] rows = new int[256];
+        private float[] scores = new float[256];
+        private short[] matched = new short[256];
+        private int size;
+
+        void add(int row, float score) {
+            int slot = slot(row + 1);
+            if (rows[slot] == 0) {
+                if (2 * (size + 1) > rows.length) {
+                    grow();
+                    slot = slot(row + 1);
+                }
+                rows[slot] = row + 1;
+                size++;
+            }
+            scores[slot] += score;
+            matched[slot]++;
+        }
+
+        private int slot(int key) {
+            int mask = rows.length - 1;
+            int h = key * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & mask;
+            while (rows[slot] != 0 && rows[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldRows = rows;
+            float[] oldScores = scores;
+            short[] oldMatched = matched;
+            rows = new int[oldRows.length * 2];
+            scores = new float[oldRows.length * 2];
+            matched = new short[oldRows.length * 2];
+            for (int i = 0; i < oldRows.length; i++) {
+                if (oldRows[i] != 0) {
+                    int slot = slot(oldRows[i]);
+                    rows[slot] = oldRows[i];
+                    scores[slot] = oldScores[i];
+                    matched[slot] = oldMatched[i];
+                }
+            }
+        }
+    }
+}
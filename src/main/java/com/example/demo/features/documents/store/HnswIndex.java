@@ -0,0 +1,569 @@
+package com.example.demo.features.documents.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Hierarchical Navigable Small World graph over the rows of a {@link VectorFile}.
+ *
+ * Nodes are row numbers, so the graph stores only neighbour ids; vectors are read from the
+ * owning store when a distance is needed. Similarity is cosine, same as the exact scan.
+ *
+ * Tuning knobs (Malkov and Yashunin, 2016):
+ * - {@code m}: links per node on the upper layers, {@code 2 * m} on layer 0. More links,
+ *   better recall, more memory and slower inserts.
+ * - {@code efConstruction}: candidate list size while inserting. Higher builds a better graph.
+ * - {@code efSearch}: candidate list size while querying. The main recall-vs-latency dial,
+ *   can be changed at runtime.
+ *
+ * Not thread-safe for writers: the owning store serialises inserts and lets searches run
+ * concurrently only while no insert is in progress.
+ */
+final class HnswIndex {
+
+    private static final int FILE_MAGIC = 0x484E5357; // "HNSW"
+
+    /**
+     * Vector access and scoring the graph needs from its owner. The owner decides whether a
+     * similarity is computed from float32 rows or from int8 codes.
+     */
+    interface Vectors {
+        int dimensions();
+
+        /** Loads a stored row into {@code target} so it can be scored against other rows. */
+        void load(int row, QueryVector target);
+
+        /** Cosine similarity between a prepared vector and a stored row. */
+        float similarity(QueryVector query, int row);
+    }
+
+    private final Vectors vectors;
+    private final int m;
+    private final int maxLinksLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private volatile int efSearch;
+
+    // links[node][level] = {count, neighbour1, neighbour2, ...}
+    private int[][][] links = new int[1024][][];
+    private int nodeCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    // Scratch space is pooled, not per thread: with virtual threads every request is a new thread.
+    // Contexts beyond the pool size are garbage, and none of them grows with the number of rows.
+    private static final int CONTEXT_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private final ArrayBlockingQueue<SearchContext> contexts = new ArrayBlockingQueue<>(CONTEXT_POOL_SIZE);
+
+    HnswIndex(Vectors vectors, int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW m must be at least 2");
+        }
+        this.vectors = vectors;
+        this.m = m;
+        this.maxLinksLayer0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    int efSearch() {
+        return efSearch;
+    }
+
+    void efSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    void clear() {
+        links = new int[1024][][];
+        nodeCount = 0;
+        entryPoint = -1;
+        maxLevel = -1;
+    }
+
+    /**
+     * Adds the next row to the graph. Rows must be inserted in order, starting at 0.
+     */
+    void insert(int row) {
+        if (row != nodeCount) {
+            throw new IllegalArgumentException("Expected row " + nodeCount + " but got " + row);
+        }
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        ensureCapacity(row);
+        links[row] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[row][l] = new int[1 + (l == 0 ? maxLinksLayer0 : m)];
+        }
+        nodeCount = row + 1;
+
+        if (entryPoint < 0) {
+            entryPoint = row;
+            maxLevel = level;
+            return;
+        }
+
+        SearchContext ctx = borrowContext();
+        try {
+            QueryVector query = ctx.insert(vectors.dimensions());
+            vectors.load(row, query);
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(ctx, query, current, l);
+            }
+
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                Heap found = searchLayer(ctx, query, current, efConstruction, l);
+                int[] selected = selectNeighbours(ctx, found, l == 0 ? maxLinksLayer0 : m);
+                current = bestOf(found);
+
+                int[] own = links[row][l];
+                for (int neighbour : selected) {
+                    own[++own[0]] = neighbour;
+                    connect(ctx, neighbour, row, l);
+                }
+            }
+        } finally {
+            contexts.offer(ctx);
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = row;
+        }
+    }
+
+    /**
+     * Returns up to {@code ef} approximate nearest rows, best first, as parallel arrays in
+     * {@code result}. The caller filters deleted rows and applies thresholds.
+     */
+    int search(QueryVector query, int ef, int[] resultRows, float[] resultScores) {
+        if (entryPoint < 0) {
+            return 0;
+        }
+        SearchContext ctx = borrowContext();
+        try {
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(ctx, query, current, l);
+            }
+            Heap found = searchLayer(ctx, query, current, ef, 0);
+
+            int count = Math.min(found.size(), resultRows.length);
+            // The result heap is a min-heap, drain it backwards so the best lands first
+            while (found.size() > count) {
+                found.pop();
+            }
+            for (int i = count - 1; i >= 0; i--) {
+                resultScores[i] = found.topScore();
+                resultRows[i] = found.pop();
+            }
+            return count;
+        } finally {
+            contexts.offer(ctx);
+        }
+    }
+
+    private int greedyClosest(SearchContext ctx, QueryVector query, int start, int level) {
+        int best = start;
+        float bestScore = vectors.similarity(query, start);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[best][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int candidate = neighbours[i];
+                float score = vectors.similarity(query, candidate);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    private SearchContext borrowContext() {
+        SearchContext ctx = contexts.poll();
+        return ctx != null ? ctx : new SearchContext();
+    }
+
+    private Heap searchLayer(SearchContext ctx, QueryVector query, int entry, int ef, int level) {
+        VisitedSet visited = ctx.visited;
+        visited.clear();
+        Heap candidates = ctx.candidates; // max-heap: best unexplored first
+        Heap results = ctx.results;       // min-heap: worst kept result on top
+        candidates.reset(true);
+        results.reset(false);
+
+        float entryScore = vectors.similarity(query, entry);
+        visited.add(entry);
+        candidates.push(entry, entryScore);
+        results.push(entry, entryScore);
+
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.topScore();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int[] neighbours = links[candidate][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (!visited.add(neighbour)) {
+                    continue;
+                }
+                float score = vectors.similarity(query, neighbour);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbour, score);
+                    results.push(neighbour, score);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private static int bestOf(Heap results) {
+        int best = -1;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < results.size(); i++) {
+            if (results.scores[i] > bestScore) {
+                bestScore = results.scores[i];
+                best = results.nodes[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Neighbour selection heuristic from the HNSW paper: walk candidates best first and keep
+     * one only if it is closer to the new node than to every neighbour already kept. This
+     * spreads links across clusters instead of spending them all on one dense region.
+     */
+    private int[] selectNeighbours(SearchContext ctx, Heap found, int max) {
+        int size = found.size();
+        int[] nodes = Arrays.copyOf(found.nodes, size);
+        float[] scores = Arrays.copyOf(found.scores, size);
+        return selectNeighbours(ctx, nodes, scores, size, max);
+    }
+
+    private int[] selectNeighbours(SearchContext ctx, int[] nodes, float[] scores, int size, int max) {
+        sortDescending(nodes, scores, size);
+        int[] selected = new int[Math.min(max, size)];
+        int count = 0;
+        QueryVector candidateVector = ctx.candidate(vectors.dimensions());
+        for (int i = 0; i < size && count < selected.length; i++) {
+            int candidate = nodes[i];
+            vectors.load(candidate, candidateVector);
+            boolean keep = true;
+            for (int j = 0; j < count; j++) {
+                if (vectors.similarity(candidateVector, selected[j]) > scores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[count++] = candidate;
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private void connect(SearchContext ctx, int node, int newNeighbour, int level) {
+        int[] neighbours = links[node][level];
+        int capacity = neighbours.length - 1;
+        if (neighbours[0] < capacity) {
+            neighbours[++neighbours[0]] = newNeighbour;
+            return;
+        }
+
+        // Over capacity: re-run the heuristic over the old links plus the new one
+        QueryVector nodeVector = ctx.node(vectors.dimensions());
+        vectors.load(node, nodeVector);
+        int[] nodes = new int[capacity + 1];
+        float[] scores = new float[capacity + 1];
+        for (int i = 0; i < capacity; i++) {
+            nodes[i] = neighbours[i + 1];
+            scores[i] = vectors.similarity(nodeVector, nodes[i]);
+        }
+        nodes[capacity] = newNeighbour;
+        scores[capacity] = vectors.similarity(nodeVector, newNeighbour);
+
+        int[] kept = selectNeighbours(ctx, nodes, scores, capacity + 1, capacity);
+        neighbours[0] = kept.length;
+        System.arraycopy(kept, 0, neighbours, 1, kept.length);
+    }
+
+    private static void sortDescending(int[] nodes, float[] scores, int size) {
+        // Insertion sort: candidate lists are at most efConstruction long
+        for (int i = 1; i < size; i++) {
+            int node = nodes[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                nodes[j + 1] = nodes[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            scores[j + 1] = score;
+        }
+    }
+
+    private void ensureCapacity(int row) {
+        if (row >= links.length) {
+            links = Arrays.copyOf(links, Math.max(links.length * 2, row + 1));
+        }
+    }
+
+    /**
+     * Writes the graph next to the vectors so the next startup only inserts rows added since.
+     * The file is written to a temp file and moved into place, so a crash never leaves a torn
+     * graph behind.
+     */
+    void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(m);
+            out.writeInt(nodeCount);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            for (int node = 0; node < nodeCount; node++) {
+                int[][] levels = links[node];
+                out.writeByte(levels.length);
+                for (int[] neighbours : levels) {
+                    out.writeShort(neighbours[0]);
+                    for (int i = 1; i <= neighbours[0]; i++) {
+                        out.writeInt(neighbours[i]);
+                    }
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a graph saved by {@link #save(Path)}. Returns false, leaving the index empty, when
+     * the file is missing, was built with a different {@code m} or covers more rows than exist.
+     */
+    boolean load(Path path, int availableRows) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != m) {
+                return false;
+            }
+            int count = in.readInt();
+            if (count > availableRows) {
+                return false;
+            }
+            int entry = in.readInt();
+            int levelMax = in.readInt();
+            int[][][] loaded = new int[Math.max(count, 1024)][][];
+            for (int node = 0; node < count; node++) {
+                int levels = in.readUnsignedByte();
+                loaded[node] = new int[levels][];
+                for (int l = 0; l < levels; l++) {
+                    int size = in.readUnsignedShort();
+                    int[] neighbours = new int[1 + (l == 0 ? maxLinksLayer0 : m)];
+                    neighbours[0] = size;
+                    for (int i = 1; i <= size; i++) {
+                        neighbours[i] = in.readInt();
+                    }
+                    loaded[node][l] = neighbours;
+                }
+            }
+            this.links = loaded;
+            this.nodeCount = count;
+            this.entryPoint = entry;
+            this.maxLevel = levelMax;
+            return true;
+        }
+    }
+
+    /**
+     * Pooled scratch space so neither inserts nor searches allocate per distance.
+     */
+    private static final class SearchContext {
+        private QueryVector insert = new QueryVector(0);
+        private QueryVector candidate = new QueryVector(0);
+        private QueryVector node = new QueryVector(0);
+        private final VisitedSet visited = new VisitedSet();
+        private final Heap candidates = new Heap();
+        private final Heap results = new Heap();
+
+        QueryVector insert(int dims) {
+            if (!insert.fits(dims)) insert = new QueryVector(dims);
+            return insert;
+        }
+
+        QueryVector candidate(int dims) {
+            if (!candidate.fits(dims)) candidate = new QueryVector(dims);
+            return candidate;
+        }
+
+        QueryVector node(int dims) {
+            if (!node.fits(dims)) node = new QueryVector(dims);
+            return node;
+        }
+
+    }
+
+    /**
+     * Nodes visited by one layer search, as an open-addressing set. Its size follows the number
+     * of nodes a search touches (about ef times the links per node), not the number of rows.
+     * Cleared in O(1) by bumping a stamp, like a dense visited array would be.
+     */
+    private static final class VisitedSet {
+        private int[] keys = new int[1024];
+        private int[] stamps = new int[1024];
+        private int stamp = 1;
+        private int size;
+
+        void clear() {
+            size = 0;
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+        }
+
+        /** Adds {@code node}, false if it was already visited. */
+        boolean add(int node) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(node) & mask;
+            while (stamps[slot] == stamp) {
+                if (keys[slot] == node) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = node;
+            stamps[slot] = stamp;
+            size++;
+            return true;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldStamps = stamps;
+            keys = new int[oldKeys.length * 2];
+            stamps = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldStamps[i] == stamp) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (stamps[slot] == stamp) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    stamps[slot] = stamp;
+                }
+            }
+        }
+
+        private static int hash(int node) {
+            int h = node * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Binary heap over parallel (node, score) arrays; a max-heap or a min-heap by score.
+     */
+    private static final class Heap {
+        private int[] nodes = new int[64];
+        private float[] scores = new float[64];
+        private int size;
+        private boolean max;
+
+        void reset(boolean max) {
+            this.max = max;
+            this.size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                int node = nodes[size];
+                float score = scores[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                        child++;
+                    }
+                    if (!before(scores[child], score)) {
+                        break;
+                    }
+                    nodes[i] = nodes[child];
+                    scores[i] = scores[child];
+                    i = child;
+                }
+                nodes[i] = node;
+                scores[i] = score;
+            }
+            return top;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+}
@@ -0,0 +1,734 @@
+package com.example.demo.features.documents.store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.vectorstore.AbstractVectorStoreBuilder;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.ai.vectorstore.observation.AbstractObservationVectorStore;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persistent VectorStore that keeps embeddings off-heap in a memory-mapped file.
+ *
+ * Replaces SimpleVectorStore, which holds every embedding as boxed values on the heap and
+ * forgets the whole knowledge base on restart. Here the vectors live in {@code vectors.f32}
+ * (see {@link VectorFile}) and the id, text and metadata of each row live in an append-only
+ * {@code metadata.log} (see {@link MetadataLog}). Startup only maps the vector file and
+ * replays the log headers, so reopening a large store does not re-embed anything.
+ *
+ * The heap keeps just one id, one log offset and one norm per row. Deleted or replaced rows
+ * are tombstoned, not reclaimed.
+ *
+ * With an {@link HnswIndex} configured, searches walk the graph instead of scanning every
+ * row; searches with a filter expression still use the exact scan. The graph is saved to
+ * {@code hnsw.graph} on close and rows added after the last save are re-inserted on open.
+ *
+ * Similarity kernels come from {@link VectorScorer#best()} (Vector API when available). In
+ * quantized mode an int8 copy of every row ({@link QuantizedRows}) drives the scan and the
+ * graph walk, and only the shortlisted candidates are rescored from the float32 rows.
+ *
+ * Every row's text is also kept in a {@link Bm25Index} for {@link #keywordSearch}, which
+ * finds exact terms (error codes, part numbers) without embedding the query. It is rebuilt
+ * from the metadata log on open.
+ */
+public class MappedVectorStore extends AbstractObservationVectorStore implements AutoCloseable {
+
+    private static final String VECTOR_FILE = "vectors.f32";
+    private static final String METADATA_FILE = "metadata.log";
+    private static final String GRAPH_FILE = "hnsw.graph";
+    // Quantized scans shortlist this many candidates per requested result before rescoring
+    private static final int RESCORE_FACTOR = 4;
+    private static final int MIN_RESCORE_CANDIDATES = 32;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SpelExpressionParser expressionParser = new SpelExpressionParser();
+    private final SimpleVectorStoreFilterExpressionConverter filterExpressionConverter = new SimpleVectorStoreFilterExpressionConverter();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Path directory;
+    private final VectorFile vectors;
+    private final MetadataLog metadataLog;
+    private final HnswIndex index;
+    private final Bm25Index lexicalIndex = new Bm25Index();
+    private final VectorScorer scorer = VectorScorer.best();
+    private final boolean quantized;
+    private QuantizedRows quantizedRows;
+
+    // Per-row bookkeeping, indexed by row number
+    private String[] rowIds = new String[1024];
+    private long[] rowOffsets = new long[1024];
+    private float[] rowNorms = new float[1024];
+    private final BitSet deletedRows = new BitSet();
+    private final Map<String, Integer> idToRow = new HashMap<>();
+
+    protected MappedVectorStore(Builder builder) {
+        super(builder);
+        this.directory = builder.directory;
+        this.quantized = builder.quantized;
+        try {
+            Files.createDirectories(directory);
+            this.vectors = new VectorFile(directory.resolve(VECTOR_FILE));
+            this.metadataLog = new MetadataLog(directory.resolve(METADATA_FILE));
+            this.index = builder.hnswM > 0
+                    ? new HnswIndex(new IndexVectors(), builder.hnswM, builder.hnswEfConstruction, builder.hnswEfSearch)
+                    : null;
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open vector store at " + directory, e);
+        }
+    }
+
+    public static Builder builder(EmbeddingModel embeddingModel) {
+        return new Builder(embeddingModel);
+    }
+
+    /**
+     * Rebuilds the in-memory row index from the metadata log. Rows written to the vector file
+     * without a matching log record (crash between the two writes) stay invisible. Log records
+     * for rows the vector file never received (crash before its header was written back) are
+     * cut off, since new rows will reuse those row numbers.
+     */
+    private void load() throws IOException {
+        vectors.mapExisting();
+        int vectorRows = vectors.rowCount();
+        metadataLog.replay(entry -> {
+            if (entry.row() >= vectorRows) {
+                return false;
+            }
+            if (entry.type() == MetadataLog.ADD) {
+                ensureRowCapacity(entry.row());
+                rowIds[entry.row()] = entry.id();
+                rowOffsets[entry.row()] = entry.offset();
+                Integer previous = idToRow.put(entry.id(), entry.row());
+                if (previous != null) {
+                    deletedRows.set(previous);
+                }
+            } else {
+                deletedRows.set(entry.row());
+                idToRow.remove(entry.id(), entry.row());
+            }
+            return true;
+        });
+
+        // Norms are derived data; recomputing them is one sequential pass over the mapping
+        if (vectorRows > 0) {
+            ensureRowCapacity(vectorRows - 1);
+        }
+        float[] scratch = new float[Math.max(1, vectors.dimensions())];
+        for (int row = 0; row < vectorRows; row++) {
+            vectors.read(row, scratch);
+            if (quantized) {
+                // Every row gets codes, even invisible ones, because the graph holds all rows
+                quantizedRows().set(row, scratch);
+            }
+            if (rowIds[row] != null) {
+                rowNorms[row] = norm(scratch);
+            } else {
+                deletedRows.set(row);
+            }
+        }
+
+        if (index != null) {
+            loadIndex(vectorRows);
+        }
+        loadLexicalIndex(vectorRows);
+        System.out.println("Vector store opened at " + directory + " with " + idToRow.size() + " documents"
+                + " (scorer: " + scorer.name() + (quantized ? ", int8" : "") + ").");
+    }
+
+    private QuantizedRows quantizedRows() {
+        if (quantizedRows == null) {
+            quantizedRows = new QuantizedRows(vectors.dimensions());
+        }
+        return quantizedRows;
+    }
+
+    /**
+     * Wraps a query embedding for repeated scoring, quantizing it in int8 mode.
+     */
+    private QueryVector prepare(float[] query) {
+        QueryVector prepared = new QueryVector(query.length);
+        System.arraycopy(query, 0, prepared.values, 0, query.length);
+        prepared.norm = norm(query);
+        if (quantized) {
+            prepared.scale = QuantizedRows.quantize(query, prepared.codes, 0);
+        }
+        return prepared;
+    }
+
+    /**
+     * Cosine similarity between a prepared vector and a stored row: from int8 codes in
+     * quantized mode, else from the float32 row.
+     */
+    private float similarity(QueryVector query, int row) {
+        float rowNorm = rowNorms[row];
+        if (rowNorm == 0 || query.norm == 0) {
+            return -1f;
+        }
+        int dims = vectors.dimensions();
+        if (quantized) {
+            int dot = scorer.dot(query.codes, 0, quantizedRows.page(row), quantizedRows.offset(row), dims);
+            return dot * query.scale * quantizedRows.scale(row) / (query.norm * rowNorm);
+        }
+        return fullPrecisionSimilarity(query, row);
+    }
+
+    private float fullPrecisionSimilarity(QueryVector query, int row) {
+        float rowNorm = rowNorms[row];
+        if (rowNorm == 0 || query.norm == 0) {
+            return -1f;
+        }
+        vectors.read(row, query.scratch);
+        return scorer.dot(query.values, query.scratch, query.values.length) / (query.norm * rowNorm);
+    }
+
+    private void loadIndex(int vectorRows) throws IOException {
+        Path graphFile = directory.resolve(GRAPH_FILE);
+        if (!index.load(graphFile, vectorRows)) {
+            index.clear();
+        }
+        int missing = vectorRows - index.nodeCount();
+        if (missing > 0) {
+            long start = System.nanoTime();
+            for (int row = index.nodeCount(); row < vectorRows; row++) {
+                index.insert(row);
+            }
+            System.out.println("HNSW index: inserted " + missing + " rows in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+    }
+
+    private void loadLexicalIndex(int vectorRows) throws IOException {
+        long start = System.nanoTime();
+        for (int row = 0; row < vectorRows; row++) {
+            if (!deletedRows.get(row)) {
+                lexicalIndex.add(row, metadataLog.read(rowOffsets[row]).text());
+            }
+        }
+        if (!idToRow.isEmpty()) {
+            System.out.println("BM25 index: " + idToRow.size() + " rows, " + lexicalIndex.terms() + " terms in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+    }
+
+    /**
+     * Lets the graph read vectors and norms straight from this store's mapping.
+     */
+    private final class IndexVectors implements HnswIndex.Vectors {
+        @Override
+        public int dimensions() {
+            return vectors.dimensions();
+        }
+
+        @Override
+        public void load(int row, QueryVector target) {
+            vectors.read(row, target.values);
+            target.norm = rowNorms[row];
+            if (quantized) {
+                System.arraycopy(quantizedRows.page(row), quantizedRows.offset(row), target.codes, 0, target.codes.length);
+                target.scale = quantizedRows.scale(row);
+            }
+        }
+
+        @Override
+        public float similarity(QueryVector query, int row) {
+            return MappedVectorStore.this.similarity(query, row);
+        }
+    }
+
+    private void ensureRowCapacity(int row) {
+        if (row >= rowIds.length) {
+            int capacity = Math.max(rowIds.length * 2, row + 1);
+            rowIds = Arrays.copyOf(rowIds, capacity);
+            rowOffsets = Arrays.copyOf(rowOffsets, capacity);
+            rowNorms = Arrays.copyOf(rowNorms, capacity);
+        }
+    }
+
+    @Override
+    public void doAdd(List<Document> documents) {
+        List<float[]> embeddings = this.embeddingModel.embed(documents, EmbeddingOptions.builder().build(), this.batchingStrategy);
+        addEmbedded(documents, embeddings);
+    }
+
+    /**
+     * Persists documents whose embeddings were computed elsewhere. A document whose id already
+     * exists replaces the earlier row.
+     */
+    public void addEmbedded(List<Document> documents, List<float[]> embeddings) {
+        if (documents.size() != embeddings.size()) {
+            throw new IllegalArgumentException("Got " + embeddings.size() + " embeddings for " + documents.size() + " documents");
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                float[] embedding = embeddings.get(i);
+
+                int row = vectors.append(embedding);
+                long offset = metadataLog.appendAdd(row, document.getId(), document.getText(), toJson(document.getMetadata()));
+
+                ensureRowCapacity(row);
+                rowIds[row] = document.getId();
+                rowOffsets[row] = offset;
+                rowNorms[row] = norm(embedding);
+                if (quantized) {
+                    quantizedRows().set(row, embedding);
+                }
+                Integer previous = idToRow.put(document.getId(), row);
+                if (previous != null) {
+                    deletedRows.set(previous);
+                    lexicalIndex.remove(previous);
+                }
+                lexicalIndex.add(row, document.getText());
+                if (index != null) {
+                    index.insert(row);
+                }
+            }
+            vectors.force();
+            metadataLog.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to vector store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void doDelete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer row = idToRow.remove(id);
+                if (row != null) {
+                    metadataLog.appendDelete(row, id);
+                    deletedRows.set(row);
+                    lexicalIndex.remove(row);
+                }
+            }
+            metadataLog.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete from vector store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> doSimilaritySearch(SearchRequest request) {
+        float[] query = this.embeddingModel.embed(request.getQuery());
+        Expression filter = request.hasFilterExpression()
+                ? expressionParser.parseExpression(filterExpressionConverter.convertExpression(request.getFilterExpression()))
+                : null;
+
+        lock.readLock().lock();
+        try {
+            List<ScoredRow> hits = (index != null && filter == null)
+                    ? approximateSearch(query, request.getTopK(), request.getSimilarityThreshold(), index.efSearch())
+                    : exactSearch(query, request.getTopK(), request.getSimilarityThreshold(), filter);
+            List<Document> results = new ArrayList<>(hits.size());
+            for (ScoredRow hit : hits) {
+                results.add(toDocument(hit));
+            }
+            return results;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read from vector store", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Brute-force scan over every live row, linear in the size of the store. In quantized
+     * mode (and without a filter) the scan runs on int8 codes and the shortlist is rescored
+     * at full precision. Caller holds the read lock.
+     */
+    private List<ScoredRow> exactSearch(float[] query, int topK, double threshold, Expression filter) throws IOException {
+        if (quantized && filter == null) {
+            List<ScoredRow> shortlist = scan(query, Math.max(topK * RESCORE_FACTOR, MIN_RESCORE_CANDIDATES),
+                    SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, null, true);
+            return rescore(prepare(query), shortlist, topK, threshold);
+        }
+        return scan(query, topK, threshold, filter, false);
+    }
+
+    private List<ScoredRow> scan(float[] query, int topK, double threshold, Expression filter, boolean useCodes) throws IOException {
+        int rows = vectors.rowCount();
+        if (rows == 0 || norm(query) == 0) {
+            return List.of();
+        }
+        checkDimensions(query);
+        QueryVector prepared = prepare(query);
+
+        // Min-heap of the best topK candidates seen so far
+        PriorityQueue<ScoredRow> best = new PriorityQueue<>(topK + 1);
+        for (int row = deletedRows.nextClearBit(0); row < rows; row = deletedRows.nextClearBit(row + 1)) {
+            if (rowNorms[row] == 0) {
+                continue;
+            }
+            double score = useCodes ? similarity(prepared, row) : fullPrecisionSimilarity(prepared, row);
+            if (score < threshold) {
+                continue;
+            }
+            if (best.size() == topK && score <= best.peek().score()) {
+                continue;
+            }
+            if (filter != null && !matches(filter, row)) {
+                continue;
+            }
+            best.add(new ScoredRow(row, score));
+            if (best.size() > topK) {
+                best.poll();
+            }
+        }
+
+        List<ScoredRow> ordered = new ArrayList<>(best);
+        ordered.sort((a, b) -> Double.compare(b.score(), a.score()));
+        return ordered;
+    }
+
+    /**
+     * HNSW search. Asks the graph for {@code max(ef, topK)} candidates, then drops deleted
+     * rows and anything under the threshold, so topK / similarityThreshold mean the same as
+     * in the exact scan. Caller holds the read lock.
+     */
+    private List<ScoredRow> approximateSearch(float[] query, int topK, double threshold, int ef) {
+        if (index.nodeCount() == 0 || norm(query) == 0) {
+            return List.of();
+        }
+        checkDimensions(query);
+        QueryVector prepared = prepare(query);
+
+        int candidates = Math.max(ef, topK);
+        int[] rows = new int[candidates];
+        float[] scores = new float[candidates];
+        int found = index.search(prepared, candidates, rows, scores);
+
+        if (quantized) {
+            List<ScoredRow> shortlist = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                if (!deletedRows.get(rows[i])) {
+                    shortlist.add(new ScoredRow(rows[i], scores[i]));
+                }
+            }
+            return rescore(prepared, shortlist, topK, threshold);
+        }
+
+        List<ScoredRow> hits = new ArrayList<>(topK);
+        for (int i = 0; i < found && hits.size() < topK; i++) {
+            if (scores[i] < threshold) {
+                break; // candidates come best first
+            }
+            if (!deletedRows.get(rows[i])) {
+                hits.add(new ScoredRow(rows[i], scores[i]));
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Recomputes shortlist scores from the float32 rows, then applies threshold and topK.
+     */
+    private List<ScoredRow> rescore(QueryVector query, List<ScoredRow> shortlist, int topK, double threshold) {
+        List<ScoredRow> rescored = new ArrayList<>(shortlist.size());
+        for (ScoredRow candidate : shortlist) {
+            double score = fullPrecisionSimilarity(query, candidate.row());
+            if (score >= threshold) {
+                rescored.add(new ScoredRow(candidate.row(), score));
+            }
+        }
+        rescored.sort((a, b) -> Double.compare(b.score(), a.score()));
+        return rescored.size() > topK ? new ArrayList<>(rescored.subList(0, topK)) : rescored;
+    }
+
+    private void checkDimensions(float[] query) {
+        if (query.length != vectors.dimensions()) {
+            throw new IllegalArgumentException("Query embedding has " + query.length + " dimensions, store expects " + vectors.dimensions());
+        }
+    }
+
+    /**
+     * Measures HNSW recall against the exact scan, for each candidate efSearch value.
+     *
+     * Uses {@code queries} stored vectors, picked with a fixed seed, as queries so no embedding
+     * calls are made and runs are comparable. Recall is the share of the exact top-K rows that
+     * the graph also returned; latency covers the graph search only.
+     *
+     * @throws IllegalArgumentException when {@code queries}, {@code topK} or an efSearch value is below 1.
+     */
+    public List<RecallPoint> recallReport(int queries, int topK, int[] efValues) {
+        if (queries < 1 || topK < 1 || Arrays.stream(efValues).anyMatch(ef -> ef < 1)) {
+            throw new IllegalArgumentException("queries, topK and every ef value must be at least 1");
+        }
+        if (index == null) {
+            throw new IllegalStateException("HNSW index is disabled (app.vectorstore.hnsw.m=0)");
+        }
+        lock.readLock().lock();
+        try {
+            int rows = vectors.rowCount();
+            if (idToRow.isEmpty()) {
+                return List.of();
+            }
+            int[] sample = new int[Math.min(queries, idToRow.size())];
+            SplittableRandom random = new SplittableRandom(7);
+            for (int i = 0; i < sample.length; i++) {
+                int row;
+                do {
+                    row = random.nextInt(rows);
+                } while (deletedRows.get(row));
+                sample[i] = row;
+            }
+
+            float[][] queryVectors = new float[sample.length][vectors.dimensions()];
+            List<Set<Integer>> truth = new ArrayList<>(sample.length);
+            for (int i = 0; i < sample.length; i++) {
+                vectors.read(sample[i], queryVectors[i]);
+                Set<Integer> expected = new HashSet<>();
+                // Ground truth always comes from the full-precision scan
+                for (ScoredRow hit : scan(queryVectors[i], topK, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, null, false)) {
+                    expected.add(hit.row());
+                }
+                truth.add(expected);
+            }
+
+            List<RecallPoint> report = new ArrayList<>(efValues.length);
+            for (int ef : efValues) {
+                long[] latencies = new long[sample.length];
+                int matched = 0;
+                int total = 0;
+                for (int i = 0; i < sample.length; i++) {
+                    long start = System.nanoTime();
+                    List<ScoredRow> hits = approximateSearch(queryVectors[i], topK, SearchRequest.SIMILARITY_THRESHOLD_ACCEPT_ALL, ef);
+                    latencies[i] = System.nanoTime() - start;
+                    for (ScoredRow hit : hits) {
+                        if (truth.get(i).contains(hit.row())) {
+                            matched++;
+                        }
+                    }
+                    total += truth.get(i).size();
+                }
+                Arrays.sort(latencies);
+                double mean = Arrays.stream(latencies).average().orElse(0) / 1000.0;
+                double p99 = latencies[Math.min(latencies.length - 1, (int) Math.ceil(latencies.length * 0.99) - 1)] / 1000.0;
+                report.add(new RecallPoint(ef, total == 0 ? 1.0 : (double) matched / total, mean, p99));
+            }
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read from vector store", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One line of the recall-vs-latency report.
+     */
+    public record RecallPoint(int efSearch, double recall, double meanMicros, double p99Micros) {
+    }
+
+    private record ScoredRow(int row, double score) implements Comparable<ScoredRow> {
+        @Override
+        public int compareTo(ScoredRow other) {
+            return Double.compare(score, other.score);
+        }
+    }
+
+    private boolean matches(Expression filter, int row) throws IOException {
+        StandardEvaluationContext context = new StandardEvaluationContext();
+        context.setVariable("metadata", fromJson(metadataLog.read(rowOffsets[row]).metadataJson()));
+        return Boolean.TRUE.equals(filter.getValue(context, Boolean.class));
+    }
+
+    private Document toDocument(ScoredRow hit) throws IOException {
+        MetadataLog.Entry entry = metadataLog.read(rowOffsets[hit.row()]);
+        Map<String, Object> metadata = fromJson(entry.metadataJson());
+        // Same key SimpleVectorStore uses, KnowledgeBaseController logs it
+        metadata.put("distance", 1.0 - hit.score());
+        return Document.builder()
+                .id(entry.id())
+                .text(entry.text())
+                .metadata(metadata)
+                .score(hit.score())
+                .build();
+    }
+
+    /**
+     * BM25 search over the stored text; never calls the embedding model. Each hit's document
+     * carries the BM25 score as its score.
+     */
+    public List<KeywordHit> keywordSearch(String query, int topK) {
+        Set<String> terms = Bm25Index.queryTerms(query);
+        lock.readLock().lock();
+        try {
+            List<Bm25Index.Hit> hits = lexicalIndex.search(terms, topK, row -> !deletedRows.get(row));
+            List<KeywordHit> results = new ArrayList<>(hits.size());
+            for (Bm25Index.Hit hit : hits) {
+                MetadataLog.Entry entry = metadataLog.read(rowOffsets[hit.row()]);
+                Document document = Document.builder()
+                        .id(entry.id())
+                        .text(entry.text())
+                        .metadata(fromJson(entry.metadataJson()))
+                        .score((double) hit.score())
+                        .build();
+                results.add(new KeywordHit(document, hit.matchedTerms(), terms.size()));
+            }
+            return results;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read from vector store", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A {@link #keywordSearch} result: the document and how many of the query's distinct
+     * terms it contains.
+     */
+    public record KeywordHit(Document document, int matchedTerms, int queryTerms) {
+
+        public boolean matchesAllTerms() {
+            return matchedTerms == queryTerms;
+        }
+    }
+
+    /**
+     * True when a live document with this id is stored. Ingestion uses content-hash ids, so
+     * this doubles as the "already embedded" check for re-uploaded chunks.
+     */
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return idToRow.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of live (not deleted) documents.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idToRow.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Document metadata is not serializable", e);
+        }
+    }
+
+    private Map<String, Object> fromJson(String json) {
+        if (json == null || json.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<LinkedHashMap<String, Object>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt metadata record in vector store", e);
+        }
+    }
+
+    static float norm(float[] vector) {
+        float sum = 0f;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    @Override
+    public VectorStoreObservationContext.Builder createObservationContextBuilder(String operationName) {
+        return VectorStoreObservationContext.builder("mapped", operationName)
+                .collectionName(directory.toString())
+                .dimensions(vectors.dimensions())
+                .similarityMetric("cosine");
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                index.save(directory.resolve(GRAPH_FILE));
+            }
+            vectors.close();
+            metadataLog.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static class Builder extends AbstractVectorStoreBuilder<Builder> {
+
+        private Path directory = Path.of("./data/vectorstore");
+        private int hnswM;
+        private int hnswEfConstruction = 200;
+        private int hnswEfSearch = 64;
+        private boolean quantized;
+
+        private Builder(EmbeddingModel embeddingModel) {
+            super(embeddingModel);
+        }
+
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Enables the HNSW index. {@code m = 0} keeps the exact scan.
+         */
+        public Builder hnsw(int m, int efConstruction, int efSearch) {
+            this.hnswM = m;
+            this.hnswEfConstruction = efConstruction;
+            this.hnswEfSearch = efSearch;
+            return this;
+        }
+
+        /**
+         * Scores with int8 codes, which scans 4x fewer bytes per row, and rescores the shortlist
+         * from the float32 rows. The codes are an extra on-heap copy next to the mapped file.
+         */
+        public Builder quantized(boolean quantized) {
+            this.quantized = quantized;
+            return this;
+        }
+
+        @Override
+        public MappedVectorStore build() {
+            return new MappedVectorStore(this);
+        }
+    }
+}
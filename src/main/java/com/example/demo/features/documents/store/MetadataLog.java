@@ -0,0 +1,164 @@
+package com.example.demo.features.documents.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only log holding the id, text and JSON metadata for every vector row.
+ *
+ * Record layout: [type:1][row:4][id][text][metadata], where each string is a 4 byte
+ * length followed by UTF-8 bytes. A DELETE record carries only the row and the id.
+ * Records are never rewritten, so the log doubles as the recovery journal: replaying it
+ * on startup rebuilds the id-to-row index without touching the vectors.
+ */
+final class MetadataLog implements AutoCloseable {
+
+    static final byte ADD = 1;
+    static final byte DELETE = 2;
+
+    /**
+     * One decoded log record; {@code text} and {@code metadataJson} are null for DELETE.
+     * {@code end} is the offset of the record that follows.
+     */
+    record Entry(byte type, int row, String id, String text, String metadataJson, long offset, long end) {
+    }
+
+    interface Visitor {
+        /**
+         * @return false to stop the replay and truncate the log at this record.
+         */
+        boolean visit(Entry entry);
+    }
+
+    private final FileChannel channel;
+
+    MetadataLog(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Appends an ADD record and returns its offset, which {@link #read(long)} accepts later.
+     */
+    long appendAdd(int row, String id, String text, String metadataJson) throws IOException {
+        return append(ADD, row, id, text, metadataJson);
+    }
+
+    void appendDelete(int row, String id) throws IOException {
+        append(DELETE, row, id, null, null);
+    }
+
+    private long append(byte type, int row, String id, String text, String metadataJson) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        byte[] metaBytes = metadataJson == null ? new byte[0] : metadataJson.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 12 + idBytes.length + textBytes.length + metaBytes.length);
+        buffer.put(type).putInt(row);
+        buffer.putInt(idBytes.length).put(idBytes);
+        buffer.putInt(textBytes.length).put(textBytes);
+        buffer.putInt(metaBytes.length).put(metaBytes);
+        buffer.flip();
+
+        long offset = channel.size();
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return offset;
+    }
+
+    /**
+     * Reads the record at {@code offset}. Safe to call from many threads at once because
+     * it only uses positional reads.
+     */
+    Entry read(long offset) throws IOException {
+        return read(offset, true);
+    }
+
+    private Entry read(long offset, boolean withBody) throws IOException {
+        ByteBuffer head = readFully(offset, 9);
+        byte type = head.get();
+        int row = head.getInt();
+        int idLength = head.getInt();
+
+        long position = offset + 9;
+        String id = string(readFully(position, idLength));
+        position += idLength;
+
+        int textLength = readFully(position, 4).getInt();
+        position += 4;
+        String text = withBody ? string(readFully(position, textLength)) : null;
+        position += textLength;
+
+        int metaLength = readFully(position, 4).getInt();
+        position += 4;
+        String meta = withBody ? string(readFully(position, metaLength)) : null;
+        long end = position + metaLength;
+        if (end > channel.size()) {
+            throw new EOFException();
+        }
+
+        if (type == DELETE) {
+            return new Entry(type, row, id, null, null, offset, end);
+        }
+        return new Entry(type, row, id, text, meta, offset, end);
+    }
+
+    /**
+     * Replays every complete record in file order without decoding text or metadata. A torn
+     * record at the tail (crash in the middle of an append) is truncated away, and so is
+     * everything from the first record the visitor rejects.
+     */
+    void replay(Visitor visitor) throws IOException {
+        long position = 0;
+        long size = channel.size();
+        while (position < size) {
+            Entry entry;
+            try {
+                entry = read(position, false);
+            } catch (EOFException e) {
+                break;
+            }
+            if (!visitor.visit(entry)) {
+                break;
+            }
+            position = entry.end();
+        }
+        if (position < size) {
+            System.err.println("Vector store metadata log truncated at offset " + position);
+            channel.truncate(position);
+        }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        if (length < 0 || position + length > channel.size()) {
+            throw new EOFException();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String string(ByteBuffer buffer) {
+        return new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8);
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.features.documents.store;
+
+import java.util.Arrays;
+
+/**
+ * Int8 copy of every row for the quantized scoring mode: one byte per dimension plus one
+ * float scale per row, a quarter of the float32 size.
+ *
+ * Symmetric per-row scalar quantization: {@code code = round(value / scale)} with
+ * {@code scale = max|value| / 127}. The codes are derived data, rebuilt from the float
+ * mapping on startup, and kept in fixed-size pages so no single array has to grow huge.
+ */
+final class QuantizedRows {
+
+    private static final int PAGE_BYTES = 16 * 1024 * 1024;
+
+    private final int dimensions;
+    private final int rowsPerPage;
+    private byte[][] pages = new byte[0][];
+    private float[] scales = new float[1024];
+
+    QuantizedRows(int dimensions) {
+        this.dimensions = dimensions;
+        this.rowsPerPage = Math.max(1, PAGE_BYTES / dimensions);
+    }
+
+    void set(int row, float[] vector) {
+        int page = row / rowsPerPage;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, page + 1);
+        }
+        if (pages[page] == null) {
+            pages[page] = new byte[rowsPerPage * dimensions];
+        }
+        if (row >= scales.length) {
+            scales = Arrays.copyOf(scales, Math.max(scales.length * 2, row + 1));
+        }
+        scales[row] = quantize(vector, pages[page], (row % rowsPerPage) * dimensions);
+    }
+
+    byte[] page(int row) {
+        return pages[row / rowsPerPage];
+    }
+
+    int offset(int row) {
+        return (row % rowsPerPage) * dimensions;
+    }
+
+    float scale(int row) {
+        return scales[row];
+    }
+
+    /**
+     * Writes the codes of {@code vector} into {@code target} at {@code offset} and returns the
+     * scale that maps them back to floats.
+     */
+    static float quantize(float[] vector, byte[] target, int offset) {
+        float maxAbs = 0f;
+        for (float value : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (maxAbs == 0f) {
+            Arrays.fill(target, offset, offset + vector.length, (byte) 0);
+            return 0f;
+        }
+        float scale = maxAbs / 127f;
+        for (int i = 0; i < vector.length; i++) {
+            target[offset + i] = (byte) Math.round(vector[i] / scale);
+        }
+        return scale;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.features.documents.store;
+
+/**
+ * A vector prepared for repeated scoring: the float values, their norm and, in int8 mode,
+ * the quantized codes with their scale. Owns a scratch row so scoring never allocates.
+ */
+final class QueryVector {
+
+    float[] values;
+    float norm;
+    byte[] codes;
+    float scale;
+    float[] scratch;
+
+    QueryVector(int dimensions) {
+        this.values = new float[dimensions];
+        this.codes = new byte[dimensions];
+        this.scratch = new float[dimensions];
+    }
+
+    boolean fits(int dimensions) {
+        return values.length == dimensions;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.features.documents.store;
+
+/**
+ * Portable scalar kernels, used when the Vector API module is not on the module path.
+ */
+final class ScalarVectorScorer implements VectorScorer {
+
+    @Override
+    public float dot(float[] a, float[] b, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
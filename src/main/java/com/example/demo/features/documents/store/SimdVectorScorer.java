@@ -0,0 +1,70 @@
+package com.example.demo.features.documents.store;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels on the incubating Vector API. Only loaded through {@link VectorScorer#best()},
+ * so the class never gets touched on a JVM without {@code jdk.incubator.vector}.
+ */
+final class SimdVectorScorer implements VectorScorer {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    // Int8 lanes line up one-to-one with int lanes: bytes widen to shorts, multiply there
+    // (|code| <= 128, so a product always fits in a short), then widen again to accumulate.
+    // 128 bit hardware would need a 32 bit byte shape, which does not exist; it stays scalar.
+    private static final VectorSpecies<Short> SHORTS = INTS.length() >= 8
+            ? VectorSpecies.of(short.class, VectorShape.forBitSize(INTS.length() * Short.SIZE))
+            : null;
+    private static final VectorSpecies<Byte> BYTES = INTS.length() >= 8
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.length() * Byte.SIZE))
+            : null;
+
+    @Override
+    public float dot(float[] a, float[] b, int length) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        int bound = FLOATS.loopBound(length);
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, i);
+            FloatVector vb = FloatVector.fromArray(FLOATS, b, i);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int i = 0;
+        int result = 0;
+        if (BYTES != null) {
+            IntVector sum = IntVector.zero(INTS);
+            int bound = BYTES.loopBound(length);
+            for (; i < bound; i += BYTES.length()) {
+                ShortVector va = (ShortVector) ByteVector.fromArray(BYTES, a, aOffset + i).convertShape(VectorOperators.B2S, SHORTS, 0);
+                ShortVector vb = (ShortVector) ByteVector.fromArray(BYTES, b, bOffset + i).convertShape(VectorOperators.B2S, SHORTS, 0);
+                sum = sum.add(va.mul(vb).convertShape(VectorOperators.S2I, INTS, 0));
+            }
+            result = sum.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public String name() {
+        return "simd-" + FLOATS.vectorBitSize();
+    }
+}
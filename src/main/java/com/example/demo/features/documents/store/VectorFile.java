@@ -0,0 +1,136 @@
+package com.example.demo.features.documents.store;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-width float32 rows in a memory-mapped file.
+ *
+ * Layout: a 64 byte header (magic, dimensions, row count) followed by contiguous rows of
+ * {@code dimensions} little-endian floats. The file is mapped in segments of at most 64 MB,
+ * so it can grow past the 2 GB limit of a single MappedByteBuffer. The OS page cache owns
+ * the data; nothing is copied onto the Java heap.
+ */
+final class VectorFile implements AutoCloseable {
+
+    private static final int MAGIC = 0x4D565331; // "MVS1"
+    private static final int HEADER_BYTES = 64;
+    private static final long MAX_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<FloatBuffer> floatViews = new ArrayList<>();
+
+    private int dimensions;
+    private int rowsPerSegment;
+    private int rowCount;
+    private int firstDirtySegment = Integer.MAX_VALUE;
+
+    VectorFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        this.header.order(ByteOrder.LITTLE_ENDIAN);
+
+        int magic = header.getInt(0);
+        if (magic == MAGIC) {
+            this.dimensions = header.getInt(4);
+            this.rowCount = header.getInt(8);
+            this.rowsPerSegment = rowsPerSegment(dimensions);
+        } else if (magic != 0) {
+            throw new IOException("Not a vector file: " + path);
+        }
+    }
+
+    private static int rowsPerSegment(int dimensions) {
+        return (int) Math.max(1, MAX_SEGMENT_BYTES / (dimensions * (long) Float.BYTES));
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Fixes the dimensionality on first write; every later row must match it.
+     */
+    void ensureDimensions(int dims) {
+        if (dimensions == 0) {
+            this.dimensions = dims;
+            this.rowsPerSegment = rowsPerSegment(dims);
+            header.putInt(0, MAGIC);
+            header.putInt(4, dims);
+        } else if (dimensions != dims) {
+            throw new IllegalArgumentException("Embedding has " + dims + " dimensions, store expects " + dimensions);
+        }
+    }
+
+    /**
+     * Appends a row and returns its index. Call {@link #force()} to make it durable.
+     */
+    int append(float[] vector) throws IOException {
+        ensureDimensions(vector.length);
+        int row = rowCount;
+        firstDirtySegment = Math.min(firstDirtySegment, row / rowsPerSegment);
+        FloatBuffer view = view(row / rowsPerSegment);
+        view.put((row % rowsPerSegment) * dimensions, vector);
+        rowCount = row + 1;
+        header.putInt(8, rowCount);
+        return row;
+    }
+
+    /**
+     * Copies a row into {@code target}, which must hold at least {@code dimensions} floats.
+     */
+    void read(int row, float[] target) {
+        FloatBuffer view = floatViews.get(row / rowsPerSegment);
+        view.get((row % rowsPerSegment) * dimensions, target, 0, dimensions);
+    }
+
+    /**
+     * Maps every segment that already holds rows. Called once at startup so reads never
+     * have to take the write path.
+     */
+    void mapExisting() throws IOException {
+        if (rowCount > 0) {
+            view((rowCount - 1) / rowsPerSegment);
+        }
+    }
+
+    private FloatBuffer view(int segment) throws IOException {
+        while (floatViews.size() <= segment) {
+            long offset = HEADER_BYTES + (long) floatViews.size() * rowsPerSegment * dimensions * Float.BYTES;
+            long length = (long) rowsPerSegment * dimensions * Float.BYTES;
+            // READ_WRITE mappings past the end of the file grow it, so no explicit resize is needed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, offset, length);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            segments.add(mapped);
+            floatViews.add(mapped.asFloatBuffer());
+        }
+        return floatViews.get(segment);
+    }
+
+    void force() {
+        for (int i = Math.min(firstDirtySegment, segments.size()); i < segments.size(); i++) {
+            segments.get(i).force();
+        }
+        header.force();
+        firstDirtySegment = Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.features.documents.store;
+
+/**
+ * Dot-product kernels behind every similarity computed by the vector store.
+ *
+ * {@link #best()} returns the Vector API (SIMD) implementation when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and the plain scalar loops otherwise.
+ */
+interface VectorScorer {
+
+    float dot(float[] a, float[] b, int length);
+
+    /**
+     * Dot product of two int8 code runs, accumulated in int so nothing overflows for any
+     * realistic embedding size.
+     */
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    String name();
+
+    static VectorScorer best() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (VectorScorer) Class.forName("com.example.demo.features.documents.store.SimdVectorScorer")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector API unavailable, using scalar similarity: " + e);
+            }
+        }
+        return new ScalarVectorScorer();
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.demo.features.embedding;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Embeds search queries for the vector store with as few Ollama calls as possible.
+ *
+ * Three layers, in lookup order:
+ * <ol>
+ *     <li>a Caffeine cache of query vectors keyed by normalized text, so a repeated question
+ *     costs no model call at all;</li>
+ *     <li>request coalescing: concurrent callers asking for the same text wait on the one
+ *     call already in flight instead of starting their own;</li>
+ *     <li>micro-batching: distinct queries that arrive within {@code batchWindow} of each
+ *     other are sent to the model as one multi-input request, up to {@code maxBatchSize}.</li>
+ * </ol>
+ * Document embedding during ingestion does its own batching and bypasses all of this, see
+ * {@link #asEmbeddingModel()}.
+ */
+@Component
+public class EmbeddingService implements DisposableBean {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private record Pending(String text, CompletableFuture<float[]> result) {
+    }
+
+    private final EmbeddingModel delegate;
+    private final Cache<String, float[]> cache;
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final long batchWindowNanos;
+    private final int maxBatchSize;
+    private final Thread batcher;
+    private volatile boolean running = true;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter queryCalls;
+    private final Counter bulkCalls;
+    private final DistributionSummary batchSizes;
+    private final Timer queryLatency;
+    private final Timer bulkLatency;
+
+    public EmbeddingService(EmbeddingModel delegate,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.embedding.cache.max-entries:10000}") long maxEntries,
+                            @Value("${app.embedding.batch.window:5ms}") Duration batchWindow,
+                            @Value("${app.embedding.batch.max-size:32}") int maxBatchSize) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder().maximumSize(maxEntries).build();
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        this.hits = cacheCounter(meterRegistry, "hit");
+        this.misses = cacheCounter(meterRegistry, "miss");
+        this.coalesced = cacheCounter(meterRegistry, "coalesced");
+        this.queryCalls = callCounter(meterRegistry, "query");
+        this.bulkCalls = callCounter(meterRegistry, "bulk");
+        this.batchSizes = DistributionSummary.builder("embedding.batch.size")
+                .description("Texts per embedding model call")
+                .register(meterRegistry);
+        this.queryLatency = latencyTimer(meterRegistry, "query");
+        this.bulkLatency = latencyTimer(meterRegistry, "bulk");
+        Gauge.builder("embedding.cache.size", cache, Cache::estimatedSize)
+                .description("Cached query embeddings")
+                .register(meterRegistry);
+
+        this.batcher = Thread.ofPlatform().daemon().name("embedding-batcher").start(this::batchLoop);
+    }
+
+    private static Counter cacheCounter(MeterRegistry registry, String result) {
+        return Counter.builder("embedding.cache")
+                .description("Query embedding lookups by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter callCounter(MeterRegistry registry, String type) {
+        return Counter.builder("embedding.calls")
+                .description("Calls that reached the embedding model")
+                .tag("type", type)
+                .register(registry);
+    }
+
+    private static Timer latencyTimer(MeterRegistry registry, String type) {
+        return Timer.builder("embedding.latency")
+                .description("Time callers wait for embeddings; for queries including cache hits and batching")
+                .tag("type", type)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Same normalization as the ingestion content hash: NFKC plus collapsed whitespace.
+     */
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").strip();
+    }
+
+    /**
+     * Embedding of {@code text}, from the cache, a call already in flight, or the next batch.
+     * Returns a fresh copy the caller may modify.
+     */
+    public float[] embedQuery(String text) {
+        long start = System.nanoTime();
+        try {
+            return lookup(normalize(text));
+        } finally {
+            queryLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private float[] lookup(String key) {
+        float[] cached = cache.getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached.clone();
+        }
+
+        CompletableFuture<float[]> result = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = inFlight.putIfAbsent(key, result);
+        if (existing != null) {
+            coalesced.increment();
+            return join(existing).clone();
+        }
+
+        misses.increment();
+        try {
+            if (batchWindowNanos <= 0 || !running) {
+                result.complete(callModel(List.of(key)).get(0));
+            } else {
+                queue.add(new Pending(key, result));
+            }
+            float[] vector = join(result);
+            cache.put(key, vector);
+            return vector.clone();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, result);
+        }
+    }
+
+    private static float[] join(CompletableFuture<float[]> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private List<float[]> callModel(List<String> texts) {
+        queryCalls.increment();
+        batchSizes.record(texts.size());
+        return delegate.embed(texts);
+    }
+
+    /**
+     * Waits for the first query, keeps collecting until the window closes or the batch is
+     * full, then embeds the whole batch in one call.
+     */
+    private void batchLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                embedBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        failPending(new IllegalStateException("Embedding service is shutting down"));
+    }
+
+    private void embedBatch(List<Pending> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        batch.forEach(pending -> texts.add(pending.text()));
+        try {
+            List<float[]> vectors = callModel(texts);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(vectors.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    private void failPending(RuntimeException error) {
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(error);
+        }
+    }
+
+    /**
+     * EmbeddingModel view for the vector store: {@code embed(String)} and {@code embed(Document)}
+     * (query embedding) go through {@link #embedQuery(String)}. Every {@code call(EmbeddingRequest)},
+     * which is how document batches are embedded even when they hold a single chunk, goes
+     * straight to the model with its options and is only counted.
+     */
+    public EmbeddingModel asEmbeddingModel() {
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                bulkCalls.increment();
+                batchSizes.record(request.getInstructions().size());
+                long start = System.nanoTime();
+                try {
+                    return delegate.call(request);
+                } finally {
+                    bulkLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public float[] embed(String text) {
+                return embedQuery(text);
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                return embedQuery(document.getText());
+            }
+
+            @Override
+            public int dimensions() {
+                return delegate.dimensions();
+            }
+        };
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        batcher.interrupt();
+        batcher.join(1000);
+        failPending(new IllegalStateException("Embedding service is shutting down"));
+    }
+}
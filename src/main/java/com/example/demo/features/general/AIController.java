@@ -1,5 +1,10 @@
 package com.example.demo.features.general;
 
+import com.example.demo.features.cache.ResponseCache;
+import com.example.demo.features.limits.ModelConcurrencyLimiter;
+import com.example.demo.features.limits.PriorityClass;
+import com.example.demo.features.observability.AiMetrics;
+import com.example.demo.features.runtime.ModelRuntimeManager;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -12,8 +17,13 @@ public class AIController {
 
     private final ChatClient chatClient;
 
-    public AIController(@Qualifier("ollamaChatModel") ChatModel ollamaModel) {
-        this.chatClient = ChatClient.builder(ollamaModel).build();
+    public AIController(@Qualifier("ollamaChatModel") ChatModel ollamaModel, ResponseCache responseCache,
+                        ModelConcurrencyLimiter concurrencyLimiter, ModelRuntimeManager runtimeManager, AiMetrics aiMetrics) {
+        // Repeated questions are answered from the response cache instead of the model
+        this.chatClient = ChatClient.builder(ollamaModel)
+                .defaultAdvisors(responseCache.advisor("ollama"), concurrencyLimiter.advisor("ollama", PriorityClass.STANDARD),
+                        aiMetrics.advisor("generate", "ollama"), runtimeManager.advisor("ollama"))
+                .build();
 
     }
 
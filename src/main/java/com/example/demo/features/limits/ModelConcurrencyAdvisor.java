@@ -0,0 +1,70 @@
+package com.example.demo.features.limits;
+
+import com.example.demo.features.routing.RoutedCall;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Holds a {@link ModelConcurrencyLimiter} slot while the model generates. Runs last before
+ * the model call, so response-cache hits and memory lookups never take a slot.
+ */
+public class ModelConcurrencyAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ModelConcurrencyLimiter limiter;
+    private final String model;
+    private final PriorityClass priority;
+
+    ModelConcurrencyAdvisor(ModelConcurrencyLimiter limiter, String model, PriorityClass priority) {
+        this.limiter = limiter;
+        this.model = model;
+        this.priority = priority;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        ModelConcurrencyLimiter.Permit permit;
+        try {
+            permit = limiter.acquire(model, priority);
+        } catch (ResponseStatusException e) {
+            RoutedCall.rejectedLocally();
+            throw e;
+        }
+        RoutedCall.slotAcquired();
+        try {
+            return chain.nextCall(request);
+        } finally {
+            permit.release();
+        }
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        // The slot is held until the stream completes, fails or the client disconnects. A permit
+        // granted after the subscriber cancelled is discarded by fromCallable and released here;
+        // hide() keeps subscribeOn from fusing the callable, a path that drops it without discarding.
+        return Mono.fromCallable(() -> limiter.acquire(model, priority))
+                .hide()
+                .subscribeOn(limiter.waiters())
+                .doOnDiscard(ModelConcurrencyLimiter.Permit.class, ModelConcurrencyLimiter.Permit::release)
+                .flatMapMany(permit -> Flux.defer(() -> chain.nextStream(request))
+                        .doFinally(signal -> permit.release()));
+    }
+
+    @Override
+    public String getName() {
+        return "ModelConcurrencyAdvisor[" + model + "," + priority.tag() + "]";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1000;
+    }
+}
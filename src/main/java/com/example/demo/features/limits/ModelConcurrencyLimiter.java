@@ -0,0 +1,203 @@
+package com.example.demo.features.limits;
+
+import com.example.demo.features.limits.WeightedFairQueue.ClassPolicy;
+import com.example.demo.features.limits.WeightedFairQueue.RejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps the number of generations in flight per model and decides who goes next.
+ *
+ * With virtual threads every request gets its own thread, so nothing stops 500 requests
+ * from hitting a local Ollama that can only work on one or two at a time. Requests past the
+ * limit wait here instead of piling up inside the model server. Each endpoint has a
+ * {@link PriorityClass}, and free slots are shared between the classes by weight
+ * ({@link WeightedFairQueue}), so a burst of knowledge base questions cannot starve support chats.
+ *
+ * Requests fail fast instead of timing out: 429 when their class queue is full, 503 when the
+ * expected wait already exceeds the class's {@code max-wait}, and 503 when they still reach it.
+ */
+@Component
+public class ModelConcurrencyLimiter implements DisposableBean {
+
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+    private final Map<String, Integer> configured;
+    private final int defaultLimit;
+    private final Map<PriorityClass, ClassPolicy> policies;
+    private final MeterRegistry meterRegistry;
+    // Streams wait for their slot here: one virtual thread per waiter, so a full bulk queue
+    // cannot use up a bounded pool and hold interactive streams back before they are queued
+    private final Scheduler waiters = Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "model-slot-wait");
+
+    /**
+     * Slots and metrics for one model.
+     */
+    private static final class Limit {
+        final WeightedFairQueue queue;
+        final Map<PriorityClass, Timer> queueWait = new EnumMap<>(PriorityClass.class);
+
+        Limit(WeightedFairQueue queue) {
+            this.queue = queue;
+        }
+    }
+
+    /**
+     * A held slot. {@link #release()} is idempotent so error and cancel paths can both call it.
+     */
+    public static final class Permit {
+        private final WeightedFairQueue queue;
+        private final long grantedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(WeightedFairQueue queue) {
+            this.queue = queue;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                queue.release(System.nanoTime() - grantedAt);
+            }
+        }
+    }
+
+    @Autowired
+    public ModelConcurrencyLimiter(MeterRegistry meterRegistry,
+                                   @Value("${app.models.concurrency.ollama:2}") int ollamaLimit,
+                                   @Value("${app.models.concurrency.gemini:16}") int geminiLimit,
+                                   @Value("${app.models.concurrency.default:4}") int defaultLimit,
+                                   @Value("${app.models.scheduler.interactive.weight:8}") int interactiveWeight,
+                                   @Value("${app.models.scheduler.interactive.queue-capacity:32}") int interactiveCapacity,
+                                   @Value("${app.models.scheduler.interactive.max-wait:20s}") Duration interactiveMaxWait,
+                                   @Value("${app.models.scheduler.standard.weight:4}") int standardWeight,
+                                   @Value("${app.models.scheduler.standard.queue-capacity:32}") int standardCapacity,
+                                   @Value("${app.models.scheduler.standard.max-wait:30s}") Duration standardMaxWait,
+                                   @Value("${app.models.scheduler.bulk.weight:1}") int bulkWeight,
+                                   @Value("${app.models.scheduler.bulk.queue-capacity:64}") int bulkCapacity,
+                                   @Value("${app.models.scheduler.bulk.max-wait:60s}") Duration bulkMaxWait) {
+        this(meterRegistry, Map.of("ollama", ollamaLimit, "gemini", geminiLimit), defaultLimit, Map.of(
+                PriorityClass.INTERACTIVE, new ClassPolicy(interactiveWeight, interactiveCapacity, interactiveMaxWait),
+                PriorityClass.STANDARD, new ClassPolicy(standardWeight, standardCapacity, standardMaxWait),
+                PriorityClass.BULK, new ClassPolicy(bulkWeight, bulkCapacity, bulkMaxWait)));
+    }
+
+    ModelConcurrencyLimiter(MeterRegistry meterRegistry, Map<String, Integer> limits, int defaultLimit,
+                            Map<PriorityClass, ClassPolicy> policies) {
+        this.meterRegistry = meterRegistry;
+        this.configured = Map.copyOf(limits);
+        this.defaultLimit = defaultLimit;
+        this.policies = Map.copyOf(policies);
+    }
+
+    /**
+     * Advisor that holds a permit of {@code model} around the model call, as a
+     * {@link PriorityClass#STANDARD} request.
+     */
+    public ModelConcurrencyAdvisor advisor(String model) {
+        return advisor(model, PriorityClass.STANDARD);
+    }
+
+    /**
+     * Advisor that holds a permit of {@code model} around the model call, queued as {@code priority}.
+     */
+    public ModelConcurrencyAdvisor advisor(String model, PriorityClass priority) {
+        return new ModelConcurrencyAdvisor(this, model, priority);
+    }
+
+    /**
+     * Same as {@link #acquire(String, PriorityClass)} for a {@link PriorityClass#STANDARD} request.
+     */
+    public Permit acquire(String model) {
+        return acquire(model, PriorityClass.STANDARD);
+    }
+
+    /**
+     * Blocks until a slot for {@code model} is granted to this request. Meant for virtual
+     * threads, where parking is cheap.
+     *
+     * @throws ResponseStatusException 429 when the class queue is full, 503 when the request
+     *                                 would wait (or has waited) longer than its class allows.
+     */
+    public Permit acquire(String model, PriorityClass priority) {
+        Limit limit = limit(model);
+        long start = System.nanoTime();
+        try {
+            limit.queue.acquire(priority);
+            return new Permit(limit.queue);
+        } catch (RejectedException e) {
+            rejected(model, priority, e.reason.tag).increment();
+            HttpStatus status = e.reason == WeightedFairQueue.Rejection.QUEUE_FULL
+                    ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+            throw new ResponseStatusException(status, "Model " + model + " is busy (" + e.reason.tag + "), "
+                    + limit.queue.queued(priority) + " " + priority.tag() + " requests waiting, expected wait "
+                    + e.expectedWait.toMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for " + model);
+        } finally {
+            limit.queueWait.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Where streamed requests block in {@link #acquire(String, PriorityClass)}.
+     */
+    Scheduler waiters() {
+        return waiters;
+    }
+
+    private Counter rejected(String model, PriorityClass priority, String reason) {
+        return Counter.builder("ai.model.rejected")
+                .description("Requests turned away by the model scheduler")
+                .tag("model", model)
+                .tag("class", priority.tag())
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private Limit limit(String model) {
+        return limits.computeIfAbsent(model, name -> {
+            int permits = configured.getOrDefault(name, defaultLimit);
+            Limit limit = new Limit(new WeightedFairQueue(permits, policies));
+            Gauge.builder("ai.model.inflight", limit, l -> l.queue.inFlight())
+                    .description("Generations currently running")
+                    .tag("model", name)
+                    .register(meterRegistry);
+            for (PriorityClass priority : PriorityClass.values()) {
+                limit.queueWait.put(priority, Timer.builder("ai.model.queue.wait")
+                        .description("Time spent waiting for a model concurrency slot")
+                        .tag("model", name)
+                        .tag("class", priority.tag())
+                        .register(meterRegistry));
+                Gauge.builder("ai.model.queued", limit, l -> l.queue.queued(priority))
+                        .description("Requests waiting for a slot")
+                        .tag("model", name)
+                        .tag("class", priority.tag())
+                        .register(meterRegistry);
+            }
+            return limit;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        waiters.dispose();
+    }
+}
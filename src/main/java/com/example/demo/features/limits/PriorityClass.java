@@ -0,0 +1,21 @@
+package com.example.demo.features.limits;
+
+/**
+ * How urgently an endpoint needs its model slot. Each class gets its own queue, share of the
+ * model (weight), queue bound and maximum wait, see {@code app.models.scheduler.*}.
+ */
+public enum PriorityClass {
+
+    /** A person is watching the answer appear: support and chat. */
+    INTERACTIVE,
+
+    /** Single request/response calls: generate, agent. */
+    STANDARD,
+
+    /** Long prompts that can wait: knowledge base questions. */
+    BULK;
+
+    String tag() {
+        return name().toLowerCase();
+    }
+}
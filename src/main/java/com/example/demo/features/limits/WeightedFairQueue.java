@@ -0,0 +1,213 @@
+package com.example.demo.features.limits;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The slots of one model, handed out by weighted fair queuing across {@link PriorityClass}es.
+ *
+ * Every waiter gets a virtual finish tag: {@code max(virtual time, last finish of its class) + 1 / weight}.
+ * A free slot goes to the smallest tag, so under load a class with weight 8 is served about
+ * eight times as often as one with weight 1, and no class starves. Within a class the order is FIFO.
+ *
+ * Requests are turned away instead of queued when their class queue is full, or when the
+ * expected wait (average hold time of recent slots times the queue ahead of them) is already
+ * past the class's {@code max-wait}. A queued request that still reaches max-wait gives up.
+ *
+ * A {@link ReentrantLock} guards the state so waiting virtual threads unmount.
+ */
+final class WeightedFairQueue {
+
+    /**
+     * Queueing rules of one class.
+     */
+    record ClassPolicy(int weight, int queueCapacity, Duration maxWait) {
+        ClassPolicy {
+            if (weight < 1) {
+                throw new IllegalArgumentException("weight must be at least 1");
+            }
+        }
+    }
+
+    enum Rejection {
+        /** The class queue is full (429). */
+        QUEUE_FULL("queue-full"),
+        /** The expected wait is longer than max-wait (503, right away). */
+        PREDICTED_WAIT("predicted-wait"),
+        /** Waited max-wait without getting a slot (503). */
+        TIMEOUT("timeout");
+
+        final String tag;
+
+        Rejection(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    static final class RejectedException extends Exception {
+        final Rejection reason;
+        final Duration expectedWait;
+
+        RejectedException(Rejection reason, Duration expectedWait) {
+            super(reason.tag, null, false, false);
+            this.reason = reason;
+            this.expectedWait = expectedWait;
+        }
+    }
+
+    private static final class Waiter {
+        final PriorityClass priority;
+        final double startTag;
+        final double finishTag;
+        final long sequence;
+        final Condition ready;
+        boolean granted;
+
+        Waiter(PriorityClass priority, double startTag, double finishTag, long sequence, Condition ready) {
+            this.priority = priority;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.sequence = sequence;
+            this.ready = ready;
+        }
+    }
+
+    private static final Comparator<Waiter> ORDER =
+            Comparator.comparingDouble((Waiter w) -> w.finishTag).thenComparingLong(w -> w.sequence);
+
+    private final int permits;
+    private final Map<PriorityClass, ClassPolicy> policies;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(ORDER);
+    private final int[] queued = new int[PriorityClass.values().length];
+    private final double[] lastFinish = new double[PriorityClass.values().length];
+    private double virtualTime;
+    private long sequence;
+    private int available;
+    // Moving average of how long a slot is held, -1 until the first release
+    private double averageHoldNanos = -1;
+
+    WeightedFairQueue(int permits, Map<PriorityClass, ClassPolicy> policies) {
+        this.permits = permits;
+        this.available = permits;
+        this.policies = new EnumMap<>(policies);
+    }
+
+    /**
+     * Blocks until a slot is granted to {@code priority}.
+     *
+     * @throws RejectedException when the request is shed or its max-wait runs out.
+     */
+    void acquire(PriorityClass priority) throws RejectedException, InterruptedException {
+        ClassPolicy policy = policies.get(priority);
+        int index = priority.ordinal();
+        lock.lock();
+        try {
+            if (available > 0 && waiting.isEmpty()) {
+                available--;
+                return;
+            }
+            if (queued[index] >= policy.queueCapacity()) {
+                throw new RejectedException(Rejection.QUEUE_FULL, expectedWait(Double.MAX_VALUE));
+            }
+            double start = Math.max(virtualTime, lastFinish[index]);
+            Waiter waiter = new Waiter(priority, start, start + 1.0 / policy.weight(), sequence++, lock.newCondition());
+            Duration expected = expectedWait(waiter.finishTag);
+            if (expected.compareTo(policy.maxWait()) > 0) {
+                throw new RejectedException(Rejection.PREDICTED_WAIT, expected);
+            }
+
+            lastFinish[index] = waiter.finishTag;
+            waiting.add(waiter);
+            queued[index]++;
+            long remaining = policy.maxWait().toNanos();
+            try {
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        waiting.remove(waiter);
+                        queued[index]--;
+                        throw new RejectedException(Rejection.TIMEOUT, policy.maxWait());
+                    }
+                    remaining = waiter.ready.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // Granted while being interrupted, hand the slot on
+                    available++;
+                    dispatch();
+                } else {
+                    waiting.remove(waiter);
+                    queued[index]--;
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot that was held for {@code heldNanos} and passes it to the next waiter.
+     */
+    void release(long heldNanos) {
+        lock.lock();
+        try {
+            averageHoldNanos = averageHoldNanos < 0 ? heldNanos : 0.8 * averageHoldNanos + 0.2 * heldNanos;
+            available++;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch() {
+        while (available > 0 && !waiting.isEmpty()) {
+            Waiter next = waiting.poll();
+            queued[next.priority.ordinal()]--;
+            virtualTime = next.startTag;
+            next.granted = true;
+            available--;
+            next.ready.signal();
+        }
+    }
+
+    /**
+     * Rough wait for a request that would be queued with {@code finishTag}: every slot has to
+     * turn over once for it and for each waiter served before it. Zero until a hold time is known.
+     */
+    private Duration expectedWait(double finishTag) {
+        if (averageHoldNanos < 0) {
+            return Duration.ZERO;
+        }
+        int ahead = 0;
+        for (Waiter waiter : waiting) {
+            if (waiter.finishTag <= finishTag) {
+                ahead++;
+            }
+        }
+        return Duration.ofNanos((long) (averageHoldNanos * (ahead + 1) / permits));
+    }
+
+    int inFlight() {
+        lock.lock();
+        try {
+            return permits - available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int queued(PriorityClass priority) {
+        lock.lock();
+        try {
+            return queued[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo.features.observability;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics for the AI hot paths that have no instrumentation of their own: model calls (through
+ * {@link #advisor(String, String)}) and chat memory reads and writes (through
+ * {@link #timedChatMemoryRepository(ChatMemoryRepository)}).
+ *
+ * Meters are resolved once per endpoint and model and reused, so a request costs a few map
+ * lookups and a streamed token only updates a few fields of its request. Latencies publish
+ * percentile histograms, eg: histogram_quantile(0.95, rate(ai_chat_ttft_seconds_bucket[5m])).
+ */
+@Component
+public class AiMetrics {
+
+    /**
+     * Advisor parameter that overrides the endpoint tag of one request, for endpoints that
+     * share a ChatClient, eg: {@code .advisors(a -> a.param(AiMetrics.ENDPOINT, "cloud-vision"))}.
+     */
+    public static final String ENDPOINT = "ai.metrics.endpoint";
+
+    /**
+     * Meters of one endpoint and model.
+     */
+    static final class ChatMeters {
+        final Timer callLatency;
+        final Timer streamLatency;
+        final Timer firstToken;
+        final DistributionSummary promptTokens;
+        final DistributionSummary generationTokens;
+        final DistributionSummary tokensPerSecond;
+        final Counter errors;
+
+        private ChatMeters(MeterRegistry registry, String endpoint, String model) {
+            this.callLatency = latency(registry, endpoint, model, "call");
+            this.streamLatency = latency(registry, endpoint, model, "stream");
+            this.firstToken = Timer.builder("ai.chat.ttft")
+                    .description("Time to the first streamed token, from the model call")
+                    .tag("endpoint", endpoint)
+                    .tag("model", model)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.promptTokens = tokens(registry, endpoint, model, "prompt");
+            this.generationTokens = tokens(registry, endpoint, model, "generation");
+            this.tokensPerSecond = DistributionSummary.builder("ai.chat.tokens.per.second")
+                    .description("Generation speed: output tokens per second of generation")
+                    .tag("endpoint", endpoint)
+                    .tag("model", model)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.errors = Counter.builder("ai.chat.errors")
+                    .description("Model calls that failed")
+                    .tag("endpoint", endpoint)
+                    .tag("model", model)
+                    .register(registry);
+        }
+
+        private static Timer latency(MeterRegistry registry, String endpoint, String model, String mode) {
+            return Timer.builder("ai.chat.latency")
+                    .description("Model call latency, without response cache hits and queueing for a model slot")
+                    .tag("endpoint", endpoint)
+                    .tag("model", model)
+                    .tag("mode", mode)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        private static DistributionSummary tokens(MeterRegistry registry, String endpoint, String model, String type) {
+            return DistributionSummary.builder("ai.chat.tokens")
+                    .description("Tokens per model call, as reported by the model")
+                    .baseUnit("tokens")
+                    .tag("endpoint", endpoint)
+                    .tag("model", model)
+                    .tag("type", type)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    // endpoint -> model -> meters. Both are small, fixed sets (one entry per controller and served model)
+    private final Map<String, Map<String, ChatMeters>> chatMeters = new ConcurrentHashMap<>();
+
+    public AiMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Advisor that records latency, time-to-first-token, token usage, generation speed and
+     * errors of a chat client's model calls under {@code endpoint}. {@code provider} is used as
+     * the model tag when the request does not name the model.
+     */
+    public AiMetricsAdvisor advisor(String endpoint, String provider) {
+        return new AiMetricsAdvisor(this, endpoint, provider);
+    }
+
+    /**
+     * {@code repository} with every load and store timed, see {@link TimedChatMemoryRepository}.
+     */
+    public ChatMemoryRepository timedChatMemoryRepository(ChatMemoryRepository repository) {
+        return new TimedChatMemoryRepository(repository, meterRegistry);
+    }
+
+    ChatMeters chatMeters(String endpoint, String model) {
+        Map<String, ChatMeters> byModel = chatMeters.get(endpoint);
+        if (byModel == null) {
+            byModel = chatMeters.computeIfAbsent(endpoint, e -> new ConcurrentHashMap<>());
+        }
+        ChatMeters meters = byModel.get(model);
+        return meters != null ? meters : byModel.computeIfAbsent(model, m -> new ChatMeters(meterRegistry, endpoint, m));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.demo.features.observability;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records {@link AiMetrics} for each model call of a chat client. Runs inside the response
+ * cache and the concurrency limiter, so cache hits and queueing for a model slot are not
+ * counted as model latency (see {@code ai.response.cache} and {@code ai.model.queue.wait}).
+ *
+ * Every meter is tagged with the model the request asked for (else {@code provider}), so
+ * errors and successes of a model share one series and error rates can be computed per model.
+ *
+ * Streams are observed with one small state object per request; tokens only update its fields
+ * and everything is recorded when the stream completes. Cancelled streams record nothing
+ * (they are counted by {@code ai.stream.cancelled}).
+ */
+public class AiMetricsAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final AiMetrics metrics;
+    private final String endpoint;
+    private final String provider;
+
+    AiMetricsAdvisor(AiMetrics metrics, String endpoint, String provider) {
+        this.metrics = metrics;
+        this.endpoint = endpoint;
+        this.provider = provider;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        AiMetrics.ChatMeters meters = metrics.chatMeters(endpoint(request), model(request));
+        long start = System.nanoTime();
+        ChatClientResponse response;
+        try {
+            response = chain.nextCall(request);
+        } catch (RuntimeException e) {
+            meters.errors.increment();
+            throw e;
+        }
+        long nanos = System.nanoTime() - start;
+        meters.callLatency.record(nanos, TimeUnit.NANOSECONDS);
+        recordUsage(meters, response.chatResponse(), 0, nanos);
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        return Flux.defer(() -> {
+            StreamProbe probe = new StreamProbe(metrics.chatMeters(endpoint(request), model(request)));
+            return chain.nextStream(request)
+                    .doOnNext(probe::onNext)
+                    .doOnComplete(probe::onComplete)
+                    .doOnError(probe::onError);
+        });
+    }
+
+    /**
+     * State of one streamed request. Reactive Streams signals are serialized, so plain fields
+     * are enough.
+     */
+    private final class StreamProbe {
+        private final AiMetrics.ChatMeters meters;
+        private final long start = System.nanoTime();
+        private long firstToken;
+        private int textChunks;
+        private ChatResponse last;
+
+        StreamProbe(AiMetrics.ChatMeters meters) {
+            this.meters = meters;
+        }
+
+        void onNext(ChatClientResponse response) {
+            ChatResponse chatResponse = response.chatResponse();
+            if (chatResponse == null) {
+                return;
+            }
+            if (hasText(chatResponse)) {
+                if (firstToken == 0) {
+                    firstToken = System.nanoTime();
+                }
+                textChunks++;
+            }
+            last = chatResponse;
+        }
+
+        void onComplete() {
+            long end = System.nanoTime();
+            meters.streamLatency.record(end - start, TimeUnit.NANOSECONDS);
+            if (firstToken != 0) {
+                meters.firstToken.record(firstToken - start, TimeUnit.NANOSECONDS);
+                recordUsage(meters, last, textChunks, end - firstToken);
+            }
+        }
+
+        void onError(Throwable error) {
+            meters.errors.increment();
+        }
+    }
+
+    /**
+     * Token counts come from the response usage (the last chunk of an Ollama stream). The rate
+     * uses the generation time the model reports (Ollama's eval-duration), else
+     * {@code generationNanos}: first token to end for streams, the whole call otherwise.
+     *
+     * @param streamedChunks Chunks with text, counted as tokens when the model reports no usage.
+     */
+    private static void recordUsage(AiMetrics.ChatMeters meters, ChatResponse response, int streamedChunks, long generationNanos) {
+        Usage usage = response == null ? null : response.getMetadata().getUsage();
+        int promptTokens = usage == null ? 0 : tokens(usage.getPromptTokens());
+        int generatedTokens = usage == null ? 0 : tokens(usage.getCompletionTokens());
+        if (generatedTokens == 0) {
+            generatedTokens = streamedChunks;
+        }
+        if (promptTokens > 0) {
+            meters.promptTokens.record(promptTokens);
+        }
+        if (generatedTokens > 0) {
+            meters.generationTokens.record(generatedTokens);
+            Object evalDuration = response == null ? null : response.getMetadata().get("eval-duration");
+            long nanos = evalDuration instanceof Duration duration && !duration.isZero() ? duration.toNanos() : generationNanos;
+            if (nanos > 0) {
+                meters.tokensPerSecond.record(generatedTokens * 1e9 / nanos);
+            }
+        }
+    }
+
+    private static int tokens(Integer count) {
+        return count == null ? 0 : count;
+    }
+
+    private static boolean hasText(ChatResponse response) {
+        return response.getResult() != null && response.getResult().getOutput() != null
+                && response.getResult().getOutput().getText() != null
+                && !response.getResult().getOutput().getText().isEmpty();
+    }
+
+    private String endpoint(ChatClientRequest request) {
+        return request.context().get(AiMetrics.ENDPOINT) instanceof String override ? override : endpoint;
+    }
+
+    /**
+     * The model of the request's options; ChatClient copies the chat model's defaults there when
+     * the call sets none.
+     */
+    private String model(ChatClientRequest request) {
+        ChatOptions options = request.prompt().getOptions();
+        String model = options == null ? null : options.getModel();
+        return model == null || model.isEmpty() ? provider : model;
+    }
+
+    @Override
+    public String getName() {
+        return "AiMetricsAdvisor[" + endpoint + "]";
+    }
+
+    @Override
+    public int getOrder() {
+        // Inside ModelConcurrencyAdvisor (LOWEST_PRECEDENCE - 1000), outside ModelRuntimeAdvisor (LOWEST_PRECEDENCE - 500)
+        return Ordered.LOWEST_PRECEDENCE - 750;
+    }
+}
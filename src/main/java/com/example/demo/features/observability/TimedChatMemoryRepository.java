@@ -0,0 +1,79 @@
+package com.example.demo.features.observability;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChatMemoryRepository decorator that times every operation as seen by the chat memory,
+ * {@code chat.memory.operation{operation=load|store|delete|list}}. In front of the write-behind
+ * repository a store is normally a cache update; database writes are {@code chat.memory.flush}.
+ */
+class TimedChatMemoryRepository implements ChatMemoryRepository {
+
+    private final ChatMemoryRepository delegate;
+    private final Timer list;
+    private final Timer load;
+    private final Timer store;
+    private final Timer delete;
+
+    TimedChatMemoryRepository(ChatMemoryRepository delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.list = timer(meterRegistry, "list");
+        this.load = timer(meterRegistry, "load");
+        this.store = timer(meterRegistry, "store");
+        this.delete = timer(meterRegistry, "delete");
+    }
+
+    private static Timer timer(MeterRegistry registry, String operation) {
+        return Timer.builder("chat.memory.operation")
+                .description("Chat memory repository latency by operation")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        long start = System.nanoTime();
+        try {
+            return delegate.findConversationIds();
+        } finally {
+            list.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.findByConversationId(conversationId);
+        } finally {
+            load.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        long start = System.nanoTime();
+        try {
+            delegate.saveAll(conversationId, messages);
+        } finally {
+            store.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        long start = System.nanoTime();
+        try {
+            delegate.deleteByConversationId(conversationId);
+        } finally {
+            delete.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.demo.features.routing;
+
+import java.util.Arrays;
+
+/**
+ * Count-based circuit breaker for one model provider.
+ *
+ * The last {@code windowSize} calls are kept in a ring buffer (outcome + latency). Once at
+ * least {@code minimumCalls} are recorded and the share of failed or slow calls reaches
+ * {@code failureRateThreshold}, the breaker OPENs and callers skip the provider for
+ * {@code openDurationMs}. After that a single HALF_OPEN probe is let through: success closes
+ * the breaker with a fresh window, failure opens it again.
+ */
+public final class CircuitBreaker {
+
+    // Declaration order doubles as the ai.router.state gauge value (0, 1, 2)
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    /**
+     * Point-in-time view used by the status endpoint.
+     */
+    public record Snapshot(State state, int calls, double failureRate, long p50Ms, long p95Ms, long retryInMs) {
+    }
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openDurationMs;
+
+    // Ring buffer of the most recent calls
+    private final boolean[] failed;
+    private final long[] latencyNanos;
+    private int next;
+    private int count;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long slowCallNanos, long openDurationMs) {
+        this.failed = new boolean[windowSize];
+        this.latencyNanos = new long[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.openDurationMs = openDurationMs;
+    }
+
+    /**
+     * True if the caller may try this provider now. In HALF_OPEN only one probe is allowed
+     * until its outcome is recorded.
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess(long nanos) {
+        // A call that succeeded but took too long still counts against the provider
+        record(nanos > slowCallNanos, nanos);
+    }
+
+    synchronized void onFailure(long nanos) {
+        record(true, nanos);
+    }
+
+    /**
+     * The call ended without telling anything about the provider (eg: rejected locally, served
+     * from cache). Nothing is recorded, but a HALF_OPEN probe is handed back.
+     */
+    synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    private void record(boolean failure, long nanos) {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            if (failure) {
+                open();
+            } else {
+                state = State.CLOSED;
+                reset();
+                add(false, nanos);
+            }
+            return;
+        }
+        add(failure, nanos);
+        if (state == State.CLOSED && count >= minimumCalls && failureRate() >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    private void add(boolean failure, long nanos) {
+        if (count == failed.length) {
+            if (failed[next]) {
+                failures--;
+            }
+        } else {
+            count++;
+        }
+        failed[next] = failure;
+        latencyNanos[next] = nanos;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void reset() {
+        next = 0;
+        count = 0;
+        failures = 0;
+    }
+
+    private double failureRate() {
+        return count == 0 ? 0 : (double) failures / count;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Latency percentile of successful calls in the window, in nanoseconds (0 with no data).
+     * Drives the hedging delay.
+     */
+    synchronized long percentileNanos(double p) {
+        long[] ok = new long[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (!failed[i]) {
+                ok[n++] = latencyNanos[i];
+            }
+        }
+        if (n == 0) {
+            return 0;
+        }
+        Arrays.sort(ok, 0, n);
+        return ok[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+    }
+
+    synchronized Snapshot snapshot() {
+        long retryIn = state == State.OPEN ? Math.max(0, openedAt + openDurationMs - System.currentTimeMillis()) : 0;
+        return new Snapshot(state, count, Math.round(failureRate() * 1000) / 1000.0,
+                percentileNanos(0.50) / 1_000_000, percentileNanos(0.95) / 1_000_000, retryIn);
+    }
+}
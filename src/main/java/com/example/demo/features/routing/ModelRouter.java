@@ -0,0 +1,263 @@
+package com.example.demo.features.routing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Primary/fallback routing between model providers (eg: Gemini first, then local Ollama).
+ *
+ * Each provider has a {@link CircuitBreaker}. While the primary's breaker is open, requests go
+ * straight to the fallback instead of paying a failed round-trip first (a 429 quota outage
+ * otherwise costs every request a full Gemini call). In hedged mode the fallback is also
+ * started when the primary has not answered within its recent p95 latency, and whichever
+ * succeeds first wins.
+ */
+@Component
+public class ModelRouter implements DisposableBean {
+
+    /**
+     * One provider's way of answering the current request.
+     */
+    public record Route<T>(String provider, Supplier<T> call) {
+    }
+
+    /**
+     * The answer plus which provider produced it.
+     *
+     * @param fellBack True when the answer did not come from the primary provider.
+     */
+    public record Routed<T>(String provider, T value, boolean fellBack) {
+    }
+
+    public static <T> Route<T> route(String provider, Supplier<T> call) {
+        return new Route<>(provider, call);
+    }
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MeterRegistry meterRegistry;
+
+    private final boolean hedging;
+    private final long hedgeMinDelayNanos;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final Duration slowCallThreshold;
+    private final Duration openDuration;
+
+    public ModelRouter(MeterRegistry meterRegistry,
+                       @Value("${app.router.hedging.enabled:false}") boolean hedging,
+                       @Value("${app.router.hedging.min-delay:500ms}") Duration hedgeMinDelay,
+                       @Value("${app.router.breaker.window-size:20}") int windowSize,
+                       @Value("${app.router.breaker.minimum-calls:5}") int minimumCalls,
+                       @Value("${app.router.breaker.failure-rate-threshold:0.5}") double failureRateThreshold,
+                       @Value("${app.router.breaker.slow-call-threshold:20s}") Duration slowCallThreshold,
+                       @Value("${app.router.breaker.open-duration:30s}") Duration openDuration) {
+        this.meterRegistry = meterRegistry;
+        this.hedging = hedging;
+        this.hedgeMinDelayNanos = hedgeMinDelay.toNanos();
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Answers with {@code primary} when its breaker allows it, otherwise (or when it fails)
+     * with {@code fallback}.
+     *
+     * @throws ResponseStatusException 503 when neither provider may be called.
+     */
+    public <T> Routed<T> execute(Route<T> primary, Route<T> fallback) {
+        return execute("default", primary, fallback);
+    }
+
+    /**
+     * Same as {@link #execute(Route, Route)}; fallbacks are counted under {@code endpoint}.
+     */
+    public <T> Routed<T> execute(String endpoint, Route<T> primary, Route<T> fallback) {
+        if (!breaker(primary.provider()).tryAcquire()) {
+            System.err.println("Circuit open for " + primary.provider() + ", routing to " + fallback.provider());
+            return callFallback(endpoint, primary, fallback, "circuit_open", null);
+        }
+        if (!hedging) {
+            try {
+                return new Routed<>(primary.provider(), attempt(primary), false);
+            } catch (RuntimeException ex) {
+                System.err.println(primary.provider() + " unavailable: " + ex.getMessage());
+                return callFallback(endpoint, primary, fallback, "error", ex);
+            }
+        }
+        return hedged(endpoint, primary, fallback);
+    }
+
+    private <T> Routed<T> callFallback(String endpoint, Route<T> primary, Route<T> fallback, String reason,
+                                       RuntimeException primaryFailure) {
+        // The fallback is the last resort; if its breaker is also open there is nobody left to ask
+        if (!breaker(fallback.provider()).tryAcquire()) {
+            ResponseStatusException unavailable = new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "No model provider available, " + fallback.provider() + " circuit is open");
+            if (primaryFailure != null) {
+                unavailable.addSuppressed(primaryFailure);
+            }
+            throw unavailable;
+        }
+        countFallback(endpoint, primary, fallback, reason);
+        return new Routed<>(fallback.provider(), attempt(fallback), true);
+    }
+
+    private <T> Routed<T> hedged(String endpoint, Route<T> primary, Route<T> fallback) {
+        CompletableFuture<T> first = CompletableFuture.supplyAsync(() -> attempt(primary), executor);
+        long delay = Math.max(hedgeMinDelayNanos, breaker(primary.provider()).percentileNanos(0.95));
+        try {
+            return new Routed<>(primary.provider(), first.get(delay, TimeUnit.NANOSECONDS), false);
+        } catch (TimeoutException slow) {
+            // fall through and race the fallback
+        } catch (ExecutionException failed) {
+            return callFallback(endpoint, primary, fallback, "error", unwrap(failed.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            first.cancel(true);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for " + primary.provider());
+        }
+
+        if (!breaker(fallback.provider()).tryAcquire()) {
+            try {
+                return new Routed<>(primary.provider(), first.join(), false);
+            } catch (CompletionException e) {
+                throw unwrap(e.getCause());
+            }
+        }
+        countFallback(endpoint, primary, fallback, "slow");
+        CompletableFuture<T> second = CompletableFuture.supplyAsync(() -> attempt(fallback), executor);
+
+        // First successful answer wins; only fail when both have failed
+        CompletableFuture<Routed<T>> winner = new CompletableFuture<>();
+        first.thenAccept(value -> winner.complete(new Routed<>(primary.provider(), value, false)));
+        second.thenAccept(value -> winner.complete(new Routed<>(fallback.provider(), value, true)));
+        CompletableFuture.allOf(first, second).whenComplete((ignored, error) -> {
+            if (error != null) {
+                winner.completeExceptionally(error);
+            }
+        });
+        try {
+            return winner.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            // The loser keeps running to completion in the background so its outcome still
+            // feeds its breaker; cancel only stops us from waiting on it
+            first.cancel(false);
+            second.cancel(false);
+        }
+    }
+
+    /**
+     * Calls {@code route} and records the outcome on its breaker. Latency is measured from the
+     * moment a model slot is granted; local rejections and cache hits are not provider outcomes
+     * and leave the breaker's window untouched (see {@link RoutedCall}).
+     */
+    private <T> T attempt(Route<T> route) {
+        CircuitBreaker breaker = breaker(route.provider());
+        RoutedCall call = RoutedCall.open();
+        try {
+            T value = route.call().get();
+            if (call.isCached()) {
+                breaker.onIgnored();
+            } else {
+                long nanos = call.providerNanos();
+                breaker.onSuccess(nanos);
+                timer(route.provider(), "success").record(nanos, TimeUnit.NANOSECONDS);
+            }
+            return value;
+        } catch (RuntimeException ex) {
+            if (call.isRejectedLocally()) {
+                breaker.onIgnored();
+            } else {
+                long nanos = call.providerNanos();
+                breaker.onFailure(nanos);
+                timer(route.provider(), "failure").record(nanos, TimeUnit.NANOSECONDS);
+            }
+            throw ex;
+        } finally {
+            call.close();
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+    }
+
+    private CircuitBreaker breaker(String provider) {
+        return breakers.computeIfAbsent(provider, name -> {
+            CircuitBreaker breaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                    slowCallThreshold.toNanos(), openDuration.toMillis());
+            Gauge.builder("ai.router.state", breaker, b -> b.state().ordinal())
+                    .description("Circuit breaker state per provider (0 closed, 1 half-open, 2 open)")
+                    .tag("provider", name)
+                    .register(meterRegistry);
+            return breaker;
+        });
+    }
+
+    /**
+     * Fallbacks are rare, so the counter is looked up per event instead of being cached.
+     */
+    private void countFallback(String endpoint, Route<?> primary, Route<?> fallback, String reason) {
+        Counter.builder("ai.router.fallback")
+                .description("Requests sent to the fallback provider (circuit_open, error, or slow when hedging)")
+                .tag("endpoint", endpoint)
+                .tag("from", primary.provider())
+                .tag("to", fallback.provider())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Timer timer(String provider, String outcome) {
+        return Timer.builder("ai.router.latency")
+                .description("Model call latency per provider")
+                .tag("provider", provider)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Breaker state, window failure rate and latency percentiles per provider seen so far.
+     */
+    public Map<String, CircuitBreaker.Snapshot> status() {
+        Map<String, CircuitBreaker.Snapshot> status = new LinkedHashMap<>();
+        breakers.forEach((provider, breaker) -> status.put(provider, breaker.snapshot()));
+        return status;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
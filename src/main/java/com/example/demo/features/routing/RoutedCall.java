@@ -0,0 +1,82 @@
+package com.example.demo.features.routing;
+
+/**
+ * What the advisors of one routed attempt saw, so {@link ModelRouter} only feeds a provider's
+ * circuit breaker with what the provider did: time spent queueing for a local model slot, local
+ * rejections (429/503 from the concurrency limiter) and response cache hits are left out.
+ *
+ * The router opens one per attempt on the thread that runs it, and a blocking chat client call
+ * runs its advisors on that same thread. Outside a routed attempt the hooks do nothing.
+ */
+public final class RoutedCall {
+
+    private static final ThreadLocal<RoutedCall> CURRENT = new ThreadLocal<>();
+
+    private final RoutedCall previous;
+    private final long start = System.nanoTime();
+    private long slotAcquiredAt;
+    private boolean rejectedLocally;
+    private boolean cached;
+
+    private RoutedCall(RoutedCall previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * A model slot was granted; the provider's latency starts now. For tool-calling loops only
+     * the first slot counts.
+     */
+    public static void slotAcquired() {
+        RoutedCall call = CURRENT.get();
+        if (call != null && call.slotAcquiredAt == 0) {
+            call.slotAcquiredAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * The request was turned away before reaching the provider (local queue full or wait too long).
+     */
+    public static void rejectedLocally() {
+        RoutedCall call = CURRENT.get();
+        if (call != null) {
+            call.rejectedLocally = true;
+        }
+    }
+
+    /**
+     * The answer came from the response cache, not from the provider.
+     */
+    public static void servedFromCache() {
+        RoutedCall call = CURRENT.get();
+        if (call != null) {
+            call.cached = true;
+        }
+    }
+
+    static RoutedCall open() {
+        RoutedCall call = new RoutedCall(CURRENT.get());
+        CURRENT.set(call);
+        return call;
+    }
+
+    void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /** Time since the model slot was granted, or since the attempt started without a limiter. */
+    long providerNanos() {
+        return System.nanoTime() - (slotAcquiredAt != 0 ? slotAcquiredAt : start);
+    }
+
+    boolean isRejectedLocally() {
+        return rejectedLocally;
+    }
+
+    boolean isCached() {
+        return cached;
+    }
+}
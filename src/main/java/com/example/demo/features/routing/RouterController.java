@@ -0,0 +1,29 @@
+package com.example.demo.features.routing;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/ai/v1/router")
+public class RouterController {
+
+    private final ModelRouter modelRouter;
+
+    public RouterController(ModelRouter modelRouter) {
+        this.modelRouter = modelRouter;
+    }
+
+    /**
+     * Circuit breaker state per provider, with the failure rate and latency of its recent calls.
+     * Latency histograms are exported as ai.router.latency under /actuator/metrics.
+     *
+     * eg: curl http://localhost:8080/ai/v1/router/status
+     */
+    @GetMapping("/status")
+    public Map<String, CircuitBreaker.Snapshot> status() {
+        return modelRouter.status();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.features.runtime;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+/**
+ * Feeds {@link ModelRuntimeManager} with the load time Ollama reports for every request, to
+ * count cold starts and track residency. Model latency and time to first token are recorded by
+ * {@code AiMetricsAdvisor} ({@code ai.chat.*}).
+ */
+public class ModelRuntimeAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ModelRuntimeManager manager;
+    private final String defaultModel;
+
+    ModelRuntimeAdvisor(ModelRuntimeManager manager, String defaultModel) {
+        this.manager = manager;
+        this.defaultModel = defaultModel;
+    }
+
+    @Override
+    public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+        ChatClientResponse response = chain.nextCall(request);
+        recordLoad(response.chatResponse());
+        return response;
+    }
+
+    @Override
+    public Flux<ChatClientResponse> adviseStream(ChatClientRequest request, StreamAdvisorChain chain) {
+        return chain.nextStream(request).doOnNext(response -> recordLoad(response.chatResponse()));
+    }
+
+    /**
+     * Ollama puts load-duration only into the final chunk of a stream (and into call responses).
+     */
+    private void recordLoad(ChatResponse response) {
+        if (response == null) {
+            return;
+        }
+        Object loadDuration = response.getMetadata().get("load-duration");
+        if (loadDuration instanceof Duration duration) {
+            manager.recordLoadDuration(model(response), duration);
+        }
+    }
+
+    private String model(ChatResponse response) {
+        ChatResponseMetadata metadata = response == null ? null : response.getMetadata();
+        String model = metadata == null ? null : metadata.getModel();
+        return model == null || model.isEmpty() ? defaultModel : model;
+    }
+
+    @Override
+    public String getName() {
+        return "ModelRuntimeAdvisor[" + defaultModel + "]";
+    }
+
+    @Override
+    public int getOrder() {
+        // Inside ModelConcurrencyAdvisor (LOWEST_PRECEDENCE - 1000), right around the model call
+        return Ordered.LOWEST_PRECEDENCE - 500;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.demo.features.runtime;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the configured Ollama models loaded and reports how often requests still hit a cold one.
+ *
+ * {@code keep-alive} alone does not stop Ollama from unloading a model after an idle period
+ * (or when another model needs the memory), and the next request then pays the full load
+ * time. This manager warms every configured model once the app is ready, then polls
+ * {@code /api/ps} on a schedule: models that are not resident are loaded again, and resident
+ * ones whose keep-alive ends within {@code refresh-before} get it extended, so the load happens
+ * in the background instead of inside a user request.
+ *
+ * Requests use the same shared HTTP client (see {@code AIConfig}), and {@link #advisor}
+ * records time-to-first-token and request-time cold starts (Ollama's {@code load_duration})
+ * per model.
+ */
+@Component
+public class ModelRuntimeManager {
+
+    /** Snapshot of one model, as returned by {@code GET /ai/v1/runtime/models}. */
+    public record ModelStatus(String model, String kind, boolean resident, Instant expiresAt,
+                              Long lastWarmUpMillis, long coldStarts) {
+    }
+
+    private static final class ModelState {
+        final String model;
+        final String kind;
+        volatile boolean resident;
+        volatile Instant expiresAt;
+        volatile Long lastWarmUpMillis;
+
+        ModelState(String model, String kind) {
+            this.model = model;
+            this.kind = kind;
+        }
+    }
+
+    private final RestClient ollama;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final String keepAlive;
+    private final Duration refreshBefore;
+    private final Duration coldStartThreshold;
+    private final Map<String, ModelState> managed = new LinkedHashMap<>();
+    private final Map<String, Counter> coldStarts = new ConcurrentHashMap<>();
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    @Autowired
+    public ModelRuntimeManager(RestClient.Builder restClientBuilder,
+                               MeterRegistry meterRegistry,
+                               @Value("${spring.ai.ollama.base-url:http://localhost:11434}") String baseUrl,
+                               @Value("${app.models.runtime.chat-models:}") List<String> chatModels,
+                               @Value("${app.models.runtime.embedding-models:}") List<String> embeddingModels,
+                               @Value("${spring.ai.ollama.chat.options.keep-alive:20m}") String keepAlive,
+                               @Value("${app.models.runtime.refresh-before:2m}") Duration refreshBefore,
+                               @Value("${app.models.runtime.cold-start-threshold:1s}") Duration coldStartThreshold) {
+        this(restClientBuilder.baseUrl(baseUrl).build(), meterRegistry, Clock.systemUTC(),
+                chatModels, embeddingModels, keepAlive, refreshBefore, coldStartThreshold);
+    }
+
+    ModelRuntimeManager(RestClient ollama, MeterRegistry meterRegistry, Clock clock,
+                        List<String> chatModels, List<String> embeddingModels, String keepAlive,
+                        Duration refreshBefore, Duration coldStartThreshold) {
+        this.ollama = ollama;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.keepAlive = keepAlive;
+        this.refreshBefore = refreshBefore;
+        this.coldStartThreshold = coldStartThreshold;
+        chatModels.stream().filter(m -> !m.isBlank()).forEach(m -> manage(m.trim(), "chat"));
+        embeddingModels.stream().filter(m -> !m.isBlank()).forEach(m -> manage(m.trim(), "embedding"));
+    }
+
+    private void manage(String model, String kind) {
+        ModelState state = new ModelState(model, kind);
+        managed.put(model, state);
+        Gauge.builder("ai.model.resident", state, s -> s.resident ? 1 : 0)
+                .description("1 while the model is loaded in Ollama")
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        // Loading a model takes seconds, don't hold up the rest of the startup for it
+        if (!managed.isEmpty()) {
+            Thread.ofVirtual().name("model-warm-up").start(this::refresh);
+        }
+    }
+
+    /**
+     * Reconciles the managed models with what Ollama has loaded: loads missing ones and
+     * extends the keep-alive of those about to expire.
+     */
+    @Scheduled(initialDelayString = "${app.models.runtime.check-interval-ms:60000}",
+            fixedDelayString = "${app.models.runtime.check-interval-ms:60000}")
+    public void refresh() {
+        if (managed.isEmpty()) {
+            return;
+        }
+        // A lock instead of synchronized: the startup warm-up runs on a virtual thread, which
+        // must not stay pinned to its carrier while it waits for Ollama
+        refreshLock.lock();
+        try {
+            reconcile();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void reconcile() {
+        Map<String, Instant> loaded;
+        try {
+            loaded = residentModels();
+        } catch (RestClientException e) {
+            managed.values().forEach(state -> state.resident = false);
+            System.err.println("Model runtime: Ollama is not reachable (" + e.getMessage() + ")");
+            return;
+        }
+
+        Instant now = clock.instant();
+        for (ModelState state : managed.values()) {
+            Instant expiresAt = loaded.get(state.model);
+            state.resident = expiresAt != null;
+            state.expiresAt = expiresAt;
+            if (expiresAt == null) {
+                coldStartCounter(state.model, "warm-up").increment();
+                warm(state);
+            } else if (expiresAt.isBefore(now.plus(refreshBefore))) {
+                warm(state);
+            }
+        }
+    }
+
+    /**
+     * Models Ollama has in memory right now ({@code GET /api/ps}) and when each one unloads.
+     * Names are reported with their tag, so both "model" and "model:latest" are mapped.
+     */
+    Map<String, Instant> residentModels() {
+        Map<?, ?> body = ollama.get().uri("/api/ps").retrieve().body(Map.class);
+        Map<String, Instant> resident = new HashMap<>();
+        if (body == null || !(body.get("models") instanceof List<?> models)) {
+            return resident;
+        }
+        for (Object item : models) {
+            if (item instanceof Map<?, ?> model && model.get("name") instanceof String name) {
+                Instant expiresAt = parseInstant(model.get("expires_at"));
+                resident.put(name, expiresAt);
+                if (name.endsWith(":latest")) {
+                    resident.put(name.substring(0, name.length() - ":latest".length()), expiresAt);
+                }
+            }
+        }
+        return resident;
+    }
+
+    private Instant parseInstant(Object value) {
+        if (value instanceof String text) {
+            try {
+                return OffsetDateTime.parse(text).toInstant();
+            } catch (DateTimeParseException e) {
+                // fall through, treat as "loaded, expiry unknown"
+            }
+        }
+        return Instant.MAX;
+    }
+
+    /**
+     * Loads the model (or extends its keep-alive) with an empty request: an empty prompt for
+     * chat models, a one-word input for embedding models.
+     */
+    private void warm(ModelState state) {
+        long start = System.nanoTime();
+        try {
+            Map<String, Object> request = new HashMap<>();
+            request.put("model", state.model);
+            request.put("keep_alive", keepAlive);
+            if (state.kind.equals("embedding")) {
+                request.put("input", "warm-up");
+                ollama.post().uri("/api/embed").body(request).retrieve().toBodilessEntity();
+            } else {
+                request.put("prompt", "");
+                request.put("stream", false);
+                ollama.post().uri("/api/generate").body(request).retrieve().toBodilessEntity();
+            }
+            long elapsed = System.nanoTime() - start;
+            Timer.builder("ai.model.warmup")
+                    .description("Time to load or refresh a model in Ollama")
+                    .tag("model", state.model)
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            state.lastWarmUpMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            state.resident = true;
+            state.expiresAt = keepAliveEnd();
+        } catch (RestClientException e) {
+            System.err.println("Model runtime: warm-up of " + state.model + " failed (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * When a model warmed now unloads; keep-alive values Ollama accepts but that are not
+     * durations (eg: "-1" = forever) count as never.
+     */
+    private Instant keepAliveEnd() {
+        try {
+            Duration duration = DurationStyle.detectAndParse(keepAlive);
+            return duration.isNegative() ? Instant.MAX : clock.instant().plus(duration);
+        } catch (IllegalArgumentException e) {
+            return Instant.MAX;
+        }
+    }
+
+    /**
+     * Called with Ollama's {@code load_duration} of a finished request. A long load means the
+     * model was not resident, ie: the user paid for a cold start.
+     */
+    void recordLoadDuration(String model, Duration loadDuration) {
+        if (loadDuration.compareTo(coldStartThreshold) >= 0) {
+            coldStartCounter(model, "request").increment();
+        }
+        ModelState state = managed.get(model);
+        if (state != null) {
+            state.resident = true;
+        }
+    }
+
+    private Counter coldStartCounter(String model, String source) {
+        return coldStarts.computeIfAbsent(model + "|" + source, key -> Counter.builder("ai.model.cold.starts")
+                .description("Model loads, by warm-up or inside a user request")
+                .tag("model", model)
+                .tag("source", source)
+                .register(meterRegistry));
+    }
+
+    /**
+     * Advisor that reports time-to-first-token and cold starts for a chat client. {@code model}
+     * is used when the response does not name the model.
+     */
+    public ModelRuntimeAdvisor advisor(String model) {
+        return new ModelRuntimeAdvisor(this, model);
+    }
+
+    public List<ModelStatus> status() {
+        List<ModelStatus> status = new ArrayList<>();
+        for (ModelState state : managed.values()) {
+            long colds = 0;
+            for (String source : List.of("warm-up", "request")) {
+                Counter counter = coldStarts.get(state.model + "|" + source);
+                colds += counter == null ? 0 : (long) counter.count();
+            }
+            status.add(new ModelStatus(state.model, state.kind, state.resident, state.expiresAt,
+                    state.lastWarmUpMillis, colds));
+        }
+        return status;
+    }
+}
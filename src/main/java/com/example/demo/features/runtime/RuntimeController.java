@@ -0,0 +1,43 @@
+package com.example.demo.features.runtime;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/ai/v1/runtime")
+public class RuntimeController {
+
+    private final ModelRuntimeManager runtimeManager;
+
+    public RuntimeController(ModelRuntimeManager runtimeManager) {
+        this.runtimeManager = runtimeManager;
+    }
+
+    /**
+     * Managed Ollama models: whether each is loaded, when its keep-alive ends, the last warm-up
+     * time and how many cold starts it had. Time-to-first-token per model is exported as
+     * ai.chat.ttft under /actuator/metrics.
+     *
+     * eg: curl http://localhost:8080/ai/v1/runtime/models
+     */
+    @GetMapping("/models")
+    public List<ModelRuntimeManager.ModelStatus> models() {
+        return runtimeManager.status();
+    }
+
+    /**
+     * Checks residency now and loads any managed model that is not, instead of waiting for
+     * the next scheduled check.
+     *
+     * eg: curl -X POST http://localhost:8080/ai/v1/runtime/models/warm-up
+     */
+    @PostMapping("/models/warm-up")
+    public List<ModelRuntimeManager.ModelStatus> warmUp() {
+        runtimeManager.refresh();
+        return runtimeManager.status();
+    }
+}
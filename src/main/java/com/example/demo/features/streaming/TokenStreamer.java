@@ -0,0 +1,187 @@
+package com.example.demo.features.streaming;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes a model's token stream to an SSE response in coalesced frames.
+ *
+ * Returning {@code Flux<String>} from a controller makes Spring MVC encode, write and flush
+ * one SSE event per token. Here tokens are buffered for up to {@code frame-window} (or
+ * {@code max-tokens-per-frame}), encoded once into the bytes of a single {@code data:} event
+ * and written with one flush. Clients that append event data see the same text.
+ *
+ * Writes run on virtual threads, never on a Reactor or model I/O thread. When a write fails
+ * (the client went away), the emitter errors or times out, the upstream subscription is
+ * disposed at once, which cancels the Ollama request and frees the model slot.
+ */
+@Component
+public class TokenStreamer implements DisposableBean {
+
+    /**
+     * Where encoded frames go: the HTTP response in production, a list in tests.
+     */
+    interface FrameSink {
+        void write(byte[] frame) throws IOException;
+
+        void complete();
+
+        void fail(Throwable error);
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Duration frameWindow;
+    private final int maxTokensPerFrame;
+    private final long timeoutMillis;
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Scheduler writeScheduler = Schedulers.fromExecutorService(writers, "sse-writer");
+
+    public TokenStreamer(MeterRegistry meterRegistry,
+                         @Value("${app.streaming.frame-window:20ms}") Duration frameWindow,
+                         @Value("${app.streaming.max-tokens-per-frame:32}") int maxTokensPerFrame,
+                         @Value("${app.streaming.timeout:5m}") Duration timeout) {
+        this.meterRegistry = meterRegistry;
+        this.frameWindow = frameWindow;
+        this.maxTokensPerFrame = Math.max(1, maxTokensPerFrame);
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Streams {@code tokens} as SSE. {@code endpoint} tags the stream metrics.
+     */
+    public SseEmitter stream(String endpoint, Flux<String> tokens) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Disposable subscription = pump(endpoint, tokens, new FrameSink() {
+            @Override
+            public void write(byte[] frame) throws IOException {
+                emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(frame, MediaType.TEXT_EVENT_STREAM)));
+            }
+
+            @Override
+            public void complete() {
+                emitter.complete();
+            }
+
+            @Override
+            public void fail(Throwable error) {
+                emitter.completeWithError(error);
+            }
+        });
+        // Client disconnects surface here (or as a failed write), stop generating right away
+        emitter.onError(error -> subscription.dispose());
+        emitter.onTimeout(subscription::dispose);
+        emitter.onCompletion(subscription::dispose);
+        return emitter;
+    }
+
+    Disposable pump(String endpoint, Flux<String> tokens, FrameSink sink) {
+        long start = System.nanoTime();
+        AtomicBoolean firstFrame = new AtomicBoolean(true);
+        AtomicBoolean finished = new AtomicBoolean();
+
+        return tokens
+                .bufferTimeout(maxTokensPerFrame, frameWindow)
+                .publishOn(writeScheduler)
+                .doOnCancel(() -> {
+                    if (finished.compareAndSet(false, true)) {
+                        cancelledCounter(endpoint).increment();
+                    }
+                })
+                .subscribe(frame -> {
+                    try {
+                        sink.write(encode(frame));
+                        if (firstFrame.compareAndSet(true, false)) {
+                            firstFrameTimer(endpoint).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // Client is gone; throwing cancels the upstream subscription
+                        throw new StreamAbortedException(e);
+                    }
+                }, error -> {
+                    if (error instanceof StreamAbortedException) {
+                        if (finished.compareAndSet(false, true)) {
+                            cancelledCounter(endpoint).increment();
+                        }
+                        sink.fail(error.getCause());
+                    } else {
+                        finished.set(true);
+                        sink.fail(error);
+                    }
+                }, () -> {
+                    finished.set(true);
+                    sink.complete();
+                });
+    }
+
+    /**
+     * One SSE event carrying the concatenated tokens. Line breaks inside the text become
+     * separate {@code data:} lines, which clients join back with "\n", like Spring's own
+     * encoding of a {@code Flux<String>}.
+     */
+    static byte[] encode(List<String> tokens) {
+        StringBuilder text = new StringBuilder();
+        tokens.forEach(text::append);
+        StringBuilder event = new StringBuilder(text.length() + 16);
+        int lineStart = 0;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == '\n') {
+                event.append("data:").append(text, lineStart, i).append('\n');
+                lineStart = i + 1;
+            }
+        }
+        return event.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Client side of the stream: model-side time to first token and generation speed are
+     * {@code ai.chat.ttft} and {@code ai.chat.tokens.per.second}; this adds the frame window
+     * and the write to the client.
+     */
+    private Timer firstFrameTimer(String endpoint) {
+        return Timer.builder("ai.stream.first.frame")
+                .description("Time from request to the first SSE frame written to the client")
+                .tag("endpoint", endpoint)
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+    }
+
+    private Counter cancelledCounter(String endpoint) {
+        return Counter.builder("ai.stream.cancelled")
+                .description("Streams stopped because the client disconnected")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        writeScheduler.dispose();
+        writers.shutdownNow();
+    }
+
+    private static final class StreamAbortedException extends RuntimeException {
+        StreamAbortedException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
@@ -1,21 +1,34 @@
 package com.example.demo.features.support;
 
+import com.example.demo.features.cache.ResponseCache;
+import com.example.demo.features.limits.ModelConcurrencyLimiter;
+import com.example.demo.features.limits.PriorityClass;
+import com.example.demo.features.observability.AiMetrics;
+import com.example.demo.features.runtime.ModelRuntimeManager;
+import com.example.demo.features.streaming.TokenStreamer;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
-import reactor.core.publisher.Flux;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/support") // This prefixes all URLs in this class
 public class SupportController {
 
     private final ChatClient chatClient;
+    private final TokenStreamer tokenStreamer;
 
-    public SupportController(@Qualifier("ollamaChatModel") ChatModel ollamaModel) {
+    public SupportController(@Qualifier("ollamaChatModel") ChatModel ollamaModel, ResponseCache responseCache,
+                             ModelConcurrencyLimiter concurrencyLimiter, ModelRuntimeManager runtimeManager,
+                             TokenStreamer tokenStreamer, AiMetrics aiMetrics) {
+        this.tokenStreamer = tokenStreamer;
+        // Support questions repeat a lot; the cache serves both /ask and /stream
         this.chatClient = ChatClient.builder(ollamaModel)
                 .defaultSystem("You are a customer support agent for a tech company.")
+                .defaultAdvisors(responseCache.advisor("ollama"), concurrencyLimiter.advisor("ollama", PriorityClass.INTERACTIVE),
+                        aiMetrics.advisor("support", "ollama"), runtimeManager.advisor("ollama"))
                 .build();
     }
 
@@ -29,13 +42,14 @@ public class SupportController {
                 .content();
     }
 
-    // 2. NEW STREAMING METHOD (Words appear one by one)
+    // 2. NEW STREAMING METHOD (Words appear as they are generated)
     // URL: http://localhost:8080/support/stream
+    // Tokens are sent in small frames (every ~20ms), closing the connection stops the generation
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> streamSupport(@RequestParam String question) {
-        return chatClient.prompt()
+    public SseEmitter streamSupport(@RequestParam String question) {
+        return tokenStreamer.stream("support", chatClient.prompt()
                 .user(question)
                 .stream()
-                .content();
+                .content());
     }
 }
\ No newline at end of file
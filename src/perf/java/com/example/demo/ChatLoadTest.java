@@ -0,0 +1,140 @@
+package com.example.demo;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load test: keeps N requests in flight against a chat endpoint of a
+ * running app and reports throughput and latency per N, plus the latency of a cheap probe
+ * endpoint. With platform threads the probe stalls once slow generations hold every Tomcat
+ * thread; with virtual threads and the model concurrency limiter it stays flat.
+ *
+ * Run once with spring.threads.virtual.enabled=false and once with true to compare:
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Dperf.main=com.example.demo.ChatLoadTest -Djmh.output= \
+ *       -Djmh.args="http://localhost:8080/ai/generate?message=hi 1,8,64,256 20 http://localhost:8080/actuator/health"
+ *
+ * Arguments: target url, in-flight levels (default 1,8,32,128,256), seconds per level
+ * (default 20), probe url (default /actuator/health on the same host).
+ *
+ * A request counter is appended to the last query parameter of the target url ("hi" becomes
+ * "hi 1", "hi 2", ...), so every request misses the response cache and reaches the model.
+ */
+public class ChatLoadTest {
+
+    private static final AtomicLong REQUESTS = new AtomicLong();
+
+    private record Result(int inFlight, int requests, int errors, double perSecond,
+                          long p50, long p95, long p99, long probeP95) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: ChatLoadTest <url> [levels=1,8,32,128,256] [seconds=20] [probeUrl]");
+            System.exit(1);
+        }
+        URI target = URI.create(args[0]);
+        int[] levels = Arrays.stream((args.length > 1 ? args[1] : "1,8,32,128,256").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        Duration perLevel = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 20);
+        URI probe = args.length > 3 ? URI.create(args[3]) : target.resolve("/actuator/health");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            System.out.printf("%-9s %9s %7s %9s %9s %9s %9s %11s%n",
+                    "inFlight", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "probe p95");
+            for (int level : levels) {
+                Result r = runLevel(client, executor, target, probe, level, perLevel);
+                System.out.printf("%-9d %9d %7d %9.2f %9d %9d %9d %11d%n",
+                        r.inFlight(), r.requests(), r.errors(), r.perSecond(), r.p50(), r.p95(), r.p99(), r.probeP95());
+            }
+        }
+    }
+
+    private static Result runLevel(HttpClient client, ExecutorService executor, URI target, URI probe,
+                                   int inFlight, Duration duration) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Long> probeLatencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger errors = new AtomicInteger();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < inFlight; i++) {
+            workers.add(Thread.ofVirtual().start(() -> {
+                while (System.nanoTime() < deadline) {
+                    long millis = timedGet(client, unique(target), Duration.ofMinutes(5));
+                    if (millis < 0) {
+                        errors.incrementAndGet();
+                    } else {
+                        latencies.add(millis);
+                    }
+                }
+            }));
+        }
+        // One probe request every 250ms shows whether cheap endpoints still get a thread
+        Thread prober = Thread.ofVirtual().start(() -> {
+            while (System.nanoTime() < deadline) {
+                long millis = timedGet(client, probe, Duration.ofSeconds(30));
+                probeLatencies.add(millis < 0 ? 30_000 : millis);
+                try {
+                    Thread.sleep(250);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        prober.join();
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        List<Long> probeSorted = new ArrayList<>(probeLatencies);
+        Collections.sort(probeSorted);
+        double seconds = duration.toMillis() / 1000.0;
+        return new Result(inFlight, sorted.size(), errors.get(), sorted.size() / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99), percentile(probeSorted, 0.95));
+    }
+
+    private static URI unique(URI target) {
+        return target.getRawQuery() == null ? target : URI.create(target + "+" + REQUESTS.incrementAndGet());
+    }
+
+    /**
+     * Latency in milliseconds, or -1 for a transport error or non-2xx status.
+     */
+    private static long timedGet(HttpClient client, URI uri, Duration timeout) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).timeout(timeout).GET().build(),
+                    HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() / 100 == 2 ? (System.nanoTime() - start) / 1_000_000 : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1));
+    }
+}
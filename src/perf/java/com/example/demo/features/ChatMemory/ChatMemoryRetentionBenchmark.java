@@ -0,0 +1,146 @@
+package com.example.demo.features.ChatMemory;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Legacy single DELETE vs the batched retention engine on a seeded H2 file database.
+ *
+ * Half of the {@code rows} messages are past the 7 day TTL. While each benchmark runs, a reader
+ * thread keeps loading one live conversation (what /ai/chat does per turn); its worst read
+ * latency is printed after every iteration, because the stall seen by chat traffic matters
+ * more than the raw delete time.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="ChatMemoryRetention -p rows=3000000"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ChatMemoryRetentionBenchmark {
+
+    private static final String INSERT =
+            "INSERT INTO SPRING_AI_CHAT_MEMORY (conversation_id, content, type, timestamp) VALUES (?, ?, ?, ?)";
+    private static final int MESSAGES_PER_CONVERSATION = 20;
+
+    @Param({"2000000"})
+    int rows;
+
+    private Path directory;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ChatMemoryRetentionEngine engine;
+    private Thread reader;
+    private volatile boolean reading;
+    private volatile long maxReadNanos;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        directory = Files.createTempDirectory("retention-bench");
+        // Pooled like the app (Hikari), so connection setup is not part of the measurement
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:file:" + directory.resolve("chatdb"));
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(4);
+        new ResourceDatabasePopulator(new ClassPathResource(
+                "org/springframework/ai/chat/memory/repository/jdbc/schema-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        engine = new ChatMemoryRetentionEngine(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                (ids, delete) -> delete.run(), new SimpleMeterRegistry(), RetentionPolicy.parse("", Duration.ofDays(7), 0),
+                1000, Duration.ZERO, Integer.MAX_VALUE, null);
+        // Same index the engine creates on its first run, so both variants see the same table
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS SPRING_AI_CHAT_MEMORY_TIMESTAMP_IDX ON SPRING_AI_CHAT_MEMORY(timestamp)");
+    }
+
+    /**
+     * Reseeds the table: conversations c0..cN, the first half 30 days old, the rest 1 hour old.
+     */
+    @Setup(Level.Iteration)
+    public void seed() {
+        jdbcTemplate.execute("TRUNCATE TABLE SPRING_AI_CHAT_MEMORY");
+        Instant old = Instant.now().minus(Duration.ofDays(30));
+        Instant recent = Instant.now().minus(Duration.ofHours(1));
+        List<Object[]> batch = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            int conversation = i / MESSAGES_PER_CONVERSATION;
+            Instant base = i < rows / 2 ? old : recent;
+            batch.add(new Object[] {"c" + conversation, "message " + i + " with some typical chat text in it",
+                    i % 2 == 0 ? "USER" : "ASSISTANT", Timestamp.from(base.plusSeconds(i % MESSAGES_PER_CONVERSATION))});
+            if (batch.size() == 10_000) {
+                jdbcTemplate.batchUpdate(INSERT, batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT, batch);
+
+        String live = "c" + (rows - 1) / MESSAGES_PER_CONVERSATION;
+        maxReadNanos = 0;
+        reading = true;
+        reader = Thread.ofPlatform().start(() -> {
+            while (reading) {
+                long start = System.nanoTime();
+                jdbcTemplate.queryForList("SELECT content, type FROM SPRING_AI_CHAT_MEMORY WHERE conversation_id = ? ORDER BY timestamp",
+                        live);
+                maxReadNanos = Math.max(maxReadNanos, System.nanoTime() - start);
+            }
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopReader() throws InterruptedException {
+        reading = false;
+        reader.join();
+        System.out.println("    max concurrent read latency: " + maxReadNanos / 1_000_000 + " ms");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int singleBulkDelete() {
+        return jdbcTemplate.update("DELETE FROM SPRING_AI_CHAT_MEMORY WHERE TIMESTAMP < DATEADD('DAY', -7, CURRENT_TIMESTAMP())");
+    }
+
+    @Benchmark
+    public int batchedRetention() {
+        return engine.run().deleted();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.features.ChatMemory;
+
+import com.example.demo.testsupport.SyntheticText;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepositoryDialect;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat memory cost of one /ai/chat turn, as ChatClient's memory advisor does it: read the
+ * conversation window, then append the user message and the assistant answer.
+ *
+ * {@code repository=jdbc} is the plain JdbcChatMemoryRepository (rewrites the conversation on
+ * every add); {@code write-behind} is the cached repository the app uses, whose flushes run in
+ * the background and are not part of the measured turn. Turns rotate over {@code conversations}
+ * conversations on an in-memory H2 database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ChatMemoryTurnBenchmark {
+
+    @Param({"jdbc", "write-behind"})
+    String repository;
+
+    @Param({"100"})
+    int conversations;
+
+    private HikariDataSource dataSource;
+    private WriteBehindChatMemoryRepository writeBehind;
+    private ChatMemory chatMemory;
+    private String question;
+    private String answer;
+    private int turn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Hikari logs pool start and shutdown in the middle of the iteration output
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.zaxxer.hikari"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:turn-bench;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(4);
+        new ResourceDatabasePopulator(new ClassPathResource(
+                "org/springframework/ai/chat/memory/repository/jdbc/schema-h2.sql")).execute(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        JdbcChatMemoryRepositoryDialect dialect = JdbcChatMemoryRepositoryDialect.from(dataSource);
+        JdbcChatMemoryRepository jdbc = JdbcChatMemoryRepository.builder()
+                .jdbcTemplate(jdbcTemplate)
+                .dialect(dialect)
+                .build();
+
+        ChatMemoryRepository memoryRepository = jdbc;
+        if (repository.equals("write-behind")) {
+            // Same settings as the application defaults (app.chat-memory.*)
+            writeBehind = new WriteBehindChatMemoryRepository(jdbc, jdbcTemplate,
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource)), dialect,
+                    new SimpleMeterRegistry(), 1000, Duration.ofMillis(200), 100);
+            memoryRepository = writeBehind;
+        }
+        chatMemory = MessageWindowChatMemory.builder()
+                .chatMemoryRepository(memoryRepository)
+                .maxMessages(10)
+                .build();
+
+        question = SyntheticText.words(1, 30);
+        answer = SyntheticText.words(2, 150);
+        // Start from full windows, the steady state of an active conversation
+        for (int i = 0; i < conversations * 5; i++) {
+            turn();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (writeBehind != null) {
+            writeBehind.destroy();
+        }
+        new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS");
+        dataSource.close();
+    }
+
+    @Benchmark
+    public List<Message> turn() {
+        String conversationId = "conversation-" + (turn++ % conversations);
+        List<Message> history = chatMemory.get(conversationId);
+        chatMemory.add(conversationId, new UserMessage(question));
+        chatMemory.add(conversationId, new AssistantMessage(answer));
+        return history;
+    }
+}
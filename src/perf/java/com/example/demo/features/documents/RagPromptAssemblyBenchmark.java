@@ -0,0 +1,102 @@
+package com.example.demo.features.documents;
+
+import com.example.demo.features.documents.context.ContextBuilder;
+import com.example.demo.features.documents.context.PackedContext;
+import com.example.demo.features.documents.retrieval.HybridRetriever;
+import com.example.demo.features.documents.store.MappedVectorStore;
+import com.example.demo.testsupport.FakeChatModel;
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import com.example.demo.testsupport.SyntheticText;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * RAG prompt assembly in KnowledgeBaseController: hybrid retrieval, context packing and the
+ * rendered ChatClient request, with a FakeChatModel standing in for Ollama so only our side of
+ * the request is measured.
+ *
+ * Keyword questions take the BM25 fast path; longer ones also embed the question and fuse the
+ * vector ranking.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class RagPromptAssemblyBenchmark {
+
+    @Param({"200"})
+    int pages;
+
+    @Param({"keyword", "question"})
+    String query;
+
+    private Path directory;
+    private MappedVectorStore store;
+    private KnowledgeBaseController controller;
+    private String question;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // TokenTextSplitter logs one INFO line per split document
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.springframework.ai"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        directory = Files.createTempDirectory("rag-bench");
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(768);
+        store = MappedVectorStore.builder(embeddingModel).directory(directory).build();
+        List<Document> chunks = new TokenTextSplitter().apply(List.of(new Document(SyntheticText.words(13, pages * 500))));
+        store.addEmbedded(chunks, chunks.stream().map(chunk -> embeddingModel.vectorFor(chunk.getText())).toList());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ChatClient chatClient = ChatClient.builder(new FakeChatModel("The printer needs a driver update.")).build();
+        // Same settings as the application defaults; ask() itself is not called, so no DocumentService or TokenStreamer
+        controller = new KnowledgeBaseController(null, chatClient, new HybridRetriever(store, registry, 60, 4),
+                new ContextBuilder(registry, "", 2048, 0.7, 0.8, 10_000), null, "granite4:3b", 8);
+        question = query.equals("keyword")
+                ? "printer driver"
+                : "Why does the printer show an error after the driver update and how do I reset it?";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public PackedContext retrieveContext() {
+        return controller.retrieveContext(question);
+    }
+
+    @Benchmark
+    public String assembleAndCall() {
+        return controller.ragRequest(question, controller.retrieveContext(question)).call().content();
+    }
+}
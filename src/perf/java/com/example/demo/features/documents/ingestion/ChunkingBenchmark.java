@@ -0,0 +1,54 @@
+package com.example.demo.features.documents.ingestion;
+
+import com.example.demo.testsupport.SyntheticText;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TokenTextSplitter with the defaults the ingestion pipeline uses, over one large document of
+ * {@code pages} pages (about 500 words each, as extracted from a dense manual).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ChunkingBenchmark {
+
+    private static final int WORDS_PER_PAGE = 500;
+
+    @Param({"10", "100", "1000"})
+    int pages;
+
+    private final TokenTextSplitter splitter = new TokenTextSplitter();
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        // TokenTextSplitter logs one INFO line per split document
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.springframework.ai"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        document = new Document(SyntheticText.words(11, pages * WORDS_PER_PAGE));
+    }
+
+    @Benchmark
+    public List<Document> split() {
+        return splitter.apply(List.of(document));
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo.features.documents.ingestion;
+
+import com.example.demo.features.documents.DocumentService;
+import com.example.demo.features.documents.store.MappedVectorStore;
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import com.example.demo.testsupport.SyntheticText;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * DocumentService.processPDf end to end: stage the upload, extract with Tika, split, embed with
+ * a stub model and persist to a fresh MappedVectorStore, until the job reports COMPLETED.
+ *
+ * Every invocation gets an empty store, otherwise the content-hash cache would skip all the
+ * work after the first run. {@code embedLatencyMs} adds a fixed delay per embedding call to
+ * see how well the pipeline overlaps embedding with extraction and storage.
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="Ingestion -p pages=50 -p embedLatencyMs=0,20"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class IngestionBenchmark {
+
+    private static final int LINES_PER_PAGE = 45;
+    private static final int WORDS_PER_LINE = 12;
+
+    @Param({"10", "100"})
+    int pages;
+
+    @Param({"0"})
+    int embedLatencyMs;
+
+    private byte[] pdf;
+    private Path directory;
+    private MappedVectorStore store;
+    private IngestionPipeline pipeline;
+    private DocumentService documentService;
+
+    /** FakeEmbeddingModel that optionally takes as long as a local embedding server would. */
+    static class SlowEmbeddingModel extends FakeEmbeddingModel {
+        private final int latencyMs;
+
+        SlowEmbeddingModel(int dimensions, int latencyMs) {
+            super(dimensions);
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            if (latencyMs > 0) {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.call(request);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        // TokenTextSplitter logs one INFO line per split document
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.springframework.ai"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        pdf = pdf(pages);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws IOException {
+        directory = Files.createTempDirectory("ingestion-bench");
+        SlowEmbeddingModel model = new SlowEmbeddingModel(768, embedLatencyMs);
+        store = MappedVectorStore.builder(model).directory(directory).build();
+        pipeline = new IngestionPipeline(model, store, new SimpleMeterRegistry(), "fake-embed", 32, 256, 2);
+        documentService = new DocumentService(pipeline);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() throws IOException {
+        pipeline.destroy();
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public IngestionStatus processPdf() throws InterruptedException {
+        String jobId = documentService.processPDf(
+                new MockMultipartFile("file", "manual.pdf", "application/pdf", pdf)).jobId();
+        while (true) {
+            IngestionStatus status = documentService.ingestionStatus(jobId).orElseThrow();
+            switch (status.state()) {
+                case COMPLETED -> {
+                    return status;
+                }
+                case FAILED -> throw new IllegalStateException("Ingestion failed: " + status.error());
+                default -> Thread.sleep(1);
+            }
+        }
+    }
+
+    /** A text-only PDF of {@code pages} pages of seeded filler, so every run parses the same bytes. */
+    static byte[] pdf(int pages) throws IOException {
+        String[] words = SyntheticText.words(5, pages * LINES_PER_PAGE * WORDS_PER_LINE).split("\\s+");
+        PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            int word = 0;
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 740);
+                    for (int l = 0; l < LINES_PER_PAGE && word < words.length; l++) {
+                        int end = Math.min(words.length, word + WORDS_PER_LINE);
+                        content.showText(String.join(" ", Arrays.copyOfRange(words, word, end)));
+                        content.newLine();
+                        word = end;
+                    }
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
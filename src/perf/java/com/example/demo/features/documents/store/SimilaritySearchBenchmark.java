@@ -0,0 +1,112 @@
+package com.example.demo.features.documents.store;
+
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * MappedVectorStore.similaritySearch (top 5, no threshold) as the knowledge base grows.
+ *
+ * Rows are seeded random vectors with a short text, so the store is built in seconds even at
+ * 1M rows; the query goes through the (fake) embedding model like a real request. The exact
+ * scan is the default; HNSW can be measured with {@code -p hnswM=16} (slow to build at 1M).
+ *
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.args="SimilaritySearch -p documents=10000,100000"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class SimilaritySearchBenchmark {
+
+    private static final int DIMENSIONS = 384;
+    private static final int ADD_BATCH = 10_000;
+
+    @Param({"10000", "100000", "1000000"})
+    int documents;
+
+    @Param({"false", "true"})
+    boolean quantized;
+
+    @Param({"0"})
+    int hnswM;
+
+    private Path directory;
+    private MappedVectorStore store;
+    private SearchRequest[] requests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("search-bench");
+        store = MappedVectorStore.builder(new FakeEmbeddingModel(DIMENSIONS))
+                .directory(directory)
+                .quantized(quantized)
+                .hnsw(hnswM, 200, 64)
+                .build();
+
+        Random random = new Random(7);
+        for (int start = 0; start < documents; start += ADD_BATCH) {
+            int size = Math.min(ADD_BATCH, documents - start);
+            List<Document> docs = new ArrayList<>(size);
+            List<float[]> embeddings = new ArrayList<>(size);
+            for (int i = start; i < start + size; i++) {
+                docs.add(new Document("doc-" + i, "chunk " + i + " of the benchmark corpus", Map.of()));
+                float[] vector = new float[DIMENSIONS];
+                for (int d = 0; d < DIMENSIONS; d++) {
+                    vector[d] = (float) random.nextGaussian();
+                }
+                embeddings.add(vector);
+            }
+            store.addEmbedded(docs, embeddings);
+        }
+
+        // A handful of distinct questions, so one cached query vector cannot flatter the numbers
+        String[] questions = {"printer shows error code", "reset the admin password", "router firewall blocks sync",
+                "restore a deleted folder from backup", "battery drains while the screen is off"};
+        requests = new SearchRequest[questions.length];
+        for (int i = 0; i < questions.length; i++) {
+            requests[i] = SearchRequest.builder().query(questions[i]).topK(5).similarityThresholdAll().build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Document> similaritySearch() {
+        SearchRequest request = requests[next++ % requests.length];
+        return store.similaritySearch(request);
+    }
+}
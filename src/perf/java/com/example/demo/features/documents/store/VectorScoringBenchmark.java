@@ -0,0 +1,161 @@
+package com.example.demo.features.documents.store;
+
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Similarity kernels and full scans: SimpleVectorStore's EmbeddingMath (the previous
+ * implementation) against the scalar, SIMD and int8 scorers used by MappedVectorStore.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorScoringBenchmark {
+
+    @State(Scope.Thread)
+    public static class Kernels {
+        @Param({"768"})
+        int dimensions;
+
+        float[] a;
+        float[] b;
+        byte[] codesA;
+        byte[] codesB;
+        final VectorScorer scalar = new ScalarVectorScorer();
+        final VectorScorer best = VectorScorer.best();
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(1);
+            a = new float[dimensions];
+            b = new float[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                a[i] = (float) random.nextGaussian();
+                b[i] = (float) random.nextGaussian();
+            }
+            codesA = new byte[dimensions];
+            codesB = new byte[dimensions];
+            QuantizedRows.quantize(a, codesA, 0);
+            QuantizedRows.quantize(b, codesB, 0);
+        }
+    }
+
+    @Benchmark
+    public double cosineSimpleVectorStore(Kernels k) {
+        return SimpleVectorStore.EmbeddingMath.cosineSimilarity(k.a, k.b);
+    }
+
+    @Benchmark
+    public float dotScalar(Kernels k) {
+        return k.scalar.dot(k.a, k.b, k.dimensions);
+    }
+
+    @Benchmark
+    public float dotBest(Kernels k) {
+        return k.best.dot(k.a, k.b, k.dimensions);
+    }
+
+    @Benchmark
+    public int dotInt8Scalar(Kernels k) {
+        return k.scalar.dot(k.codesA, 0, k.codesB, 0, k.dimensions);
+    }
+
+    @Benchmark
+    public int dotInt8Best(Kernels k) {
+        return k.best.dot(k.codesA, 0, k.codesB, 0, k.dimensions);
+    }
+
+    /**
+     * Exact top-3 over the whole store, so the kernels are compared inside a real scan.
+     */
+    @State(Scope.Benchmark)
+    public static class Stores {
+        @Param({"10000"})
+        int documents;
+
+        SimpleVectorStore simple;
+        MappedVectorStore mapped;
+        MappedVectorStore mappedInt8;
+        Path directory;
+        SearchRequest request;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            // SimpleVectorStore logs one INFO line per added document
+            ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.springframework.ai"))
+                    .setLevel(ch.qos.logback.classic.Level.WARN);
+            FakeEmbeddingModel model = new FakeEmbeddingModel(768);
+            Random random = new Random(3);
+            List<Document> docs = new ArrayList<>(documents);
+            List<float[]> embeddings = new ArrayList<>(documents);
+            for (int i = 0; i < documents; i++) {
+                StringBuilder text = new StringBuilder();
+                for (int w = 0; w < 200; w++) {
+                    text.append("w").append(random.nextInt(5000)).append(' ');
+                }
+                docs.add(new Document("doc-" + i, text.toString(), Map.of()));
+                embeddings.add(model.vectorFor(text.toString()));
+            }
+
+            directory = Files.createTempDirectory("scoring-bench");
+            simple = SimpleVectorStore.builder(model).build();
+            simple.add(docs);
+            mapped = MappedVectorStore.builder(model).directory(directory.resolve("f32")).build();
+            mapped.addEmbedded(docs, embeddings);
+            mappedInt8 = MappedVectorStore.builder(model).directory(directory.resolve("i8")).quantized(true).build();
+            mappedInt8.addEmbedded(docs, embeddings);
+            request = SearchRequest.builder().query(docs.get(42).getText()).topK(3).build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            mapped.close();
+            mappedInt8.close();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Document> scanSimpleVectorStore(Stores s) {
+        return s.simple.similaritySearch(s.request);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Document> scanMappedFloat32(Stores s) {
+        return s.mapped.similaritySearch(s.request);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Document> scanMappedInt8(Stores s) {
+        return s.mappedInt8.similaritySearch(s.request);
+    }
+}
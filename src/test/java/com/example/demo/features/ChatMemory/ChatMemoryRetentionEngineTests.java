@@ -0,0 +1,137 @@
+package com.example.demo.features.ChatMemory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatMemoryRetentionEngineTests {
+
+    @TempDir
+    Path archive;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private final Set<String> invalidated = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource(
+                "org/springframework/ai/chat/memory/repository/jdbc/schema-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    private void seed(String conversationId, int messages, Duration age) {
+        Instant start = Instant.now().minus(age);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            rows.add(new Object[] {conversationId, "message " + i, i % 2 == 0 ? "USER" : "ASSISTANT",
+                    Timestamp.from(start.plusSeconds(i))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO SPRING_AI_CHAT_MEMORY (conversation_id, content, type, timestamp) VALUES (?, ?, ?, ?)", rows);
+    }
+
+    private int rows(String conversationId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_AI_CHAT_MEMORY WHERE conversation_id = ?",
+                Integer.class, conversationId);
+    }
+
+    private ChatMemoryRetentionEngine engine(String overrides, int maxMessages, int maxRowsPerRun, Path archiveDirectory) {
+        return new ChatMemoryRetentionEngine(jdbcTemplate, transactionTemplate, (ids, delete) -> {
+            delete.run();
+            invalidated.addAll(ids);
+        }, new SimpleMeterRegistry(),
+                RetentionPolicy.parse(overrides, Duration.ofDays(7), maxMessages), 7, Duration.ZERO, maxRowsPerRun,
+                archiveDirectory);
+    }
+
+    @Test
+    void expiresRowsPerPolicyInBatches() {
+        seed("old", 20, Duration.ofDays(10));
+        seed("fresh", 5, Duration.ofDays(1));
+        seed("vip-1", 5, Duration.ofDays(10));
+        seed("anon-1", 5, Duration.ofDays(2));
+
+        ChatMemoryRetentionEngine.RetentionReport report = engine("vip-:30d:0,anon-:1d:0", 0, 1000, null).run();
+
+        assertThat(rows("old")).isZero();
+        assertThat(rows("fresh")).isEqualTo(5);
+        assertThat(rows("vip-1")).isEqualTo(5);
+        assertThat(rows("anon-1")).isZero();
+        assertThat(report.deleted()).isEqualTo(25);
+        assertThat(report.lagSeconds()).isZero();
+        assertThat(invalidated).containsExactlyInAnyOrder("old", "anon-1");
+    }
+
+    @Test
+    void stopsAtTheRowBudgetAndReportsLag() {
+        seed("old", 30, Duration.ofDays(10));
+
+        ChatMemoryRetentionEngine engine = engine("", 0, 10, null);
+        ChatMemoryRetentionEngine.RetentionReport first = engine.run();
+
+        assertThat(first.deleted()).isEqualTo(10);
+        assertThat(first.budgetExhausted()).isTrue();
+        assertThat(first.lagSeconds()).isGreaterThan(Duration.ofDays(2).toSeconds());
+        // Oldest rows go first
+        assertThat(jdbcTemplate.queryForList("SELECT content FROM SPRING_AI_CHAT_MEMORY", String.class))
+                .doesNotContain("message 0", "message 9").contains("message 10");
+
+        engine.run();
+        engine.run();
+        assertThat(rows("old")).isZero();
+    }
+
+    @Test
+    void trimsToMaxMessagesAndArchivesRemovedRows() throws Exception {
+        seed("chatty", 25, Duration.ofHours(1));
+        seed("quiet", 3, Duration.ofHours(1));
+
+        ChatMemoryRetentionEngine.RetentionReport report = engine("", 10, 1000, archive).run();
+
+        assertThat(rows("chatty")).isEqualTo(10);
+        assertThat(rows("quiet")).isEqualTo(3);
+        assertThat(report.archived()).isEqualTo(15);
+        // Newest ten survive
+        assertThat(jdbcTemplate.queryForList("SELECT content FROM SPRING_AI_CHAT_MEMORY WHERE conversation_id = 'chatty'",
+                String.class)).contains("message 24", "message 15").doesNotContain("message 14");
+
+        List<String> archived = new ArrayList<>();
+        Path file;
+        try (var files = Files.list(archive)) {
+            file = files.findFirst().orElseThrow();
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            reader.lines().forEach(archived::add);
+        }
+        assertThat(archived).hasSize(15);
+        assertThat(archived.get(0)).contains("\"conversationId\":\"chatty\"").contains("\"content\":\"message 0\"");
+    }
+}
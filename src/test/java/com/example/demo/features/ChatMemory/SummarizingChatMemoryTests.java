@@ -0,0 +1,156 @@
+package com.example.demo.features.ChatMemory;
+
+import com.example.demo.testsupport.FakeChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.memory.repository.jdbc.H2ChatMemoryRepositoryDialect;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SummarizingChatMemoryTests {
+
+    private static final String SUMMARY = "The user has a Canon printer that shows error E05.";
+
+    private final InMemoryChatMemoryRepository messages = new InMemoryChatMemoryRepository();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JdbcTemplate jdbcTemplate;
+    private ConversationSummaryRepository summaries;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource(
+                "org/springframework/ai/chat/memory/repository/jdbc/schema-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        summaries = new ConversationSummaryRepository(jdbcTemplate, 100);
+    }
+
+    // Compactions run on the calling thread, right after the add that triggered them
+    private SummarizingChatMemory memory(ChatModel summarizer, int recent, int batch, int budget) {
+        return new SummarizingChatMemory(messages, summaries, ChatClient.builder(summarizer).build(),
+                new JTokkitTokenCountEstimator(), meterRegistry, recent, batch, 40, budget, 150, Runnable::run);
+    }
+
+    private static void turn(SummarizingChatMemory memory, int i) {
+        memory.add("user-1", List.of(
+                new UserMessage("Question " + i + ": my printer still shows error E05 after I replaced the cartridge."),
+                new AssistantMessage("Answer " + i + ": open the front cover, remove the cartridge and clean the contacts.")));
+    }
+
+    @Test
+    void olderTurnsAreFoldedIntoTheSummaryAndRecentTurnsStayVerbatim() {
+        FakeChatModel summarizer = new FakeChatModel(SUMMARY);
+        SummarizingChatMemory memory = memory(summarizer, 2, 4, 10_000);
+
+        for (int i = 1; i <= 3; i++) {
+            turn(memory, i);
+        }
+
+        // Turns 1 and 2 were summarized once the third turn made 4 messages older than the recent 2
+        assertThat(summarizer.calls()).isEqualTo(1);
+        assertThat(summarizer.lastPrompt().getContents()).contains("Question 1", "Answer 2").doesNotContain("Question 3");
+        assertThat(messages.findByConversationId("user-1")).extracting(Message::getText)
+                .allMatch(text -> text.contains(" 3:"));
+
+        List<Message> window = memory.get("user-1");
+        assertThat(window).hasSize(3);
+        assertThat(window.get(0).getMessageType()).isEqualTo(MessageType.SYSTEM);
+        assertThat(window.get(0).getText()).endsWith(SUMMARY);
+
+        SummarizingChatMemory.MemoryStats stats = memory.stats("user-1");
+        assertThat(stats.storedMessages()).isEqualTo(2);
+        assertThat(stats.summarizedMessages()).isEqualTo(4);
+        assertThat(stats.savedTokens()).isPositive();
+        assertThat(stats.historyTokens()).isEqualTo(stats.injectedTokens() + stats.savedTokens());
+        assertThat(meterRegistry.get("chat.memory.summaries").tag("result", "success").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void theTokenBudgetKeepsOnlyTheNewestMessagesThatFit() {
+        SummarizingChatMemory memory = memory(new FakeChatModel(SUMMARY), 10, 10, 60);
+
+        for (int i = 1; i <= 4; i++) {
+            turn(memory, i);
+        }
+
+        List<Message> window = memory.get("user-1");
+        assertThat(window).isNotEmpty().hasSizeLessThan(8);
+        assertThat(window.get(window.size() - 1).getText()).startsWith("Answer 4");
+        assertThat(memory.stats("user-1").injectedTokens()).isLessThanOrEqualTo(60);
+        assertThat(meterRegistry.get("chat.memory.prompt.tokens.saved").summary().totalAmount()).isPositive();
+    }
+
+    @Test
+    void aFailedSummaryKeepsTheMessagesForTheNextTurn() {
+        ChatModel failing = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new IllegalStateException("model unavailable");
+            }
+        };
+        SummarizingChatMemory memory = memory(failing, 2, 2, 10_000);
+
+        turn(memory, 1);
+        turn(memory, 2);
+
+        assertThat(messages.findByConversationId("user-1")).hasSize(4);
+        assertThat(summaries.find("user-1")).isEmpty();
+        assertThat(meterRegistry.get("chat.memory.summaries").tag("result", "failure").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aSummaryOfAConversationClearedMeanwhileIsDiscarded() {
+        SummarizingChatMemory[] memory = new SummarizingChatMemory[1];
+        ChatModel clearing = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                memory[0].clear("user-1");
+                return new FakeChatModel(SUMMARY).call(prompt);
+            }
+        };
+        memory[0] = memory(clearing, 2, 2, 10_000);
+
+        turn(memory[0], 1);
+        turn(memory[0], 2);
+
+        assertThat(summaries.find("user-1")).isEmpty();
+        assertThat(memory[0].get("user-1")).isEmpty();
+    }
+
+    @Test
+    void summariesWithoutMessagesAreDeletedAsOrphans() {
+        JdbcChatMemoryRepository jdbcRepository = JdbcChatMemoryRepository.builder()
+                .jdbcTemplate(jdbcTemplate)
+                .dialect(new H2ChatMemoryRepositoryDialect())
+                .build();
+        jdbcRepository.saveAll("kept", List.of(new UserMessage("hello")));
+        summaries.save(new ConversationSummaryRepository.ConversationSummary("kept", SUMMARY, 2, 40, Instant.now()));
+        summaries.save(new ConversationSummaryRepository.ConversationSummary("expired", SUMMARY, 2, 40, Instant.now()));
+
+        assertThat(summaries.deleteOrphans()).isEqualTo(1);
+
+        assertThat(summaries.find("kept")).isPresent();
+        assertThat(summaries.find("expired")).isEmpty();
+    }
+}
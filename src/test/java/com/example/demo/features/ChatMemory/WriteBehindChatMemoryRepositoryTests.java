@@ -0,0 +1,180 @@
+package com.example.demo.features.ChatMemory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.repository.jdbc.H2ChatMemoryRepositoryDialect;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindChatMemoryRepositoryTests {
+
+    private JdbcTemplate jdbcTemplate;
+    private JdbcChatMemoryRepository jdbcRepository;
+    private WriteBehindChatMemoryRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource(
+                "org/springframework/ai/chat/memory/repository/jdbc/schema-h2.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcRepository = JdbcChatMemoryRepository.builder()
+                .jdbcTemplate(jdbcTemplate)
+                .dialect(new H2ChatMemoryRepositoryDialect())
+                .build();
+        meterRegistry = new SimpleMeterRegistry();
+        // Long interval so the test decides when flushes happen
+        repository = new WriteBehindChatMemoryRepository(jdbcRepository, jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                new H2ChatMemoryRepositoryDialect(), meterRegistry, 100, Duration.ofHours(1), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.destroy();
+    }
+
+    private int rows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_AI_CHAT_MEMORY", Integer.class);
+    }
+
+    @Test
+    void writesAreCoalescedAndFlushedInBatches() {
+        repository.saveAll("a", List.of(new UserMessage("hi")));
+        repository.saveAll("a", List.of(new UserMessage("hi"), new AssistantMessage("hello")));
+        repository.saveAll("b", List.of(new UserMessage("one")));
+        repository.saveAll("c", List.of(new UserMessage("two")));
+
+        assertThat(rows()).isZero();
+        assertThat(repository.findByConversationId("a")).extracting(Message::getText).containsExactly("hi", "hello");
+        assertThat(repository.findConversationIds()).containsExactlyInAnyOrder("a", "b", "c");
+
+        repository.flush();
+
+        assertThat(rows()).isEqualTo(4);
+        assertThat(jdbcRepository.findByConversationId("a")).extracting(Message::getText).containsExactly("hi", "hello");
+    }
+
+    @Test
+    void hotConversationsAreReadWithoutTheDatabase() {
+        jdbcRepository.saveAll("a", List.of(new UserMessage("stored")));
+
+        repository.findByConversationId("a");
+        repository.findByConversationId("a");
+        repository.findByConversationId("a");
+
+        assertThat(meterRegistry.counter("chat.memory.reads", "source", "database").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("chat.memory.reads", "source", "memory").count()).isEqualTo(2);
+    }
+
+    @Test
+    void deleteDropsPendingWritesAndShutdownFlushesTheRest() {
+        repository.saveAll("a", List.of(new UserMessage("gone")));
+        repository.saveAll("b", List.of(new UserMessage("kept")));
+        repository.deleteByConversationId("a");
+
+        repository.destroy();
+
+        assertThat(jdbcRepository.findConversationIds()).containsExactly("b");
+        assertThat(repository.findByConversationId("a")).isEmpty();
+    }
+
+    @Test
+    void rowsDeletedDirectlyAreNotWrittenBackByPendingSnapshots() {
+        repository.saveAll("a", List.of(new UserMessage("expired"), new AssistantMessage("recent")));
+
+        // What retention does: delete rows behind the repository's back
+        repository.deleteStored(Set.of("a"), () ->
+                jdbcTemplate.update("DELETE FROM SPRING_AI_CHAT_MEMORY WHERE content = 'expired'"));
+        repository.flush();
+
+        assertThat(rows()).isEqualTo(1);
+        assertThat(repository.findByConversationId("a")).extracting(Message::getText).containsExactly("recent");
+    }
+
+    @Test
+    void aSnapshotSavedWhileTheStoredRowsLoadIsNotOverwrittenByThem() throws Exception {
+        jdbcRepository.saveAll("a", List.of(new UserMessage("stored")));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+        ChatMemoryRepository slowDatabase = new ChatMemoryRepository() {
+            @Override
+            public List<String> findConversationIds() {
+                return jdbcRepository.findConversationIds();
+            }
+
+            @Override
+            public List<Message> findByConversationId(String conversationId) {
+                List<Message> stored = jdbcRepository.findByConversationId(conversationId);
+                loading.countDown();
+                try {
+                    saved.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return stored;
+            }
+
+            @Override
+            public void saveAll(String conversationId, List<Message> messages) {
+                jdbcRepository.saveAll(conversationId, messages);
+            }
+
+            @Override
+            public void deleteByConversationId(String conversationId) {
+                jdbcRepository.deleteByConversationId(conversationId);
+            }
+        };
+        WriteBehindChatMemoryRepository racing = new WriteBehindChatMemoryRepository(slowDatabase, jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource())),
+                new H2ChatMemoryRepositoryDialect(), new SimpleMeterRegistry(), 100, Duration.ofHours(1), 2);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            // A reader (eg: the summary worker) loads the old rows while the next turn is saved
+            Future<?> reader = executor.submit(() -> racing.findByConversationId("a"));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<?> turn = executor.submit(() -> racing.saveAll("a",
+                    List.of(new UserMessage("stored"), new UserMessage("next"), new AssistantMessage("answer"))));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (racing.findByConversationId("a").size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            saved.countDown();
+            reader.get(5, TimeUnit.SECONDS);
+            turn.get(5, TimeUnit.SECONDS);
+
+            racing.flush();
+
+            assertThat(racing.findByConversationId("a")).extracting(Message::getText)
+                    .containsExactly("stored", "next", "answer");
+        } finally {
+            executor.shutdownNow();
+            racing.destroy();
+        }
+    }
+}
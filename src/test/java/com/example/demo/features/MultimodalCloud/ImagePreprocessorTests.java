@@ -0,0 +1,105 @@
+package com.example.demo.features.MultimodalCloud;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class ImagePreprocessorTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor(registry, DataSize.ofMegabytes(20), 1024,
+            DataSize.ofKilobytes(200), DataSize.ofMegabytes(8));
+
+    /** A noisy PNG, which compresses badly, like a photo or a busy screenshot. */
+    private static MockMultipartFile png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("file", "screen.png", "image/png", out.toByteArray());
+    }
+
+    private ImagePreprocessor.PreparedImage prepare(MockMultipartFile file) throws IOException {
+        return preprocessor.prepare(file, file.getSize(), file.getContentType());
+    }
+
+    @Test
+    void largeImagesAreScaledAndReEncodedWithinTheByteBudget() throws IOException {
+        MockMultipartFile upload = png(3000, 2000);
+
+        ImagePreprocessor.PreparedImage image = prepare(upload);
+
+        assertThat(image.mimeType()).isEqualTo(MimeTypeUtils.IMAGE_JPEG);
+        assertThat(image.bytesIn()).isEqualTo(upload.getSize());
+        assertThat(image.bytesOut()).isLessThanOrEqualTo(200 * 1024);
+        assertThat(Math.max(image.width(), image.height())).isLessThanOrEqualTo(1024);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image.data()));
+        assertThat(decoded.getWidth()).isEqualTo(image.width());
+        assertThat((double) decoded.getWidth() / decoded.getHeight()).isCloseTo(1.5, offset(0.02));
+        assertThat(registry.get("ai.vision.bytes").tag("direction", "out").summary().max()).isEqualTo(image.bytesOut());
+    }
+
+    @Test
+    void smallImagesPassThroughUntouched() throws IOException {
+        MockMultipartFile upload = png(64, 48);
+
+        ImagePreprocessor.PreparedImage image = prepare(upload);
+
+        assertThat(image.mimeType()).isEqualTo(MimeTypeUtils.IMAGE_PNG);
+        assertThat(image.data()).isEqualTo(upload.getBytes());
+        assertThat(image.width()).isEqualTo(64);
+    }
+
+    @Test
+    void repeatedUploadIsServedFromTheCache() throws IOException {
+        MockMultipartFile upload = png(1500, 1500);
+
+        ImagePreprocessor.PreparedImage first = prepare(upload);
+        ImagePreprocessor.PreparedImage second = prepare(upload);
+
+        assertThat(first.cached()).isFalse();
+        assertThat(second.cached()).isTrue();
+        assertThat(second.data()).isEqualTo(first.data());
+        assertThat(registry.get("ai.vision.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void uploadsOverTheCapAreRejectedEvenWhenTheDeclaredSizeLies() {
+        ImagePreprocessor small = new ImagePreprocessor(registry, DataSize.ofKilobytes(1), 1024,
+                DataSize.ofKilobytes(200), DataSize.ofMegabytes(8));
+        MockMultipartFile upload = new MockMultipartFile("file", "big.png", "image/png", new byte[4096]);
+
+        assertThatThrownBy(() -> small.prepare(upload, 10, upload.getContentType()))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+    }
+
+    @Test
+    void unreadableLargeUploadsAreRejected() {
+        MockMultipartFile upload = new MockMultipartFile("file", "notes.bin", "application/octet-stream", new byte[300 * 1024]);
+
+        assertThatThrownBy(() -> prepare(upload))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.features.agent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.StaticToolCallbackResolver;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelToolCallingManagerTests {
+
+    /** Tools whose latency and call counts the tests control. */
+    static class MonitoringTools {
+        final AtomicInteger diskCalls = new AtomicInteger();
+
+        @Tool(description = "CPU usage")
+        public String cpu() throws InterruptedException {
+            Thread.sleep(300);
+            return "cpu 12%";
+        }
+
+        @Tool(description = "Network usage")
+        public String network() throws InterruptedException {
+            Thread.sleep(300);
+            return "net 3 MB/s";
+        }
+
+        @ToolPolicy(cacheTtl = "1m")
+        @Tool(description = "Disk usage of a mount point")
+        public String disk(String mount) {
+            diskCalls.incrementAndGet();
+            return mount + " 40% used";
+        }
+
+        @ToolPolicy(timeout = "100ms")
+        @Tool(description = "A probe that hangs")
+        public String hanging() throws InterruptedException {
+            Thread.sleep(5000);
+            return "never";
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ParallelToolCallingManager manager = new ParallelToolCallingManager(
+            new StaticToolCallbackResolver(List.of()), DefaultToolExecutionExceptionProcessor.builder().build(),
+            registry, Duration.ofSeconds(5), 100);
+    private final MonitoringTools tools = new MonitoringTools();
+    private final Prompt prompt = new Prompt(List.of(new UserMessage("How is the machine?")),
+            ToolCallingChatOptions.builder().toolCallbacks(manager.toolCallbacks(tools)).build());
+
+    @AfterEach
+    void tearDown() {
+        manager.destroy();
+    }
+
+    private static ChatResponse toolCalls(AssistantMessage.ToolCall... calls) {
+        return new ChatResponse(List.of(new Generation(AssistantMessage.builder().content("").toolCalls(List.of(calls)).build())));
+    }
+
+    private static AssistantMessage.ToolCall call(String id, String name, String arguments) {
+        return new AssistantMessage.ToolCall(id, "function", name, arguments);
+    }
+
+    private static List<ToolResponseMessage.ToolResponse> responses(ToolExecutionResult result) {
+        List<Message> history = result.conversationHistory();
+        return ((ToolResponseMessage) history.get(history.size() - 1)).getResponses();
+    }
+
+    @Test
+    void callsOfOneTurnRunConcurrentlyAndAnswerInRequestOrder() {
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt,
+                toolCalls(call("1", "cpu", "{}"), call("2", "network", "{}")));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(elapsed).isLessThan(Duration.ofMillis(550));
+        assertThat(responses(result)).extracting(ToolResponseMessage.ToolResponse::id).containsExactly("1", "2");
+        assertThat(responses(result).get(0).responseData()).contains("cpu 12%");
+        assertThat(result.conversationHistory()).hasSize(3);
+        assertThat(registry.get("ai.agent.tool.latency").tag("tool", "network").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void idempotentToolResultsAreCachedPerArguments() {
+        manager.executeToolCalls(prompt, toolCalls(call("1", "disk", "{\"mount\":\"/\"}")));
+        ToolExecutionResult again = manager.executeToolCalls(prompt, toolCalls(
+                call("2", "disk", "{\"mount\":\"/\"}"), call("3", "disk", "{\"mount\":\"/data\"}")));
+
+        assertThat(responses(again)).extracting(ToolResponseMessage.ToolResponse::responseData)
+                .containsExactly("\"/ 40% used\"", "\"/data 40% used\"");
+        assertThat(tools.diskCalls).hasValue(2);
+        assertThat(registry.get("ai.agent.tool.cache").tag("tool", "disk").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(registry.get("ai.agent.tool.cache").tag("tool", "disk").tag("result", "miss").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void slowToolIsReportedAfterItsTimeoutWithoutHoldingUpTheOthers() {
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt,
+                toolCalls(call("1", "hanging", "{}"), call("2", "cpu", "{}")));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(2));
+        assertThat(responses(result).get(0).responseData()).contains("did not answer within 100 ms");
+        assertThat(responses(result).get(1).responseData()).contains("cpu 12%");
+        assertThat(registry.get("ai.agent.tool.timeouts").tag("tool", "hanging").counter().count()).isEqualTo(1);
+    }
+}
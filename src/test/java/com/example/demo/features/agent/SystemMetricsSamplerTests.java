@@ -0,0 +1,39 @@
+package com.example.demo.features.agent;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SystemMetricsSamplerTests {
+
+    @Test
+    void publishesSnapshotImmediatelyAndBoundsTheWindow() {
+        SystemMetricsSampler sampler = new SystemMetricsSampler(4);
+        SystemSnapshot first = sampler.latest();
+
+        assertThat(first).isNotNull();
+        assertThat(first.windowSamples()).isEqualTo(1);
+        assertThat(first.totalMemoryBytes()).isPositive();
+
+        for (int i = 0; i < 10; i++) {
+            sampler.sample();
+        }
+        SystemSnapshot latest = sampler.latest();
+        assertThat(latest).isNotSameAs(first);
+        assertThat(latest.windowSamples()).isEqualTo(4);
+        assertThat(latest.cpuMax()).isGreaterThanOrEqualTo(Math.max(0, latest.cpuAverage()));
+    }
+
+    @Test
+    void toolFormatsLatestSnapshotWithoutBlocking() {
+        SystemMetricsSampler sampler = new SystemMetricsSampler(60);
+        sampler.sample();
+        SystemInfoTool tool = new SystemInfoTool(sampler);
+
+        long start = System.nanoTime();
+        String status = tool.getSystemStatus();
+
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(100);
+        assertThat(status).startsWith("Current System Health: CPU Usage is :").contains("Free RAM is :");
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.features.cache;
+
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResponseCacheAdvisorTests {
+
+    /** Answers "answer N" where N counts the calls that reached the model. */
+    static class CountingChatModel implements ChatModel {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            return response("answer " + calls.incrementAndGet());
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            int n = calls.incrementAndGet();
+            return Flux.just(response("answer "), response(String.valueOf(n)));
+        }
+
+        private static ChatResponse response(String text) {
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+        }
+    }
+
+    private final CountingChatModel model = new CountingChatModel();
+
+    private ChatClient client(boolean semantic) {
+        ResponseCache cache = new ResponseCache(new FakeEmbeddingModel(64), new SimpleMeterRegistry(),
+                true, 100, Duration.ofMinutes(1), semantic, 0.9);
+        return ChatClient.builder(model).defaultSystem("support agent").defaultAdvisors(cache.advisor("test")).build();
+    }
+
+    @Test
+    void repeatedQuestionIsServedFromCache() {
+        ChatClient client = client(false);
+
+        assertThat(client.prompt().user("how do I reset my password?").call().content()).isEqualTo("answer 1");
+        assertThat(client.prompt().user("how do I reset my password?").call().content()).isEqualTo("answer 1");
+        assertThat(client.prompt().user("where is my invoice?").call().content()).isEqualTo("answer 2");
+        assertThat(model.calls).hasValue(2);
+    }
+
+    @Test
+    void neverSharesAnswersAcrossConversations() {
+        ChatClient client = client(false);
+
+        String first = client.prompt().user("hello").advisors(a -> a.param(ChatMemory.CONVERSATION_ID, "alice")).call().content();
+        String second = client.prompt().user("hello").advisors(a -> a.param(ChatMemory.CONVERSATION_ID, "bob")).call().content();
+
+        assertThat(first).isNotEqualTo(second);
+        assertThat(model.calls).hasValue(2);
+    }
+
+    @Test
+    void streamedAnswerIsCachedAndReplayedOnBothPaths() {
+        ChatClient client = client(false);
+
+        String streamed = client.prompt().user("status of order 42").stream().content().collect(Collectors.joining()).block();
+        String replayed = client.prompt().user("status of order 42").stream().content().collect(Collectors.joining()).block();
+        String called = client.prompt().user("status of order 42").call().content();
+
+        assertThat(streamed).isEqualTo("answer 1");
+        assertThat(replayed).isEqualTo("answer 1");
+        assertThat(called).isEqualTo("answer 1");
+        assertThat(model.calls).hasValue(1);
+    }
+
+    @Test
+    void semanticModeMatchesNearIdenticalQuestions() {
+        ChatClient client = client(true);
+
+        client.prompt().user("how do I reset my password").call().content();
+        String similar = client.prompt().user("How do I reset my password?").call().content();
+
+        assertThat(similar).isEqualTo("answer 1");
+        assertThat(model.calls).hasValue(1);
+    }
+}
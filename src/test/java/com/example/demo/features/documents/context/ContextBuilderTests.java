@@ -0,0 +1,114 @@
+package com.example.demo.features.documents.context;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.content.MediaContent;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextBuilderTests {
+
+    /** One token per whitespace-separated word, counting every call. */
+    static class WordCountEstimator implements TokenCountEstimator {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public int estimate(String text) {
+            calls.incrementAndGet();
+            return text.isBlank() ? 1 : text.trim().split("\\s+").length;
+        }
+
+        @Override
+        public int estimate(MediaContent content) {
+            return estimate(content.getText());
+        }
+
+        @Override
+        public int estimate(Iterable<MediaContent> messages) {
+            int total = 0;
+            for (MediaContent message : messages) {
+                total += estimate(message);
+            }
+            return total;
+        }
+    }
+
+    private final WordCountEstimator estimator = new WordCountEstimator();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private ContextBuilder builder(int budget) {
+        return new ContextBuilder(estimator, registry, Map.of("small", budget), 10_000, 0.7, 0.8, 100);
+    }
+
+    private static Document chunk(String id, String text, double score) {
+        return Document.builder().id(id).text(text).score(score).build();
+    }
+
+    /** {@code count} distinct words starting at {@code from}, eg: "w3 w4 w5". */
+    private static String words(int from, int count) {
+        return IntStream.range(from, from + count).mapToObj(i -> "w" + i).collect(Collectors.joining(" "));
+    }
+
+    @Test
+    void packsBestChunksIntoBudgetAndSkipsOnesThatDoNotFit() {
+        ContextBuilder builder = builder(60);
+
+        PackedContext context = builder.build("small", "question here", List.of(
+                chunk("a", words(0, 30), 0.9),
+                chunk("b", words(100, 40), 0.8),
+                chunk("c", words(200, 20), 0.7)));
+
+        // 60 - 2 question tokens = 58: "a" (30) fits, "b" (40) does not, "c" (20 + separator) does
+        assertThat(context.budget()).isEqualTo(58);
+        assertThat(context.documents()).extracting(Document::getId).containsExactly("a", "c");
+        assertThat(context.tokens()).isLessThanOrEqualTo(58);
+        assertThat(context.overBudget()).isEqualTo(1);
+        assertThat(registry.get("rag.context.chunks").tag("outcome", "over_budget").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void dropsNearDuplicatesAndTrimsSplitterOverlap() {
+        ContextBuilder builder = builder(1000);
+
+        PackedContext context = builder.build("small", "q", List.of(
+                chunk("a", words(0, 50), 0.9),
+                chunk("copy", words(0, 45) + " extra", 0.85),
+                chunk("next", words(40, 50), 0.8)));
+
+        assertThat(context.documents()).extracting(Document::getId).containsExactly("a", "next");
+        assertThat(context.duplicates()).isEqualTo(1);
+        // w40..w49 is already in "a", so only w50..w89 of "next" goes into the prompt
+        assertThat(context.text()).isEqualTo(words(0, 50) + "\n\n" + words(50, 40));
+    }
+
+    @Test
+    void tokenCountsAreCachedPerChunk() {
+        ContextBuilder builder = builder(1000);
+        List<Document> docs = List.of(chunk("a", words(0, 10), 0.9), chunk("b", words(100, 10), 0.8));
+
+        builder.build("small", "q", docs);
+        int afterFirst = estimator.calls.get();
+        builder.build("small", "q", docs);
+
+        // only the question is tokenized again
+        assertThat(estimator.calls.get() - afterFirst).isEqualTo(1);
+        assertThat(registry.get("rag.context.token.cache").tag("result", "hit").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void unknownModelUsesDefaultBudget() {
+        assertThat(builder(100).budgetFor("small")).isEqualTo(100);
+        assertThat(builder(100).budgetFor("other")).isEqualTo(10_000);
+        assertThat(ContextBuilder.parseBudgets("granite4:3b=2048, llama3.2:1b=1024"))
+                .containsEntry("granite4:3b", 2048)
+                .containsEntry("llama3.2:1b", 1024);
+    }
+}
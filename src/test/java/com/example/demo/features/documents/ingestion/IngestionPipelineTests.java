@@ -0,0 +1,113 @@
+package com.example.demo.features.documents.ingestion;
+
+import com.example.demo.features.documents.store.MappedVectorStore;
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionPipelineTests {
+
+    @TempDir
+    Path directory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void ingestsFileInBatchesAndReportsProgress() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(32);
+        try (MappedVectorStore store = MappedVectorStore.builder(embeddingModel).directory(directory.resolve("store")).build()) {
+            IngestionPipeline pipeline = new IngestionPipeline(embeddingModel, store, meterRegistry, "test-embed", 4, 8, 1);
+            try {
+                IngestionStatus status = await(pipeline, pipeline.submit("manual.txt", sampleFile()).id());
+
+                assertThat(status.state()).isEqualTo(IngestionJob.State.COMPLETED);
+                assertThat(status.chunksSplit()).isGreaterThan(4);
+                assertThat(status.chunksEmbedded()).isEqualTo(status.chunksSplit());
+                assertThat(status.chunksStored()).isEqualTo(status.chunksSplit());
+                assertThat(store.size()).isEqualTo(status.chunksStored());
+                // one model call per batch of at most 4 chunks, not one per chunk
+                assertThat(embeddingModel.calls()).isLessThan(status.chunksSplit());
+            } finally {
+                pipeline.destroy();
+            }
+        }
+    }
+
+    @Test
+    void reuploadedChunksSkipTheModelAndAreNotStoredTwice() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(32);
+        try (MappedVectorStore store = MappedVectorStore.builder(embeddingModel).directory(directory.resolve("store")).build()) {
+            IngestionPipeline pipeline = new IngestionPipeline(embeddingModel, store, meterRegistry, "test-embed", 4, 8, 1);
+            try {
+                IngestionStatus first = await(pipeline, pipeline.submit("manual.txt", sampleFile()).id());
+                int callsAfterFirst = embeddingModel.calls();
+
+                IngestionStatus second = await(pipeline, pipeline.submit("manual.txt", sampleFile()).id());
+
+                assertThat(second.state()).isEqualTo(IngestionJob.State.COMPLETED);
+                assertThat(second.chunksDeduplicated()).isEqualTo(second.chunksSplit());
+                assertThat(second.chunksStored()).isZero();
+                assertThat(embeddingModel.calls()).isEqualTo(callsAfterFirst);
+                assertThat(store.size()).isEqualTo(first.chunksStored());
+                assertThat(meterRegistry.counter("kb.ingestion.embedding.cache", "result", "hit").count())
+                        .isEqualTo(second.chunksSplit());
+            } finally {
+                pipeline.destroy();
+            }
+        }
+    }
+
+    @Test
+    void embeddingFailureFailsTheJobAndDeletesTheUpload() throws Exception {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(32) {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                throw new IllegalStateException("model offline");
+            }
+        };
+        try (MappedVectorStore store = MappedVectorStore.builder(embeddingModel).directory(directory.resolve("store")).build()) {
+            IngestionPipeline pipeline = new IngestionPipeline(embeddingModel, store, meterRegistry, "test-embed", 4, 8, 1);
+            try {
+                Path upload = sampleFile();
+                IngestionStatus status = await(pipeline, pipeline.submit("manual.txt", upload).id());
+
+                assertThat(status.state()).isEqualTo(IngestionJob.State.FAILED);
+                assertThat(status.error()).contains("model offline");
+                assertThat(status.chunksStored()).isZero();
+                assertThat(upload).doesNotExist();
+            } finally {
+                pipeline.destroy();
+            }
+        }
+    }
+
+    private Path sampleFile() throws Exception {
+        // ~40 paragraphs of distinct text, enough for several 800-token chunks
+        String text = IntStream.range(0, 40)
+                .mapToObj(i -> "Section " + i + ". " + "The printer reports error code E" + i + " when the tray is open. ".repeat(30))
+                .collect(Collectors.joining("\n\n"));
+        return Files.writeString(directory.resolve("upload.txt"), text);
+    }
+
+    private static IngestionStatus await(IngestionPipeline pipeline, String jobId) throws InterruptedException {
+        for (int i = 0; i < 300; i++) {
+            IngestionStatus status = pipeline.status(jobId).orElseThrow();
+            if (status.state() == IngestionJob.State.COMPLETED || status.state() == IngestionJob.State.FAILED) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Ingestion job did not finish: " + pipeline.status(jobId));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.features.documents.retrieval;
+
+import com.example.demo.features.documents.store.MappedVectorStore;
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HybridRetrieverTests {
+
+    @TempDir
+    Path directory;
+
+    private final FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(64);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MappedVectorStore store;
+    private HybridRetriever retriever;
+
+    @BeforeEach
+    void setUp() {
+        store = MappedVectorStore.builder(embeddingModel).directory(directory).build();
+        store.add(List.of(
+                new Document("fuser", "Printer fault PN-7781 means the fuser unit overheated and needs cooling", Map.of()),
+                new Document("tray", "Printer fault PN-7782 means the paper tray is empty", Map.of()),
+                new Document("reset", "How to reset the printer after any fault: hold the power button", Map.of()),
+                new Document("bananas", "bananas are yellow and grow in bunches", Map.of())));
+        retriever = new HybridRetriever(store, registry, 60, 4);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    void keywordQueryTakesLexicalFastPathWithoutEmbedding() {
+        int callsBefore = embeddingModel.calls();
+
+        List<Document> hits = retriever.retrieve("PN-7782", 3, 0.4);
+
+        assertThat(hits.get(0).getId()).isEqualTo("tray");
+        assertThat(hits.get(0).getScore()).isEqualTo(1.0);
+        assertThat(embeddingModel.calls()).isEqualTo(callsBefore);
+        assertThat(registry.get("rag.retrieval").tag("path", "lexical").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void questionsFuseVectorAndKeywordRankings() {
+        int callsBefore = embeddingModel.calls();
+
+        List<Document> hits = retriever.retrieve("what should I do when the printer shows PN-7781 overheated", 2, 0.4);
+
+        assertThat(hits).extracting(Document::getId).first().isEqualTo("fuser");
+        assertThat(hits).hasSize(2).allSatisfy(hit -> assertThat(hit.getScore()).isBetween(0.0, 1.0));
+        assertThat(embeddingModel.calls()).isEqualTo(callsBefore + 1);
+        assertThat(registry.get("rag.retrieval").tag("path", "hybrid").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void reciprocalRankFusionRewardsAgreement() {
+        Document a = new Document("a", "a", Map.of());
+        Document b = new Document("b", "b", Map.of());
+        Document c = new Document("c", "c", Map.of());
+
+        List<Document> fused = retriever.fuse(List.of(List.of(a, b), List.of(b, c)), 3);
+
+        assertThat(fused).extracting(Document::getId).containsExactly("b", "a", "c");
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.features.documents.store;
+
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HnswIndexTests {
+
+    @TempDir
+    Path directory;
+
+    private MappedVectorStore open() {
+        return MappedVectorStore.builder(new FakeEmbeddingModel(32))
+                .directory(directory)
+                .hnsw(16, 100, 64)
+                .build();
+    }
+
+    private static void addRandom(MappedVectorStore store, int count, int dims, Random random) {
+        List<Document> documents = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[dims];
+            for (int d = 0; d < dims; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            documents.add(new Document("doc-" + store.size() + "-" + i, "chunk " + i, Map.of()));
+            embeddings.add(vector);
+        }
+        store.addEmbedded(documents, embeddings);
+    }
+
+    @Test
+    void incrementalInsertsKeepHighRecall() throws Exception {
+        Random random = new Random(1);
+        try (MappedVectorStore store = open()) {
+            // Several small batches, like repeated processPDf uploads
+            for (int batch = 0; batch < 5; batch++) {
+                addRandom(store, 600, 32, random);
+            }
+            List<MappedVectorStore.RecallPoint> report = store.recallReport(100, 3, new int[]{16, 128});
+
+            assertThat(report).hasSize(2);
+            assertThat(report.get(1).recall()).isGreaterThan(0.95);
+            assertThat(report.get(1).recall()).isGreaterThanOrEqualTo(report.get(0).recall());
+        }
+    }
+
+    @Test
+    void recallReportRejectsEmptySamples() throws Exception {
+        try (MappedVectorStore store = open()) {
+            addRandom(store, 10, 32, new Random(3));
+
+            assertThatThrownBy(() -> store.recallReport(0, 3, new int[]{16})).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> store.recallReport(-1, 3, new int[]{16})).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> store.recallReport(10, 0, new int[]{16})).isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void graphIsReusedAndExtendedAfterReopen() throws Exception {
+        Random random = new Random(2);
+        try (MappedVectorStore store = open()) {
+            addRandom(store, 500, 32, random);
+        }
+        try (MappedVectorStore store = open()) {
+            addRandom(store, 500, 32, random);
+            assertThat(store.size()).isEqualTo(1000);
+            assertThat(store.recallReport(50, 3, new int[]{128}).get(0).recall()).isGreaterThan(0.95);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.demo.features.documents.store;
+
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedVectorStoreTests {
+
+    @TempDir
+    Path directory;
+
+    private final FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(64);
+
+    private MappedVectorStore open() {
+        return MappedVectorStore.builder(embeddingModel).directory(directory).build();
+    }
+
+    @Test
+    void findsClosestDocumentAndSurvivesReopen() throws Exception {
+        try (MappedVectorStore store = open()) {
+            store.add(List.of(
+                    new Document("a", "the printer shows error code E42", Map.of("source", "manual.pdf")),
+                    new Document("b", "reset your password from the login page", Map.of()),
+                    new Document("c", "bananas are yellow", Map.of())));
+        }
+
+        try (MappedVectorStore store = open()) {
+            List<Document> hits = store.similaritySearch(SearchRequest.builder()
+                    .query("printer error code").topK(1).similarityThreshold(0.4).build());
+
+            assertThat(hits).extracting(Document::getId).containsExactly("a");
+            assertThat(hits.get(0).getText()).isEqualTo("the printer shows error code E42");
+            assertThat(hits.get(0).getMetadata()).containsEntry("source", "manual.pdf").containsKey("distance");
+            assertThat(store.size()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void deletedAndReplacedRowsStayHiddenAfterReopen() throws Exception {
+        try (MappedVectorStore store = open()) {
+            store.add(List.of(new Document("a", "printer error", Map.of()), new Document("b", "printer error", Map.of())));
+            store.delete(List.of("a"));
+            store.add(List.of(new Document("b", "password reset", Map.of())));
+        }
+
+        try (MappedVectorStore store = open()) {
+            assertThat(store.size()).isEqualTo(1);
+            assertThat(store.similaritySearch(SearchRequest.builder().query("printer error").topK(3).similarityThreshold(0.4).build()))
+                    .isEmpty();
+            assertThat(store.similaritySearch(SearchRequest.builder().query("password reset").topK(3).build()))
+                    .extracting(Document::getId).containsExactly("b");
+        }
+    }
+
+    @Test
+    void logRecordsBeyondTheVectorFileAreCutOffSoTheirRowsCanBeReused() throws Exception {
+        try (MappedVectorStore store = open()) {
+            store.add(List.of(new Document("a", "printer error", Map.of()), new Document("b", "password reset", Map.of())));
+        }
+        // Crash after the log record of row 2 was written, but before the vector file's header
+        try (MetadataLog log = new MetadataLog(directory.resolve("metadata.log"))) {
+            log.appendAdd(2, "lost", "bananas are yellow", "{}");
+        }
+
+        try (MappedVectorStore store = open()) {
+            assertThat(store.size()).isEqualTo(2);
+            store.add(List.of(new Document("c", "toner cartridge jam", Map.of())));
+        }
+
+        try (MappedVectorStore store = open()) {
+            assertThat(store.size()).isEqualTo(3);
+            assertThat(store.keywordSearch("bananas", 3)).isEmpty();
+            assertThat(store.keywordSearch("toner", 3)).extracting(hit -> hit.document().getId()).containsExactly("c");
+        }
+    }
+
+    @Test
+    void keywordSearchFindsExactIdentifiersAfterReopenAndSkipsDeletedRows() throws Exception {
+        try (MappedVectorStore store = open()) {
+            store.add(List.of(
+                    new Document("a", "Fault ERR-4012 means the fuser is too hot", Map.of("source", "manual.pdf")),
+                    new Document("b", "Fault ERR-4013 means the tray is empty", Map.of()),
+                    new Document("c", "error codes are listed in the appendix", Map.of())));
+            store.delete(List.of("b"));
+        }
+
+        try (MappedVectorStore store = open()) {
+            int callsBefore = embeddingModel.calls();
+            List<MappedVectorStore.KeywordHit> hits = store.keywordSearch("err-4012", 3);
+
+            assertThat(hits).extracting(hit -> hit.document().getId()).containsExactly("a");
+            assertThat(hits.get(0).matchesAllTerms()).isTrue();
+            assertThat(hits.get(0).document().getMetadata()).containsEntry("source", "manual.pdf");
+            // "err" still matches "a", but the deleted row is gone
+            assertThat(store.keywordSearch("ERR-4013", 3)).extracting(hit -> hit.document().getId()).containsExactly("a");
+            assertThat(embeddingModel.calls()).isEqualTo(callsBefore);
+        }
+    }
+
+    @Test
+    void keywordSearchRanksAcrossManyMatchingRows() throws Exception {
+        try (MappedVectorStore store = open()) {
+            List<Document> documents = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                documents.add(new Document("d" + i, "toner cartridge note " + i, Map.of()));
+            }
+            documents.add(new Document("best", "toner cartridge toner cartridge jam", Map.of()));
+            store.add(documents);
+
+            List<MappedVectorStore.KeywordHit> hits = store.keywordSearch("toner cartridge jam", 5);
+
+            assertThat(hits).hasSize(5);
+            assertThat(hits.get(0).document().getId()).isEqualTo("best");
+            assertThat(hits.get(0).matchesAllTerms()).isTrue();
+            assertThat(hits.get(1).matchesAllTerms()).isFalse();
+        }
+    }
+}
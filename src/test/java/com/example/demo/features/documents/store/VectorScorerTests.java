@@ -0,0 +1,82 @@
+package com.example.demo.features.documents.store;
+
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorScorerTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void simdAndScalarKernelsAgree() {
+        VectorScorer scalar = new ScalarVectorScorer();
+        VectorScorer best = VectorScorer.best();
+        // Surefire adds jdk.incubator.vector, so this exercises the SIMD path
+        assertThat(best.name()).startsWith("simd");
+
+        Random random = new Random(5);
+        for (int dims : new int[]{1, 7, 64, 383, 768}) {
+            float[] a = new float[dims];
+            float[] b = new float[dims];
+            byte[] codesA = new byte[dims + 3];
+            byte[] codesB = new byte[dims];
+            for (int i = 0; i < dims; i++) {
+                a[i] = (float) random.nextGaussian();
+                b[i] = (float) random.nextGaussian();
+            }
+            QuantizedRows.quantize(a, codesA, 3);
+            QuantizedRows.quantize(b, codesB, 0);
+
+            assertThat(best.dot(a, b, dims)).isCloseTo(scalar.dot(a, b, dims), within(1e-3f * dims));
+            assertThat(best.dot(codesA, 3, codesB, 0, dims)).isEqualTo(scalar.dot(codesA, 3, codesB, 0, dims));
+        }
+    }
+
+    @Test
+    void quantizedStoreReturnsSameTopHitsAfterRescoring() throws Exception {
+        FakeEmbeddingModel model = new FakeEmbeddingModel(128);
+        Random random = new Random(9);
+        List<Document> documents = new ArrayList<>();
+        List<float[]> embeddings = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < 30; w++) {
+                text.append("w").append(random.nextInt(400)).append(' ');
+            }
+            documents.add(new Document("doc-" + i, text.toString(), Map.of()));
+            embeddings.add(model.vectorFor(text.toString()));
+        }
+
+        try (MappedVectorStore exact = MappedVectorStore.builder(model).directory(directory.resolve("f32")).build();
+             MappedVectorStore int8 = MappedVectorStore.builder(model).directory(directory.resolve("i8")).quantized(true).build()) {
+            exact.addEmbedded(documents, embeddings);
+            int8.addEmbedded(documents, embeddings);
+
+            for (int q = 0; q < 20; q++) {
+                SearchRequest request = SearchRequest.builder().query(documents.get(q * 7).getText()).topK(3).build();
+                List<Document> expected = exact.similaritySearch(request);
+                List<Document> actual = int8.similaritySearch(request);
+
+                // Same scores as the exact scan (ids may swap on ties): the shortlist caught every
+                // true top hit and the scores come from float32 rescoring, not from the int8 codes
+                assertThat(actual).hasSameSizeAs(expected);
+                for (int i = 0; i < expected.size(); i++) {
+                    assertThat(actual.get(i).getScore()).isCloseTo(expected.get(i).getScore(), within(1e-6));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.demo.features.embedding;
+
+import com.example.demo.testsupport.FakeEmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddingServiceTests {
+
+    /** Blocks every call until {@link #release} opens, so concurrent callers pile up. */
+    static class GatedEmbeddingModel extends FakeEmbeddingModel {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        GatedEmbeddingModel() {
+            super(16);
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.call(request);
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private EmbeddingService service;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        service.destroy();
+    }
+
+    private double cache(String result) {
+        return registry.get("embedding.cache").tag("result", result).counter().count();
+    }
+
+    @Test
+    void repeatedQueryIsServedFromCacheByNormalizedText() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel(16);
+        service = new EmbeddingService(model, registry, 100, Duration.ZERO, 32);
+
+        float[] first = service.embedQuery("printer  error\ncode");
+        float[] second = service.embedQuery(" printer error code ");
+
+        assertThat(second).containsExactly(first);
+        assertThat(model.calls()).isEqualTo(1);
+        assertThat(cache("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentIdenticalQueriesShareOneCall() throws Exception {
+        GatedEmbeddingModel model = new GatedEmbeddingModel();
+        service = new EmbeddingService(model, registry, 100, Duration.ZERO, 32);
+
+        List<Future<float[]>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(executor.submit(() -> service.embedQuery("same question")));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache("coalesced") < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        model.release.countDown();
+
+        for (Future<float[]> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).containsExactly(model.vectorFor("same question"));
+        }
+        assertThat(model.calls()).isEqualTo(1);
+        assertThat(cache("coalesced")).isEqualTo(4);
+    }
+
+    @Test
+    void distinctConcurrentQueriesAreMicroBatched() throws Exception {
+        FakeEmbeddingModel model = new FakeEmbeddingModel(16);
+        service = new EmbeddingService(model, registry, 100, Duration.ofMillis(200), 8);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<float[]>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String question = "question number " + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return service.embedQuery(question);
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < 8; i++) {
+            assertThat(results.get(i).get(5, TimeUnit.SECONDS)).containsExactly(model.vectorFor("question number " + i));
+        }
+        assertThat(model.calls()).isLessThan(8);
+        assertThat(registry.get("embedding.batch.size").summary().max()).isGreaterThan(1);
+    }
+
+    @Test
+    void bulkRequestsBypassTheQueryCache() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel(16);
+        service = new EmbeddingService(model, registry, 100, Duration.ZERO, 32);
+
+        service.asEmbeddingModel().embed(List.of("first chunk", "second chunk"));
+        service.asEmbeddingModel().embed("first chunk");
+
+        assertThat(model.calls()).isEqualTo(2);
+        assertThat(registry.get("embedding.calls").tag("type", "bulk").counter().count()).isEqualTo(1);
+        assertThat(registry.get("embedding.calls").tag("type", "query").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void aSingleChunkBatchIsNotTreatedAsAQuery() {
+        FakeEmbeddingModel model = new FakeEmbeddingModel(16);
+        service = new EmbeddingService(model, registry, 100, Duration.ZERO, 32);
+
+        service.asEmbeddingModel().embed(List.of("only  chunk"));
+        service.asEmbeddingModel().embed(List.of("only  chunk"));
+        service.asEmbeddingModel().embed("only chunk");
+
+        assertThat(model.calls()).isEqualTo(3);
+        assertThat(registry.get("embedding.calls").tag("type", "bulk").counter().count()).isEqualTo(2);
+        assertThat(registry.get("embedding.calls").tag("type", "query").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.demo.features.limits;
+
+import com.example.demo.features.limits.WeightedFairQueue.ClassPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelConcurrencyLimiterTests {
+
+    /** Stand-in for Ollama whose generation time the test controls. */
+    static class SlowChatModel implements ChatModel {
+        volatile Duration latency = Duration.ZERO;
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("ok"))));
+        }
+    }
+
+    /** Streams "ok" and records which request reached the model. */
+    static class StreamingChatModel implements ChatModel {
+        final List<String> served = new CopyOnWriteArrayList<>();
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return Flux.defer(() -> {
+                served.add(prompt.getUserMessage().getText());
+                return Flux.just(new ChatResponse(List.of(new Generation(new AssistantMessage("ok")))));
+            });
+        }
+    }
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelConcurrencyLimiter limiter = new ModelConcurrencyLimiter(meterRegistry,
+            Map.of("ollama", 1, "gemini", 2), 4, Map.of(
+                    PriorityClass.INTERACTIVE, new ClassPolicy(8, 16, Duration.ofMillis(100)),
+                    PriorityClass.STANDARD, new ClassPolicy(4, 16, Duration.ofMillis(100)),
+                    PriorityClass.BULK, new ClassPolicy(1, 16, Duration.ofMillis(100))));
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private ModelConcurrencyLimiter scheduler(int bulkCapacity, Duration maxWait) {
+        return new ModelConcurrencyLimiter(meterRegistry, Map.of("ollama", 1), 1, Map.of(
+                PriorityClass.INTERACTIVE, new ClassPolicy(8, 16, maxWait),
+                PriorityClass.STANDARD, new ClassPolicy(4, 16, maxWait),
+                PriorityClass.BULK, new ClassPolicy(1, bulkCapacity, maxWait)));
+    }
+
+    private double queued(PriorityClass priority) {
+        return meterRegistry.get("ai.model.queued").tag("model", "ollama").tag("class", priority.tag()).gauge().value();
+    }
+
+    private void awaitQueued(PriorityClass priority, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued(priority) < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(queued(priority)).isEqualTo(count);
+    }
+
+    private static HttpStatus status(Throwable e) {
+        return (HttpStatus) ((ResponseStatusException) e).getStatusCode();
+    }
+
+    @Test
+    void requestsPastTheLimitWaitThenFailWith503() {
+        ModelConcurrencyLimiter.Permit permit = limiter.acquire("ollama");
+
+        assertThat(meterRegistry.get("ai.model.inflight").tag("model", "ollama").gauge().value()).isEqualTo(1);
+        assertThatThrownBy(() -> limiter.acquire("ollama"))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        permit.release();
+        permit.release(); // idempotent: must not hand out a second slot
+        limiter.acquire("ollama");
+        assertThatThrownBy(() -> limiter.acquire("ollama")).isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void modelsHaveIndependentLimits() {
+        limiter.acquire("ollama");
+        limiter.acquire("gemini");
+        limiter.acquire("gemini");
+
+        assertThatThrownBy(() -> limiter.acquire("gemini")).isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void interactiveRequestsOvertakeAQueuedBulkBurst() throws Exception {
+        ModelConcurrencyLimiter scheduler = scheduler(64, Duration.ofSeconds(10));
+        ModelConcurrencyLimiter.Permit running = scheduler.acquire("ollama", PriorityClass.BULK);
+
+        List<PriorityClass> served = new CopyOnWriteArrayList<>();
+        List<Future<?>> requests = new ArrayList<>();
+        for (PriorityClass priority : List.of(PriorityClass.BULK, PriorityClass.INTERACTIVE)) {
+            for (int i = 0; i < 6; i++) {
+                requests.add(executor.submit(() -> {
+                    scheduler.acquire("ollama", priority).release();
+                    served.add(priority);
+                    return null;
+                }));
+            }
+            awaitQueued(priority, 6);
+        }
+        running.release();
+        for (Future<?> request : requests) {
+            request.get(5, TimeUnit.SECONDS);
+        }
+
+        // Weight 8 vs 1: the interactive requests that arrived last are all served first
+        assertThat(served.subList(0, 6)).containsOnly(PriorityClass.INTERACTIVE);
+        assertThat(served.subList(6, 12)).containsOnly(PriorityClass.BULK);
+    }
+
+    @Test
+    void fullClassQueueIsRejectedWith429WithoutBlockingOtherClasses() throws Exception {
+        ModelConcurrencyLimiter scheduler = scheduler(2, Duration.ofSeconds(10));
+        ModelConcurrencyLimiter.Permit running = scheduler.acquire("ollama", PriorityClass.BULK);
+        List<Future<?>> queuedBulk = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            queuedBulk.add(executor.submit(() -> {
+                scheduler.acquire("ollama", PriorityClass.BULK).release();
+                return null;
+            }));
+        }
+        awaitQueued(PriorityClass.BULK, 2);
+
+        assertThatThrownBy(() -> scheduler.acquire("ollama", PriorityClass.BULK))
+                .satisfies(e -> assertThat(status(e)).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+        Future<?> interactive = executor.submit(() -> {
+            scheduler.acquire("ollama", PriorityClass.INTERACTIVE).release();
+            return null;
+        });
+        awaitQueued(PriorityClass.INTERACTIVE, 1);
+
+        running.release();
+        interactive.get(5, TimeUnit.SECONDS);
+        for (Future<?> request : queuedBulk) {
+            request.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(meterRegistry.get("ai.model.rejected").tag("class", "bulk").tag("reason", "queue-full")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void requestsThatCannotMakeTheirDeadlineAreShedRightAway() throws Exception {
+        ModelConcurrencyLimiter scheduler = scheduler(64, Duration.ofMillis(300));
+        SlowChatModel model = new SlowChatModel();
+        ChatClient client = ChatClient.builder(model)
+                .defaultAdvisors(scheduler.advisor("ollama", PriorityClass.INTERACTIVE))
+                .build();
+
+        // Teach the scheduler that a generation takes ~500 ms, then keep the only slot busy
+        model.latency = Duration.ofMillis(500);
+        client.prompt().user("first").call().content();
+        Future<String> running = executor.submit(() -> client.prompt().user("second").call().content());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("ai.model.inflight").tag("model", "ollama").gauge().value() < 1
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client.prompt().user("third").call().content())
+                .satisfies(e -> assertThat(status(e)).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(300));
+        assertThat(meterRegistry.get("ai.model.rejected").tag("reason", "predicted-wait").counter().count()).isEqualTo(1);
+
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+    }
+
+    @Test
+    void aPermitGrantedAfterTheStreamWasCancelledIsReleased() throws Exception {
+        CountDownLatch granted = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        // Holds the granted permit until the subscriber has cancelled, ignoring the interrupt
+        // the cancellation may deliver, so the permit is handed over to a cancelled stream
+        ModelConcurrencyLimiter handover = new ModelConcurrencyLimiter(meterRegistry, Map.of("ollama", 1), 1, Map.of(
+                PriorityClass.INTERACTIVE, new ClassPolicy(8, 16, Duration.ofSeconds(5)),
+                PriorityClass.STANDARD, new ClassPolicy(4, 16, Duration.ofSeconds(5)),
+                PriorityClass.BULK, new ClassPolicy(1, 16, Duration.ofSeconds(5)))) {
+            @Override
+            public Permit acquire(String model, PriorityClass priority) {
+                Permit permit = super.acquire(model, priority);
+                granted.countDown();
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        cancelled.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return permit;
+            }
+        };
+        StreamingChatModel model = new StreamingChatModel();
+        ChatClient client = ChatClient.builder(model)
+                .defaultAdvisors(handover.advisor("ollama", PriorityClass.INTERACTIVE))
+                .build();
+
+        Disposable stream = client.prompt().user("cancelled").stream().content().subscribe();
+        assertThat(granted.await(5, TimeUnit.SECONDS)).isTrue();
+        stream.dispose();
+        cancelled.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(inFlight()).isZero();
+        assertThat(model.served).isEmpty();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("ai.model.inflight").tag("model", "ollama").gauge().value();
+    }
+
+    @Test
+    void interactiveStreamsOvertakeAFullBulkStreamQueue() throws Exception {
+        int bulkStreams = Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE + 4;
+        ModelConcurrencyLimiter scheduler = scheduler(bulkStreams, Duration.ofSeconds(10));
+        StreamingChatModel model = new StreamingChatModel();
+        ChatClient bulk = ChatClient.builder(model).defaultAdvisors(scheduler.advisor("ollama", PriorityClass.BULK)).build();
+        ChatClient interactive = ChatClient.builder(model)
+                .defaultAdvisors(scheduler.advisor("ollama", PriorityClass.INTERACTIVE))
+                .build();
+        ModelConcurrencyLimiter.Permit running = scheduler.acquire("ollama", PriorityClass.BULK);
+
+        List<Disposable> streams = new ArrayList<>();
+        for (int i = 0; i < bulkStreams; i++) {
+            streams.add(bulk.prompt().user("bulk").stream().content().subscribe());
+        }
+        awaitQueued(PriorityClass.BULK, bulkStreams);
+        streams.add(interactive.prompt().user("interactive").stream().content().subscribe());
+        awaitQueued(PriorityClass.INTERACTIVE, 1);
+
+        running.release();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (model.served.size() < bulkStreams + 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(model.served).hasSize(bulkStreams + 1);
+        assertThat(model.served.get(0)).isEqualTo("interactive");
+        streams.forEach(Disposable::dispose);
+        scheduler.destroy();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.features.observability;
+
+import com.example.demo.testsupport.FakeChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiMetricsTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AiMetrics metrics = new AiMetrics(registry);
+
+    private ChatClient client(ChatModel model) {
+        return ChatClient.builder(model).defaultAdvisors(metrics.advisor("support", "ollama")).build();
+    }
+
+    @Test
+    void callRecordsLatencyAndTokenUsageByEndpointAndModel() {
+        client(new FakeChatModel("Restart the printer.")).prompt().user("my printer is offline").call().content();
+
+        assertThat(registry.get("ai.chat.latency").tag("endpoint", "support").tag("model", "ollama")
+                .tag("mode", "call").timer().count()).isEqualTo(1);
+        assertThat(registry.get("ai.chat.tokens").tag("type", "prompt").summary().totalAmount()).isEqualTo(4);
+        assertThat(registry.get("ai.chat.tokens").tag("type", "generation").summary().totalAmount()).isEqualTo(3);
+        assertThat(registry.get("ai.chat.tokens.per.second").summary().count()).isEqualTo(1);
+        assertThat(registry.get("ai.chat.ttft").timer().count()).isZero();
+    }
+
+    @Test
+    void streamRecordsTimeToFirstTokenOnceAndUsageFromTheLastChunk() {
+        List<String> tokens = client(new FakeChatModel("Hold the power button for ten seconds."))
+                .prompt().user("reset").stream().content().collectList().block();
+
+        assertThat(tokens).hasSize(7);
+        assertThat(registry.get("ai.chat.ttft").tag("endpoint", "support").timer().count()).isEqualTo(1);
+        assertThat(registry.get("ai.chat.latency").tag("mode", "stream").timer().count()).isEqualTo(1);
+        assertThat(registry.get("ai.chat.tokens").tag("type", "generation").summary().totalAmount()).isEqualTo(7);
+        assertThat(registry.get("ai.chat.tokens").tag("type", "prompt").summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    void failuresAreCountedUnderTheRequestEndpointOverride() {
+        ChatModel failing = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new IllegalStateException("model unavailable");
+            }
+        };
+
+        assertThatThrownBy(() -> client(failing).prompt().user("what is on this screenshot?")
+                .advisors(a -> a.param(AiMetrics.ENDPOINT, "cloud-vision"))
+                .call().content()).isInstanceOf(IllegalStateException.class);
+
+        assertThat(registry.get("ai.chat.errors").tag("endpoint", "cloud-vision").tag("model", "ollama")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void errorsAndSuccessesOfAModelShareItsSeries() {
+        ChatModel flaky = new ChatModel() {
+            private int calls;
+
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                if (calls++ == 0) {
+                    throw new IllegalStateException("model unavailable");
+                }
+                return new FakeChatModel("ok").call(prompt);
+            }
+        };
+        ChatClient client = client(flaky);
+        ChatOptions granite = ChatOptions.builder().model("granite4:3b").build();
+
+        assertThatThrownBy(() -> client.prompt().options(granite).user("hi").call().content())
+                .isInstanceOf(IllegalStateException.class);
+        client.prompt().options(granite).user("hi").call().content();
+
+        assertThat(registry.get("ai.chat.errors").tag("model", "granite4:3b").counter().count()).isEqualTo(1);
+        assertThat(registry.get("ai.chat.latency").tag("model", "granite4:3b").tag("mode", "call").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.find("ai.chat.latency").tag("model", FakeChatModel.MODEL).timer()).isNull();
+    }
+
+    @Test
+    void chatMemoryLoadsAndStoresAreTimed() {
+        ChatMemory memory = MessageWindowChatMemory.builder()
+                .chatMemoryRepository(metrics.timedChatMemoryRepository(new InMemoryChatMemoryRepository()))
+                .build();
+
+        memory.add("user-1", new UserMessage("hello"));
+        assertThat(memory.get("user-1")).hasSize(1);
+
+        // add() reads the window before writing it back
+        assertThat(registry.get("chat.memory.operation").tag("operation", "load").timer().count()).isEqualTo(2);
+        assertThat(registry.get("chat.memory.operation").tag("operation", "store").timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.demo.features.routing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelRouterTests {
+
+    /** Stub provider: answers with its name after {@code delayMs}, or throws while {@code failing}. */
+    static class StubChatModel implements ChatModel {
+        final String name;
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean failing;
+        volatile long delayMs;
+
+        StubChatModel(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new IllegalStateException("429 quota exceeded");
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(name))));
+        }
+    }
+
+    private final StubChatModel gemini = new StubChatModel("gemini");
+    private final StubChatModel ollama = new StubChatModel("ollama");
+
+    private ModelRouter router(boolean hedging) {
+        return new ModelRouter(new SimpleMeterRegistry(), hedging, Duration.ofMillis(50),
+                10, 3, 0.5, Duration.ofSeconds(10), Duration.ofMillis(200));
+    }
+
+    private ModelRouter.Routed<String> ask(ModelRouter router) {
+        return router.execute(
+                ModelRouter.route("gemini", () -> ChatClient.create(gemini).prompt().user("hi").call().content()),
+                ModelRouter.route("ollama", () -> ChatClient.create(ollama).prompt().user("hi").call().content()));
+    }
+
+    @Test
+    void openCircuitSkipsThePrimaryUntilTheHalfOpenProbeSucceeds() throws Exception {
+        ModelRouter router = router(false);
+        gemini.failing = true;
+
+        for (int i = 0; i < 3; i++) {
+            ModelRouter.Routed<String> answer = ask(router);
+            assertThat(answer.value()).isEqualTo("ollama");
+            assertThat(answer.fellBack()).isTrue();
+        }
+        assertThat(router.status().get("gemini").state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // While open, Gemini is not called at all
+        ask(router);
+        ask(router);
+        assertThat(gemini.calls).hasValue(3);
+
+        // After the open duration one probe goes through and closes the circuit
+        gemini.failing = false;
+        Thread.sleep(250);
+        assertThat(ask(router).value()).isEqualTo("gemini");
+        assertThat(router.status().get("gemini").state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        router.destroy();
+    }
+
+    @Test
+    void failedHalfOpenProbeReopensTheCircuit() throws Exception {
+        ModelRouter router = router(false);
+        gemini.failing = true;
+        for (int i = 0; i < 3; i++) {
+            ask(router);
+        }
+
+        Thread.sleep(250);
+        assertThat(ask(router).fellBack()).isTrue();
+        assertThat(gemini.calls).hasValue(4);
+        assertThat(router.status().get("gemini").state()).isEqualTo(CircuitBreaker.State.OPEN);
+        router.destroy();
+    }
+
+    @Test
+    void hedgedModeTakesTheFasterProvider() {
+        ModelRouter router = router(true);
+        gemini.delayMs = 1_000;
+
+        long start = System.nanoTime();
+        ModelRouter.Routed<String> answer = ask(router);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(answer.value()).isEqualTo("ollama");
+        assertThat(millis).isLessThan(800);
+        assertThat(ollama.calls).hasValue(1);
+        router.destroy();
+    }
+
+    @Test
+    void hedgedModeDoesNotHedgeFastPrimary() {
+        ModelRouter router = router(true);
+
+        assertThat(ask(router).value()).isEqualTo("gemini");
+        assertThat(ollama.calls).hasValue(0);
+        router.destroy();
+    }
+
+    @Test
+    void fallbacksAreCountedPerEndpointAndReason() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ModelRouter router = new ModelRouter(registry, false, Duration.ofMillis(50),
+                10, 3, 0.5, Duration.ofSeconds(10), Duration.ofSeconds(30));
+        gemini.failing = true;
+
+        for (int i = 0; i < 5; i++) {
+            router.execute("cloud-generate",
+                    ModelRouter.route("gemini", () -> ChatClient.create(gemini).prompt().user("hi").call().content()),
+                    ModelRouter.route("ollama", () -> ChatClient.create(ollama).prompt().user("hi").call().content()));
+        }
+
+        // 3 failed calls open the circuit, the next 2 skip Gemini
+        assertThat(registry.get("ai.router.fallback").tag("endpoint", "cloud-generate").tag("from", "gemini")
+                .tag("to", "ollama").tag("reason", "error").counter().count()).isEqualTo(3);
+        assertThat(registry.get("ai.router.fallback").tag("reason", "circuit_open").counter().count()).isEqualTo(2);
+        router.destroy();
+    }
+
+    @Test
+    void localRejectionsAndCacheHitsDoNotCountAgainstTheProvider() {
+        ModelRouter router = router(false);
+
+        // What ModelConcurrencyAdvisor does when the local queue is full
+        for (int i = 0; i < 5; i++) {
+            ModelRouter.Routed<String> answer = router.execute(
+                    ModelRouter.route("gemini", () -> {
+                        RoutedCall.rejectedLocally();
+                        throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Model gemini is busy");
+                    }),
+                    ModelRouter.route("ollama", () -> ChatClient.create(ollama).prompt().user("hi").call().content()));
+            assertThat(answer.value()).isEqualTo("ollama");
+        }
+        // What ResponseCacheAdvisor does on a hit
+        router.execute(
+                ModelRouter.route("gemini", () -> {
+                    RoutedCall.servedFromCache();
+                    return "cached";
+                }),
+                ModelRouter.route("ollama", () -> "unused"));
+
+        assertThat(router.status().get("gemini").state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(router.status().get("gemini").calls()).isZero();
+        router.destroy();
+    }
+}
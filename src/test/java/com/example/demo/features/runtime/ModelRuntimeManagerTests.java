@@ -0,0 +1,184 @@
+package com.example.demo.features.runtime;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelRuntimeManagerTests {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    /**
+     * Minimal Ollama: /api/ps lists the "loaded" models, /api/generate and /api/embed load the
+     * requested model for 20 minutes.
+     */
+    static class StubOllama implements AutoCloseable {
+        final HttpServer server;
+        final Map<String, Instant> loaded = new ConcurrentHashMap<>();
+        final List<String> requests = new CopyOnWriteArrayList<>();
+
+        StubOllama() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/ps", exchange -> {
+                StringBuilder json = new StringBuilder("{\"models\":[");
+                loaded.forEach((name, expiresAt) -> json.append(json.length() > 11 ? "," : "")
+                        .append("{\"name\":\"").append(name).append("\",\"expires_at\":\"")
+                        .append(expiresAt.atOffset(ZoneOffset.ofHours(-7))).append("\"}"));
+                respond(exchange, json.append("]}").toString());
+            });
+            server.createContext("/api/generate", exchange -> load(exchange, "generate"));
+            server.createContext("/api/embed", exchange -> load(exchange, "embed"));
+            server.start();
+        }
+
+        private void load(HttpExchange exchange, String endpoint) throws IOException {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String model = body.replaceAll(".*\"model\"\\s*:\\s*\"([^\"]+)\".*", "$1");
+            requests.add(endpoint + " " + model);
+            String tagged = model.contains(":") ? model : model + ":latest";
+            loaded.put(tagged, NOW.plus(Duration.ofMinutes(20)));
+            respond(exchange, "{\"done\":true}");
+        }
+
+        private static void respond(HttpExchange exchange, String json) throws IOException {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private StubOllama ollama;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ollama = new StubOllama();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ollama.close();
+    }
+
+    private ModelRuntimeManager manager(String baseUrl) {
+        // Same client setup as the shared one in AIConfig: HTTP/2 preferred, HTTP/1.1 fallback
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+        RestClient restClient = RestClient.builder()
+                .baseUrl(baseUrl)
+                .requestFactory(new JdkClientHttpRequestFactory(httpClient))
+                .build();
+        return new ModelRuntimeManager(restClient, registry, Clock.fixed(NOW, ZoneOffset.UTC),
+                List.of("granite4:3b"), List.of("nomic-embed-text"), "20m", Duration.ofMinutes(2), Duration.ofSeconds(1));
+    }
+
+    private double coldStarts(String model, String source) {
+        return registry.get("ai.model.cold.starts").tag("model", model).tag("source", source).counter().count();
+    }
+
+    @Test
+    void warmsModelsThatAreNotLoadedAndLeavesResidentOnesAlone() {
+        ModelRuntimeManager manager = manager(ollama.baseUrl());
+
+        manager.refresh();
+        assertThat(ollama.requests).containsExactly("generate granite4:3b", "embed nomic-embed-text");
+        assertThat(coldStarts("granite4:3b", "warm-up")).isEqualTo(1);
+        assertThat(manager.status()).allSatisfy(status -> assertThat(status.resident()).isTrue());
+
+        manager.refresh();
+        assertThat(ollama.requests).hasSize(2);
+        assertThat(registry.get("ai.model.resident").tag("model", "nomic-embed-text").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void extendsKeepAliveBeforeItRunsOut() {
+        ollama.loaded.put("granite4:3b", NOW.plus(Duration.ofMinutes(1)));
+        ollama.loaded.put("nomic-embed-text:latest", NOW.plus(Duration.ofMinutes(10)));
+        ModelRuntimeManager manager = manager(ollama.baseUrl());
+
+        manager.refresh();
+
+        assertThat(ollama.requests).containsExactly("generate granite4:3b");
+        assertThat(registry.find("ai.model.cold.starts").counters()).isEmpty();
+    }
+
+    @Test
+    void unreachableOllamaMarksModelsAsNotResident() {
+        String baseUrl = ollama.baseUrl();
+        ollama.close();
+        ModelRuntimeManager manager = manager(baseUrl);
+
+        manager.refresh();
+
+        assertThat(manager.status()).extracting(ModelRuntimeManager.ModelStatus::resident).containsOnly(false);
+    }
+
+    @Test
+    void advisorCountsRequestColdStartsFromTheReportedLoadDuration() {
+        ModelRuntimeManager manager = manager(ollama.baseUrl());
+        ChatModel model = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return chunk("done", Duration.ofMillis(5));
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return Flux.just(chunk("", null), chunk("Hel", null), chunk("lo", Duration.ofSeconds(3)));
+            }
+        };
+        ChatClient client = ChatClient.builder(model).defaultAdvisors(manager.advisor("ollama")).build();
+
+        assertThat(client.prompt().user("hi").stream().content().collectList().block(Duration.ofSeconds(10))).containsExactly("Hel", "lo");
+        client.prompt().user("hi").call().content();
+
+        assertThat(registry.find("ai.model.ttft").timer()).isNull();
+        assertThat(coldStarts("granite4:3b", "request")).isEqualTo(1);
+    }
+
+    private static ChatResponse chunk(String text, Duration loadDuration) {
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().model("granite4:3b");
+        if (loadDuration != null) {
+            metadata.keyValue("load-duration", loadDuration);
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))), metadata.build());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.features.streaming;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenStreamerTests {
+
+    /** Collects written frames; fails every write from {@code failFrom} on, like a closed socket. */
+    static class RecordingSink implements TokenStreamer.FrameSink {
+        final List<String> frames = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final int failFrom;
+        volatile Throwable error;
+
+        RecordingSink(int failFrom) {
+            this.failFrom = failFrom;
+        }
+
+        @Override
+        public void write(byte[] frame) throws IOException {
+            if (frames.size() >= failFrom) {
+                throw new IOException("Broken pipe");
+            }
+            frames.add(new String(frame, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void complete() {
+            done.countDown();
+        }
+
+        @Override
+        public void fail(Throwable error) {
+            this.error = error;
+            done.countDown();
+        }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TokenStreamer streamer = new TokenStreamer(registry, Duration.ofMillis(50), 4, Duration.ofMinutes(1));
+
+    @AfterEach
+    void tearDown() {
+        streamer.destroy();
+    }
+
+    @Test
+    void coalescesTokensIntoPreEncodedFrames() throws InterruptedException {
+        RecordingSink sink = new RecordingSink(Integer.MAX_VALUE);
+
+        streamer.pump("test", Flux.just("Hel", "lo", " wor", "ld", "!\nBye"), sink);
+
+        assertThat(sink.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sink.frames).containsExactly("data:Hello world\n\n", "data:!\ndata:Bye\n\n");
+        assertThat(registry.get("ai.stream.first.frame").tag("endpoint", "test").timer().count()).isEqualTo(1);
+        assertThat(registry.find("ai.stream.cancelled").counter()).isNull();
+    }
+
+    @Test
+    void failedWriteCancelsTheUpstreamGeneration() throws InterruptedException {
+        RecordingSink sink = new RecordingSink(1);
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        Flux<String> endless = Flux.interval(Duration.ofMillis(5))
+                .map(i -> "token" + i)
+                .doOnCancel(() -> upstreamCancelled.set(true));
+
+        streamer.pump("test", endless, sink);
+
+        assertThat(sink.done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sink.error).isInstanceOf(IOException.class);
+        assertThat(upstreamCancelled).isTrue();
+        assertThat(sink.frames).hasSize(1);
+        assertThat(registry.get("ai.stream.cancelled").tag("endpoint", "test").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void disposingTheStreamCountsAsCancelled() throws InterruptedException {
+        RecordingSink sink = new RecordingSink(Integer.MAX_VALUE);
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        Flux<String> endless = Flux.interval(Duration.ofMillis(5))
+                .map(i -> "token" + i)
+                .doOnCancel(() -> upstreamCancelled.set(true));
+
+        var subscription = streamer.pump("test", endless, sink);
+        Thread.sleep(30);
+        subscription.dispose();
+
+        assertThat(upstreamCancelled).isTrue();
+        assertThat(registry.get("ai.stream.cancelled").tag("endpoint", "test").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.testsupport;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deterministic, offline ChatModel for tests and benchmarks: answers with a fixed reply, so
+ * everything around the model call (advisors, templates, memory) can be measured on its own.
+ * Streams the reply word by word.
+ *
+ * Like Ollama, responses carry the model name and token usage (one token per word), and a
+ * stream reports usage in its last chunk only.
+ */
+public class FakeChatModel implements ChatModel {
+
+    public static final String MODEL = "fake-model";
+
+    private final String reply;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile Prompt lastPrompt;
+
+    public FakeChatModel(String reply) {
+        this.reply = reply;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        calls.incrementAndGet();
+        lastPrompt = prompt;
+        return response(reply, words(prompt.getContents()), words(reply));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        calls.incrementAndGet();
+        lastPrompt = prompt;
+        List<ChatResponse> chunks = new ArrayList<>();
+        String[] tokens = reply.split("(?<= )");
+        for (int i = 0; i < tokens.length; i++) {
+            boolean last = i == tokens.length - 1;
+            chunks.add(response(tokens[i], last ? words(prompt.getContents()) : 0, last ? tokens.length : 0));
+        }
+        return Flux.fromIterable(chunks);
+    }
+
+    private static ChatResponse response(String text, int promptTokens, int completionTokens) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))),
+                ChatResponseMetadata.builder()
+                        .model(MODEL)
+                        .usage(new DefaultUsage(promptTokens, completionTokens))
+                        .build());
+    }
+
+    private static int words(String text) {
+        return text.isBlank() ? 0 : text.strip().split("\\s+").length;
+    }
+
+    /** Number of calls that reached the model. */
+    public int calls() {
+        return calls.get();
+    }
+
+    /** The prompt of the latest call, as the model received it. */
+    public Prompt lastPrompt() {
+        return lastPrompt;
+    }
+}
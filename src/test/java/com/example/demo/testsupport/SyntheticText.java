@@ -0,0 +1,45 @@
+package com.example.demo.testsupport;
+
+import java.util.Random;
+
+/**
+ * Reproducible filler text for benchmarks: sentences drawn from a fixed vocabulary with a
+ * seeded {@link Random}, so every run (and every commit) measures the same input.
+ */
+public final class SyntheticText {
+
+    private static final String[] WORDS = (
+            "printer network server error code reset password account login timeout memory disk "
+            + "update install driver cable router firewall backup restore license invoice report "
+            + "screen battery keyboard mouse monitor cloud sync folder permission user admin "
+            + "the a of to and in is for on with as by it this that be are from at or not").split(" ");
+
+    private SyntheticText() {
+    }
+
+    /**
+     * About {@code words} words in sentences of 8 to 20 words, with a paragraph break every
+     * few sentences and an occasional identifier (eg: ERR-4013) as found in manuals.
+     */
+    public static String words(long seed, int words) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(words * 7);
+        int written = 0;
+        int sentences = 0;
+        while (written < words) {
+            int length = 8 + random.nextInt(13);
+            for (int i = 0; i < length; i++) {
+                String word = random.nextInt(40) == 0
+                        ? "ERR-" + (1000 + random.nextInt(9000))
+                        : WORDS[random.nextInt(WORDS.length)];
+                text.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                text.append(i == length - 1 ? ". " : " ");
+            }
+            written += length;
+            if (++sentences % 5 == 0) {
+                text.append("\n\n");
+            }
+        }
+        return text.toString();
+    }
+}